@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creates instances with the creators of each {@link eu.mmonschau.reflection.InstantiationBackend}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BackendBenchmark {
+
+	private static final java.util.List<String> VALUES = java.util.Arrays.asList("1", "2", "point");
+
+	@Param({"reflection", "method-handle", "generated"})
+	private String backend;
+
+	private eu.mmonschau.reflection.ClassInstanceCreator<InstantiationBenchmark.Point> creator;
+
+	/**
+	 * prepares the creator of the backend
+	 *
+	 * @throws InstantiationException
+	 * 		if the creator cannot be created
+	 */
+	@Setup
+	public void setUp() throws InstantiationException {
+		eu.mmonschau.reflection.InstantiationBackend selected = null;
+		for (eu.mmonschau.reflection.InstantiationBackend candidate : new eu.mmonschau.reflection.InstantiationBackend[]{
+				eu.mmonschau.reflection.InstantiationBackend.REFLECTION,
+				eu.mmonschau.reflection.InstantiationBackend.METHOD_HANDLE,
+				eu.mmonschau.reflection.InstantiationBackend.GENERATED}) {
+			if (candidate.getName().equals(backend)) {
+				selected = candidate;
+			}
+		}
+		if (selected == null) {
+			throw new IllegalArgumentException("Unknown backend: " + backend);
+		}
+		creator = eu.mmonschau.reflection.ClassInstatiator
+				.getInstanceCreator(InstantiationBenchmark.Point.class, VALUES, selected);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public InstantiationBenchmark.Point newInstance() {
+		return creator.newInstance();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public InstantiationBenchmark.Point newInstanceContended() {
+		return creator.newInstance();
+	}
+}
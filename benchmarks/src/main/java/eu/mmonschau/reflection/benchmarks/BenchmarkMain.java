@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection.benchmarks;
+
+/**
+ * Generates the synthetic classes and runs the benchmarks, results are written as JSON to target/jmh-result.json
+ * unless other JMH options are given.
+ * <p>
+ * The synthetic jars are appended to the boot class path of the forked JVMs, so {@link Class#forName(String)} finds
+ * them from every class loader while the benchmarks choose the scanned jar with the java.class.path property.
+ */
+public class BenchmarkMain {
+
+	/** the sizes of the synthetic class paths, must match the parameter of {@link ScanBenchmark} */
+	private static final int[] SIZES = {1000, 10000, 100000};
+
+	/**
+	 * Runs the benchmarks
+	 *
+	 * @param args
+	 * 		JMH command line options
+	 *
+	 * @throws Exception
+	 * 		if the options are invalid or generating the classes or running the benchmarks fails
+	 */
+	public static void main(String[] args) throws Exception {
+		org.openjdk.jmh.runner.options.CommandLineOptions cli =
+				new org.openjdk.jmh.runner.options.CommandLineOptions(args);
+		java.io.File dir = new java.io.File(System.getProperty(SyntheticClasspath.DIR_PROPERTY, "target/synthetic"))
+				.getAbsoluteFile();
+		java.util.StringJoiner bootClassPath = new java.util.StringJoiner(java.io.File.pathSeparator);
+		for (int size : SIZES) {
+			bootClassPath.add(SyntheticClasspath.generate(dir, size).getPath());
+		}
+		org.openjdk.jmh.runner.options.ChainedOptionsBuilder options =
+				new org.openjdk.jmh.runner.options.OptionsBuilder()
+						.parent(cli)
+						.jvmArgsAppend("-Xbootclasspath/a:" + bootClassPath,
+						               "-D" + SyntheticClasspath.DIR_PROPERTY + "=" + dir);
+		if (!cli.getResultFormat().hasValue()) {
+			options.resultFormat(org.openjdk.jmh.results.format.ResultFormatType.JSON);
+		}
+		if (!cli.getResult().hasValue()) {
+			options.result("target/jmh-result.json");
+		}
+		new org.openjdk.jmh.runner.Runner(options.build()).run();
+	}
+}
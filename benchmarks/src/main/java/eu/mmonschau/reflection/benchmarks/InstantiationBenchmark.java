@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creates instances from string arguments, with a prepared factory and by cloning or copying a template. The
+ * contended variants share one factory and one template between all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InstantiationBenchmark {
+
+	private static final java.util.List<String> VALUES = java.util.Arrays.asList("1", "2", "point");
+
+	private eu.mmonschau.reflection.ClassInstanceFactory<Point>        factory;
+	private eu.mmonschau.reflection.CloneableInstanceCreator<Template> cloner;
+	private eu.mmonschau.reflection.PrototypeInstanceCreator<Template> copier;
+
+	/**
+	 * A class with a constructor usable from the command line
+	 */
+	public static class Point {
+		private final int    x;
+		private final int    y;
+		private final String name;
+
+		public Point(int x, int y, String name) {
+			this.x = x;
+			this.y = y;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * A class with a public clone method
+	 */
+	public static class Template implements Cloneable {
+		private final int[]  values = {1, 2, 3};
+		private final String name   = "template";
+
+		@Override
+		public Template clone() {
+			try {
+				return (Template) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+
+	/**
+	 * prepares the factory and the template
+	 *
+	 * @throws InstantiationException
+	 * 		if the factory cannot be created
+	 */
+	@Setup
+	public void setUp() throws InstantiationException {
+		factory = eu.mmonschau.reflection.ClassInstatiator.getInstanceFactory(Point.class, VALUES);
+		cloner = new eu.mmonschau.reflection.CloneableInstanceCreator<>(new Template());
+		copier = new eu.mmonschau.reflection.PrototypeInstanceCreator<>(new Template());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Point createInstance() throws InstantiationException {
+		return eu.mmonschau.reflection.ClassInstatiator.createInstance(Point.class, VALUES);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Point createInstanceContended() throws InstantiationException {
+		return eu.mmonschau.reflection.ClassInstatiator.createInstance(Point.class, VALUES);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Point factoryNewInstance() {
+		return factory.newInstance();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Point factoryNewInstanceContended() {
+		return factory.newInstance();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Template cloneNewInstance() {
+		return cloner.newInstance();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Template cloneNewInstanceContended() {
+		return cloner.newInstance();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Template prototypeNewInstance() {
+		return copier.newInstance();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Template prototypeNewInstanceContended() {
+		return copier.newInstance();
+	}
+}
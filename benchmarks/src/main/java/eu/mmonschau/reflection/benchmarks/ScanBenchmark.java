@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans synthetic class paths of different sizes for the subclasses of their base class
+ *
+ * @see SyntheticClasspath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScanBenchmark {
+
+	/** number of classes on the class path */
+	@Param({"1000", "10000", "100000"})
+	public int classes;
+
+	private String   classPath;
+	private Class<?> base;
+
+	/**
+	 * puts the synthetic jar of the requested size on the scanned class path
+	 *
+	 * @throws ClassNotFoundException
+	 * 		if the jar is not on the boot class path
+	 */
+	@Setup
+	public void setUp() throws ClassNotFoundException {
+		java.io.File jar = SyntheticClasspath.getJar(SyntheticClasspath.getDirectory(), classes);
+		classPath = System.getProperty("java.class.path");
+		System.setProperty("java.class.path", jar.getPath());
+		base = Class.forName(SyntheticClasspath.getBaseClassName(classes));
+	}
+
+	/**
+	 * restores the class path
+	 */
+	@TearDown
+	public void tearDown() {
+		System.setProperty("java.class.path", classPath);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public java.util.Collection<Class<?>> getSubclasses() {
+		return eu.mmonschau.reflection.ClassScanner.getSubclasses(base);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public java.util.Collection<Class<?>> getSubclassesContended() {
+		return eu.mmonschau.reflection.ClassScanner.getSubclasses(base);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public java.util.Collection<String> getSubclassNames() {
+		return eu.mmonschau.reflection.ClassScanner.getSubclassNames(base.getName());
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public java.util.Collection<String> getSubclassNamesContended() {
+		return eu.mmonschau.reflection.ClassScanner.getSubclassNames(base.getName());
+	}
+}
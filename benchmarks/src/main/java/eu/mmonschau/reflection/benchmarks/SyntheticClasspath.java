@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection.benchmarks;
+
+/**
+ * Generates jars of synthetic classes to scan. Each jar has its own packages, so jars of different sizes can be on
+ * the same class path. Every tenth class extends the abstract base class of its jar, all others extend Object.
+ */
+final class SyntheticClasspath {
+
+	/** system property with the directory of the generated jars */
+	static final String DIR_PROPERTY = "reflectionlib.benchmarks.synthetic";
+
+	private static final String PACKAGE             = "eu.mmonschau.synthetic";
+	private static final int    CLASSES_PER_PACKAGE = 100;
+	private static final int    SUBCLASS_RATIO      = 10;
+
+	private static final int ACC_PUBLIC   = 0x0001;
+	private static final int ACC_SUPER    = 0x0020;
+	private static final int ACC_ABSTRACT = 0x0400;
+
+	private SyntheticClasspath() {
+	}
+
+	/**
+	 * @return the directory of the generated jars as passed by {@link BenchmarkMain}
+	 */
+	static java.io.File getDirectory() {
+		String dir = System.getProperty(DIR_PROPERTY);
+		if (dir == null) {
+			throw new IllegalStateException("Synthetic classes are missing, run " + BenchmarkMain.class.getName());
+		}
+		return new java.io.File(dir);
+	}
+
+	/**
+	 * gets the fully qualified name of the base class of a jar
+	 *
+	 * @param size
+	 * 		the number of classes in the jar
+	 *
+	 * @return the name
+	 */
+	static String getBaseClassName(int size) {
+		return PACKAGE + ".s" + size + ".Base";
+	}
+
+	/**
+	 * gets the jar of given size
+	 *
+	 * @param dir
+	 * 		the directory of the jars
+	 * @param size
+	 * 		the number of classes in the jar
+	 *
+	 * @return the jar-file
+	 */
+	static java.io.File getJar(java.io.File dir, int size) {
+		return new java.io.File(dir, "synthetic-" + size + ".jar");
+	}
+
+	/**
+	 * Generates a jar unless it exists already
+	 *
+	 * @param dir
+	 * 		the directory of the jars
+	 * @param size
+	 * 		the number of classes in the jar
+	 *
+	 * @return the jar-file
+	 *
+	 * @throws java.io.IOException
+	 * 		if the jar cannot be written
+	 */
+	static java.io.File generate(java.io.File dir, int size) throws java.io.IOException {
+		java.io.File jar = getJar(dir, size);
+		if (jar.isFile()) {
+			return jar;
+		}
+		java.nio.file.Files.createDirectories(dir.toPath());
+		java.nio.file.Path tmp = java.nio.file.Files.createTempFile(dir.toPath(), jar.getName(), ".tmp");
+		String base = getBaseClassName(size);
+		try (java.util.jar.JarOutputStream out = new java.util.jar.JarOutputStream(
+				new java.io.BufferedOutputStream(java.nio.file.Files.newOutputStream(tmp)))) {
+			write(out, base, "java.lang.Object", ACC_PUBLIC | ACC_SUPER | ACC_ABSTRACT);
+			for (int i = 0; i < size; i++) {
+				String name = PACKAGE + ".s" + size + ".p" + i / CLASSES_PER_PACKAGE + ".C" + i;
+				write(out, name, i % SUBCLASS_RATIO == 0 ? base : "java.lang.Object", ACC_PUBLIC | ACC_SUPER);
+			}
+		}
+		java.nio.file.Files.move(tmp, jar.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		return jar;
+	}
+
+	private static void write(java.util.jar.JarOutputStream out, String name, String superName, int access)
+			throws java.io.IOException {
+		out.putNextEntry(new java.util.jar.JarEntry(name.replace('.', '/') + ".class"));
+		out.write(classFile(name.replace('.', '/'), superName.replace('.', '/'), access));
+		out.closeEntry();
+	}
+
+	/**
+	 * creates a class-file without members, a class without constructor can still be loaded and scanned
+	 *
+	 * @param name
+	 * 		the internal name of the class
+	 * @param superName
+	 * 		the internal name of the superclass
+	 * @param access
+	 * 		the access flags
+	 *
+	 * @return the class-file
+	 *
+	 * @throws java.io.IOException
+	 * 		never
+	 */
+	private static byte[] classFile(String name, String superName, int access) throws java.io.IOException {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(64 + 2 * name.length());
+		java.io.DataOutputStream      out   = new java.io.DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);//minor version
+		out.writeShort(52);//Java 8
+		out.writeShort(5);//constant pool count
+		out.writeByte(1);//#1 Utf8
+		out.writeUTF(name);
+		out.writeByte(7);//#2 Class #1
+		out.writeShort(1);
+		out.writeByte(1);//#3 Utf8
+		out.writeUTF(superName);
+		out.writeByte(7);//#4 Class #3
+		out.writeShort(3);
+		out.writeShort(access);
+		out.writeShort(2);//this class
+		out.writeShort(4);//super class
+		out.writeShort(0);//interfaces
+		out.writeShort(0);//fields
+		out.writeShort(0);//methods
+		out.writeShort(0);//attributes
+		return bytes.toByteArray();
+	}
+}
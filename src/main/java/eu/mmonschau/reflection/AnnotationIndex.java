@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * An index of runtime visible annotations of classes, fields, methods and constructors, built from class-headers
+ * without loading any class
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public class AnnotationIndex {
+
+	private final java.util.concurrent.ConcurrentHashMap<String, java.util.Set<String>>       classes =
+			new java.util.concurrent.ConcurrentHashMap<>();
+	private final java.util.concurrent.ConcurrentHashMap<String, java.util.Set<MemberHeader>> members =
+			new java.util.concurrent.ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty index, filled by the scanner
+	 */
+	AnnotationIndex() {
+	}
+
+	/**
+	 * Creates an index of the annotations of given class-headers
+	 *
+	 * @param headers
+	 * 		the headers of all classes to index
+	 *
+	 * @return the index
+	 */
+	public static AnnotationIndex of(java.util.Collection<ClassHeader> headers) {
+		AnnotationIndex index = new AnnotationIndex();
+		headers.forEach(index::add);
+		return index;
+	}
+
+	/**
+	 * Adds the annotations of a class and its members, may be called concurrently
+	 *
+	 * @param header
+	 * 		the header of the class
+	 */
+	void add(ClassHeader header) {
+		for (String annotation : header.getAnnotationNames()) {
+			classes.computeIfAbsent(annotation, k -> java.util.concurrent.ConcurrentHashMap.newKeySet())
+					.add(header.getName());
+		}
+		for (MemberHeader member : header.getAnnotatedMembers()) {
+			for (String annotation : member.getAnnotationNames()) {
+				members.computeIfAbsent(annotation, k -> java.util.concurrent.ConcurrentHashMap.newKeySet())
+						.add(member);
+			}
+		}
+	}
+
+	/**
+	 * Removes the annotations of a class and its members, may be called concurrently
+	 *
+	 * @param header
+	 * 		the header of the class as it was added
+	 */
+	void remove(ClassHeader header) {
+		for (String annotation : header.getAnnotationNames()) {
+			java.util.Set<String> annotated = classes.get(annotation);
+			if (annotated != null) {
+				annotated.remove(header.getName());
+			}
+		}
+		for (MemberHeader member : header.getAnnotatedMembers()) {
+			for (String annotation : member.getAnnotationNames()) {
+				java.util.Set<MemberHeader> annotated = members.get(annotation);
+				if (annotated != null) {
+					annotated.remove(member);
+				}
+			}
+		}
+	}
+
+	/**
+	 * gets all classes annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the fully qualified names of the annotated classes
+	 */
+	public java.util.Set<String> classesAnnotatedWith(String annotationName) {
+		java.util.Set<String> annotated = classes.get(annotationName);
+		return annotated == null ?
+		       java.util.Collections.emptySet() :
+		       java.util.Collections.unmodifiableSet(annotated);
+	}
+
+	/**
+	 * gets all methods (not constructors) annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the annotated methods
+	 */
+	public java.util.Set<MemberHeader> methodsAnnotatedWith(String annotationName) {
+		return membersAnnotatedWith(annotationName, MemberHeader.Kind.METHOD);
+	}
+
+	/**
+	 * gets all constructors annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the annotated constructors
+	 */
+	public java.util.Set<MemberHeader> constructorsAnnotatedWith(String annotationName) {
+		return membersAnnotatedWith(annotationName, MemberHeader.Kind.CONSTRUCTOR);
+	}
+
+	/**
+	 * gets all fields annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the annotated fields
+	 */
+	public java.util.Set<MemberHeader> fieldsAnnotatedWith(String annotationName) {
+		return membersAnnotatedWith(annotationName, MemberHeader.Kind.FIELD);
+	}
+
+	private java.util.Set<MemberHeader> membersAnnotatedWith(String annotationName, MemberHeader.Kind kind) {
+		java.util.Set<MemberHeader> annotated = members.get(annotationName);
+		if (annotated == null) {
+			return java.util.Collections.emptySet();
+		}
+		java.util.Set<MemberHeader> result = new java.util.HashSet<>();
+		for (MemberHeader member : annotated) {
+			if (member.getKind() == kind) {
+				result.add(member);
+			}
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * A class which was added to, removed from or changed in the index of a {@link ClassPathWatcher}
+ */
+public final class ClassChangeEvent {
+
+	/**
+	 * The kind of a change
+	 */
+	public enum Kind {
+		/** the class was not indexed before */
+		ADDED,
+		/** the class is not indexed anymore */
+		REMOVED,
+		/** the class-file of the class changed or another location provides it now */
+		MODIFIED
+	}
+
+	private final Kind         kind;
+	private final ClassHeader  header;
+	private final java.io.File location;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param kind
+	 * 		the kind of the change
+	 * @param header
+	 * 		the indexed header, the former one if the class was removed
+	 * @param location
+	 * 		the jar or directory the header was read from
+	 */
+	ClassChangeEvent(Kind kind, ClassHeader header, java.io.File location) {
+		this.kind = kind;
+		this.header = header;
+		this.location = location;
+	}
+
+	/**
+	 * @return the kind of the change
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the indexed header, the former one if the class was removed
+	 */
+	public ClassHeader getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return the fully qualified name of the class
+	 */
+	public String getName() {
+		return header.getName();
+	}
+
+	/**
+	 * @return the jar or directory the header was read from
+	 */
+	public java.io.File getLocation() {
+		return location;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + header.getName() + " (" + location + ')';
+	}
+}
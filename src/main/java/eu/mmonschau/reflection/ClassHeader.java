@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Describes a class by the data stored in its class-file (name, superclass, interfaces, access flags, runtime
+ * visible annotations and annotated members) without loading it
+ *
+ * @see eu.mmonschau.reflection.ClassHeaderReader
+ */
+public final class ClassHeader {
+
+	/** access flag of public classes */
+	public static final int ACC_PUBLIC     = 0x0001;
+	/** access flag of final classes */
+	public static final int ACC_FINAL      = 0x0010;
+	/** access flag of interfaces */
+	public static final int ACC_INTERFACE  = 0x0200;
+	/** access flag of abstract classes and interfaces */
+	public static final int ACC_ABSTRACT   = 0x0400;
+	/** access flag of classes generated by the compiler */
+	public static final int ACC_SYNTHETIC  = 0x1000;
+	/** access flag of annotation types */
+	public static final int ACC_ANNOTATION = 0x2000;
+	/** access flag of enums */
+	public static final int ACC_ENUM       = 0x4000;
+
+	private final String                       name;
+	private final String                       superName;
+	private final java.util.List<String>       interfaceNames;
+	private final int                          accessFlags;
+	private final java.util.List<String>       annotationNames;
+	private final java.util.List<MemberHeader> annotatedMembers;
+
+	/**
+	 * A basic constructor for classes without annotations
+	 *
+	 * @param name
+	 * 		the fully qualified name of the class
+	 * @param superName
+	 * 		the fully qualified name of the superclass or null if there is none
+	 * @param interfaceNames
+	 * 		the fully qualified names of the directly implemented interfaces
+	 * @param accessFlags
+	 * 		the access flags of the class-file
+	 */
+	public ClassHeader(String name, String superName, java.util.List<String> interfaceNames, int accessFlags) {
+		this(name, superName, interfaceNames, accessFlags, java.util.Collections.emptyList());
+	}
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param name
+	 * 		the fully qualified name of the class
+	 * @param superName
+	 * 		the fully qualified name of the superclass or null if there is none
+	 * @param interfaceNames
+	 * 		the fully qualified names of the directly implemented interfaces
+	 * @param accessFlags
+	 * 		the access flags of the class-file
+	 * @param annotationNames
+	 * 		the fully qualified names of the runtime visible annotations of the class
+	 */
+	public ClassHeader(String name, String superName, java.util.List<String> interfaceNames, int accessFlags,
+	                   java.util.List<String> annotationNames) {
+		this(name, superName, interfaceNames, accessFlags, annotationNames, java.util.Collections.emptyList());
+	}
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param name
+	 * 		the fully qualified name of the class
+	 * @param superName
+	 * 		the fully qualified name of the superclass or null if there is none
+	 * @param interfaceNames
+	 * 		the fully qualified names of the directly implemented interfaces
+	 * @param accessFlags
+	 * 		the access flags of the class-file
+	 * @param annotationNames
+	 * 		the fully qualified names of the runtime visible annotations of the class
+	 * @param annotatedMembers
+	 * 		the fields, methods and constructors of the class having runtime visible annotations
+	 */
+	public ClassHeader(String name, String superName, java.util.List<String> interfaceNames, int accessFlags,
+	                   java.util.List<String> annotationNames, java.util.List<MemberHeader> annotatedMembers) {
+		this.name = java.util.Objects.requireNonNull(name);
+		this.superName = superName;
+		this.interfaceNames = java.util.Collections.unmodifiableList(new java.util.ArrayList<>(interfaceNames));
+		this.accessFlags = accessFlags;
+		this.annotationNames = java.util.Collections.unmodifiableList(new java.util.ArrayList<>(annotationNames));
+		this.annotatedMembers = java.util.Collections.unmodifiableList(new java.util.ArrayList<>(annotatedMembers));
+	}
+
+	/**
+	 * @return the fully qualified name of the class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the fully qualified name of the superclass or null for {@link Object} and module descriptors
+	 */
+	public String getSuperName() {
+		return superName;
+	}
+
+	/**
+	 * @return the fully qualified names of the directly implemented interfaces
+	 */
+	public java.util.List<String> getInterfaceNames() {
+		return interfaceNames;
+	}
+
+	/**
+	 * @return the access flags of the class-file
+	 */
+	public int getAccessFlags() {
+		return accessFlags;
+	}
+
+	/**
+	 * @return the fully qualified names of the runtime visible annotations of the class
+	 */
+	public java.util.List<String> getAnnotationNames() {
+		return annotationNames;
+	}
+
+	/**
+	 * @return the fields, methods and constructors of the class having runtime visible annotations
+	 */
+	public java.util.List<MemberHeader> getAnnotatedMembers() {
+		return annotatedMembers;
+	}
+
+	/**
+	 * @param annotationName
+	 * 		the fully qualified name of an annotation type
+	 *
+	 * @return true if the class is annotated with the annotation
+	 */
+	public boolean isAnnotatedWith(String annotationName) {
+		return annotationNames.contains(annotationName);
+	}
+
+	/**
+	 * @return the name of the package of the class, empty for the default package
+	 */
+	public String getPackageName() {
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(0, dot);
+	}
+
+	/**
+	 * @return true if the class is an interface (or an annotation type)
+	 */
+	public boolean isInterface() {
+		return (accessFlags & ACC_INTERFACE) != 0;
+	}
+
+	/**
+	 * @return true if the class is abstract (interfaces are always abstract)
+	 */
+	public boolean isAbstract() {
+		return (accessFlags & ACC_ABSTRACT) != 0;
+	}
+
+	/**
+	 * @return true if the class is public
+	 */
+	public boolean isPublic() {
+		return (accessFlags & ACC_PUBLIC) != 0;
+	}
+
+	/**
+	 * @return true if the class is an annotation type
+	 */
+	public boolean isAnnotation() {
+		return (accessFlags & ACC_ANNOTATION) != 0;
+	}
+
+	/**
+	 * @return true if the class is an enum
+	 */
+	public boolean isEnum() {
+		return (accessFlags & ACC_ENUM) != 0;
+	}
+
+	/**
+	 * Loads the described class with the class loader of this library without initializing it
+	 *
+	 * @return the class or null if it could not be loaded
+	 */
+	public Class<?> load() {
+		return load(ClassHeader.class.getClassLoader());
+	}
+
+	/**
+	 * Loads the described class with the given class loader without initializing it
+	 *
+	 * @param classLoader
+	 * 		the class loader to use
+	 *
+	 * @return the class or null if it could not be loaded
+	 */
+	public Class<?> load(ClassLoader classLoader) {
+		return ClassScanner.loadClass(name, classLoader);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ClassHeader)) {
+			return false;
+		}
+		ClassHeader that = (ClassHeader) o;
+		return accessFlags == that.accessFlags &&
+		       name.equals(that.name) &&
+		       java.util.Objects.equals(superName, that.superName) &&
+		       interfaceNames.equals(that.interfaceNames) &&
+		       annotationNames.equals(that.annotationNames) &&
+		       annotatedMembers.equals(that.annotatedMembers);
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "ClassHeader{" + name +
+		       (superName != null ? " extends " + superName : "") +
+		       (interfaceNames.isEmpty() ? "" : " implements " + String.join(", ", interfaceNames)) +
+		       '}';
+	}
+}
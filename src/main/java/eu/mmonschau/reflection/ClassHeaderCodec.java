@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Compact binary encoding of a collection of class-headers, every name is stored only once in a string table
+ *
+ * @see eu.mmonschau.reflection.ClassIndexCache
+ */
+final class ClassHeaderCodec {
+
+	/** the maximum number of strings or headers of one collection */
+	private static final int MAX_COUNT = 1 << 24;
+
+	private ClassHeaderCodec() {
+	}
+
+	/**
+	 * Writes class-headers
+	 *
+	 * @param out
+	 * 		the output to write to
+	 * @param headers
+	 * 		the headers to write
+	 *
+	 * @throws java.io.IOException
+	 * 		if writing fails
+	 */
+	static void write(java.io.DataOutput out, java.util.Collection<ClassHeader> headers) throws java.io.IOException {
+		java.util.Map<String, Integer> strings = new java.util.LinkedHashMap<>();
+		for (ClassHeader header : headers) {
+			strings.putIfAbsent(header.getName(), strings.size());
+			if (header.getSuperName() != null) {
+				strings.putIfAbsent(header.getSuperName(), strings.size());
+			}
+			for (String i : header.getInterfaceNames()) {
+				strings.putIfAbsent(i, strings.size());
+			}
+			for (String a : header.getAnnotationNames()) {
+				strings.putIfAbsent(a, strings.size());
+			}
+			for (MemberHeader m : header.getAnnotatedMembers()) {
+				strings.putIfAbsent(m.getName(), strings.size());
+				strings.putIfAbsent(m.getDescriptor(), strings.size());
+				for (String a : m.getAnnotationNames()) {
+					strings.putIfAbsent(a, strings.size());
+				}
+			}
+		}
+		out.writeInt(strings.size());
+		for (String s : strings.keySet()) {
+			out.writeUTF(s);
+		}
+		out.writeInt(headers.size());
+		for (ClassHeader header : headers) {
+			out.writeInt(strings.get(header.getName()));
+			out.writeInt(header.getSuperName() == null ? -1 : strings.get(header.getSuperName()));
+			out.writeShort(header.getAccessFlags());
+			out.writeShort(header.getInterfaceNames().size());
+			for (String i : header.getInterfaceNames()) {
+				out.writeInt(strings.get(i));
+			}
+			writeNames(out, header.getAnnotationNames(), strings);
+			out.writeShort(header.getAnnotatedMembers().size());
+			for (MemberHeader m : header.getAnnotatedMembers()) {
+				out.writeByte(m.getKind().ordinal());
+				out.writeInt(strings.get(m.getName()));
+				out.writeInt(strings.get(m.getDescriptor()));
+				out.writeShort(m.getAccessFlags());
+				writeNames(out, m.getAnnotationNames(), strings);
+			}
+		}
+	}
+
+	private static void writeNames(java.io.DataOutput out, java.util.List<String> names,
+	                               java.util.Map<String, Integer> strings) throws java.io.IOException {
+		out.writeShort(names.size());
+		for (String n : names) {
+			out.writeInt(strings.get(n));
+		}
+	}
+
+	/**
+	 * Reads class-headers written by {@link #write(java.io.DataOutput, java.util.Collection)}
+	 *
+	 * @param in
+	 * 		the input to read from
+	 *
+	 * @return the headers
+	 *
+	 * @throws java.io.IOException
+	 * 		if reading fails or the data is corrupt
+	 */
+	static java.util.List<ClassHeader> read(java.io.DataInput in) throws java.io.IOException {
+		String[] strings = new String[readCount(in)];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = in.readUTF();
+		}
+		int                         count   = readCount(in);
+		java.util.List<ClassHeader> headers = new java.util.ArrayList<>(Math.min(count, strings.length));
+		try {
+			for (int h = 0; h < count; h++) {
+				String name        = strings[in.readInt()];
+				int    superRef    = in.readInt();
+				int    accessFlags = in.readUnsignedShort();
+				String[] interfaces = new String[in.readUnsignedShort()];
+				for (int i = 0; i < interfaces.length; i++) {
+					interfaces[i] = strings[in.readInt()];
+				}
+				java.util.List<String> annotations = readNames(in, strings);
+				MemberHeader[]         members     = new MemberHeader[in.readUnsignedShort()];
+				for (int m = 0; m < members.length; m++) {
+					MemberHeader.Kind kind = MemberHeader.Kind.values()[in.readUnsignedByte()];
+					members[m] = new MemberHeader(name, kind, strings[in.readInt()], strings[in.readInt()],
+					                              in.readUnsignedShort(), readNames(in, strings));
+				}
+				headers.add(new ClassHeader(name, superRef < 0 ? null : strings[superRef],
+				                            java.util.Arrays.asList(interfaces), accessFlags, annotations,
+				                            java.util.Arrays.asList(members)));
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new java.io.IOException("Corrupt class-header data", e);
+		}
+		return headers;
+	}
+
+	/**
+	 * reads the number of following entries, corrupt data must not lead to a negative or huge array
+	 */
+	private static int readCount(java.io.DataInput in) throws java.io.IOException {
+		int count = in.readInt();
+		if (count < 0 || count > MAX_COUNT) {
+			throw new java.io.IOException("Corrupt class-header data, count " + count);
+		}
+		return count;
+	}
+
+	private static java.util.List<String> readNames(java.io.DataInput in, String[] strings)
+			throws java.io.IOException {
+		String[] names = new String[in.readUnsignedShort()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = strings[in.readInt()];
+		}
+		return java.util.Arrays.asList(names);
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Reads the header and the runtime visible annotations of a class-file and its members (see JVMS chapter 4) without
+ * defining the class
+ *
+ * @see eu.mmonschau.reflection.ClassHeader
+ */
+public final class ClassHeaderReader {
+
+	private static final int    MAGIC                       = 0xCAFEBABE;
+	private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS =
+			"RuntimeVisibleAnnotations".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+
+	private final byte[] bytes;
+	private final int[]  constantOffsets;
+	private final int    headerOffset;
+
+	private ClassHeaderReader(byte[] bytes) throws java.io.IOException {
+		this.bytes = bytes;
+		if (bytes.length < 10 || readInt(0) != MAGIC) {
+			throw new java.io.IOException("Not a class-file");
+		}
+		int constantCount = readUnsignedShort(8);
+		constantOffsets = new int[constantCount];
+		int offset = 10;
+		for (int i = 1; i < constantCount; i++) {
+			constantOffsets[i] = offset + 1;
+			switch (readByte(offset)) {
+				case 1://Utf8
+					offset += 3 + readUnsignedShort(offset + 1);
+					break;
+				case 7://Class
+				case 8://String
+				case 16://MethodType
+				case 19://Module
+				case 20://Package
+					offset += 3;
+					break;
+				case 15://MethodHandle
+					offset += 4;
+					break;
+				case 3://Integer
+				case 4://Float
+				case 9://Fieldref
+				case 10://Methodref
+				case 11://InterfaceMethodref
+				case 12://NameAndType
+				case 17://Dynamic
+				case 18://InvokeDynamic
+					offset += 5;
+					break;
+				case 5://Long
+				case 6://Double
+					offset += 9;
+					i++;//takes two slots
+					break;
+				default:
+					throw new java.io.IOException("Unknown constant pool tag at offset " + offset);
+			}
+		}
+		headerOffset = offset;
+	}
+
+	/**
+	 * Reads the header of a class-file
+	 *
+	 * @param classFile
+	 * 		the content of a class-file
+	 *
+	 * @return the header
+	 *
+	 * @throws java.io.IOException
+	 * 		if the content is not a valid class-file
+	 */
+	public static ClassHeader read(byte[] classFile) throws java.io.IOException {
+		try {
+			return new ClassHeaderReader(classFile).readHeader();
+		} catch (IndexOutOfBoundsException e) {
+			throw new java.io.IOException("Truncated class-file", e);
+		}
+	}
+
+	/**
+	 * Reads the header of a class-file
+	 *
+	 * @param in
+	 * 		a stream containing a class-file, it is read completely but not closed
+	 *
+	 * @return the header
+	 *
+	 * @throws java.io.IOException
+	 * 		if the stream cannot be read or does not contain a valid class-file
+	 */
+	public static ClassHeader read(java.io.InputStream in) throws java.io.IOException {
+		return read(com.google.common.io.ByteStreams.toByteArray(in));
+	}
+
+	private ClassHeader readHeader() throws java.io.IOException {
+		int offset         = headerOffset;
+		int accessFlags    = readUnsignedShort(offset);
+		String name        = readClassName(readUnsignedShort(offset + 2));
+		String superName   = readClassName(readUnsignedShort(offset + 4));
+		int interfaceCount = readUnsignedShort(offset + 6);
+		offset += 8;
+		java.util.List<String> interfaces = new java.util.ArrayList<>(interfaceCount);
+		for (int i = 0; i < interfaceCount; i++) {
+			interfaces.add(readClassName(readUnsignedShort(offset)));
+			offset += 2;
+		}
+		if (name == null) {
+			throw new java.io.IOException("Class-file without name");
+		}
+		java.util.List<MemberHeader> members = new java.util.ArrayList<>();
+		offset = readMembers(offset, name, true, members);
+		offset = readMembers(offset, name, false, members);
+		java.util.List<String> annotations = new java.util.ArrayList<>();
+		readAnnotations(offset, annotations);
+		return new ClassHeader(name, superName, interfaces, accessFlags, annotations, members);
+	}
+
+	/**
+	 * Reads the fields or methods of the class-file, only annotated members are kept
+	 *
+	 * @param offset
+	 * 		the offset of the member count
+	 * @param className
+	 * 		the fully qualified name of the class
+	 * @param fields
+	 * 		true for fields, false for methods
+	 * @param members
+	 * 		the list to add annotated members to
+	 *
+	 * @return the offset behind the members
+	 */
+	private int readMembers(int offset, String className, boolean fields, java.util.List<MemberHeader> members)
+			throws java.io.IOException {
+		int memberCount = readUnsignedShort(offset);
+		offset += 2;
+		for (int m = 0; m < memberCount; m++) {
+			int                    accessFlags = readUnsignedShort(offset);
+			int                    nameIndex   = readUnsignedShort(offset + 2);
+			int                    descIndex   = readUnsignedShort(offset + 4);
+			java.util.List<String> annotations = new java.util.ArrayList<>(0);
+			offset = readAnnotations(offset + 6, annotations);
+			if (!annotations.isEmpty()) {
+				String            memberName = readUtf8(nameIndex);
+				MemberHeader.Kind kind       = fields ? MemberHeader.Kind.FIELD :
+				                               memberName.equals("<init>") ? MemberHeader.Kind.CONSTRUCTOR :
+				                               MemberHeader.Kind.METHOD;
+				members.add(new MemberHeader(className, kind, memberName, readUtf8(descIndex), accessFlags,
+				                             annotations));
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Reads the attributes of a class or member and collects the names of its runtime visible annotations
+	 *
+	 * @param offset
+	 * 		the offset of the attribute count
+	 * @param annotations
+	 * 		the list to add the fully qualified names to
+	 *
+	 * @return the offset behind the attributes
+	 */
+	private int readAnnotations(int offset, java.util.List<String> annotations) throws java.io.IOException {
+		int attributeCount = readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < attributeCount; i++) {
+			if (isUtf8(readUnsignedShort(offset), RUNTIME_VISIBLE_ANNOTATIONS)) {
+				readAnnotationNames(offset + 6, annotations);
+			}
+			offset += 6 + readInt(offset + 2);
+		}
+		return offset;
+	}
+
+	/**
+	 * Compares a CONSTANT_Utf8 entry with an ascii string without decoding it
+	 *
+	 * @param index
+	 * 		the index in the constant pool
+	 * @param ascii
+	 * 		the expected content
+	 *
+	 * @return true if the entry contains exactly the expected content
+	 */
+	private boolean isUtf8(int index, byte[] ascii) {
+		int offset = constantOffsets[index];
+		if (readUnsignedShort(offset) != ascii.length) {
+			return false;
+		}
+		for (int i = 0; i < ascii.length; i++) {
+			if (bytes[offset + 2 + i] != ascii[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the type names of the annotations of a RuntimeVisibleAnnotations attribute
+	 *
+	 * @param offset
+	 * 		the offset of the annotation count
+	 * @param names
+	 * 		the list to add the fully qualified names to
+	 */
+	private void readAnnotationNames(int offset, java.util.List<String> names) throws java.io.IOException {
+		int count = readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < count; i++) {
+			names.add(readTypeName(readUnsignedShort(offset)));
+			offset = skipAnnotation(offset);
+		}
+	}
+
+	/**
+	 * Skips an annotation structure
+	 *
+	 * @param offset
+	 * 		the offset of the annotation
+	 *
+	 * @return the offset behind the annotation
+	 */
+	private int skipAnnotation(int offset) throws java.io.IOException {
+		int pairCount = readUnsignedShort(offset + 2);
+		offset += 4;
+		for (int i = 0; i < pairCount; i++) {
+			offset = skipElementValue(offset + 2);
+		}
+		return offset;
+	}
+
+	/**
+	 * Skips an element_value structure of an annotation
+	 *
+	 * @param offset
+	 * 		the offset of the element value
+	 *
+	 * @return the offset behind the element value
+	 */
+	private int skipElementValue(int offset) throws java.io.IOException {
+		switch ((char) readByte(offset)) {
+			case 'B':
+			case 'C':
+			case 'D':
+			case 'F':
+			case 'I':
+			case 'J':
+			case 'S':
+			case 'Z':
+			case 's':
+			case 'c':
+				return offset + 3;
+			case 'e':
+				return offset + 5;
+			case '@':
+				return skipAnnotation(offset + 1);
+			case '[':
+				int count = readUnsignedShort(offset + 1);
+				offset += 3;
+				for (int i = 0; i < count; i++) {
+					offset = skipElementValue(offset);
+				}
+				return offset;
+			default:
+				throw new java.io.IOException("Unknown annotation element tag at offset " + offset);
+		}
+	}
+
+	/**
+	 * Resolves a CONSTANT_Utf8 entry containing a field descriptor of a class type (Lpackage/Name;)
+	 *
+	 * @param index
+	 * 		the index in the constant pool
+	 *
+	 * @return the fully qualified name
+	 */
+	private String readTypeName(int index) throws java.io.IOException {
+		String descriptor = readUtf8(index);
+		if (descriptor.length() < 3 || descriptor.charAt(0) != 'L' || !descriptor.endsWith(";")) {
+			throw new java.io.IOException("Not a class descriptor: " + descriptor);
+		}
+		return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+	}
+
+	/**
+	 * Resolves a CONSTANT_Class entry to a fully qualified name
+	 *
+	 * @param index
+	 * 		the index in the constant pool, 0 for none
+	 *
+	 * @return the fully qualified name or null if index is 0
+	 */
+	private String readClassName(int index) throws java.io.IOException {
+		if (index == 0) {
+			return null;
+		}
+		return readUtf8(readUnsignedShort(constantOffsets[index])).replace('/', '.');
+	}
+
+	/**
+	 * Decodes a CONSTANT_Utf8 entry (modified UTF-8)
+	 *
+	 * @param index
+	 * 		the index in the constant pool
+	 *
+	 * @return the decoded string
+	 */
+	private String readUtf8(int index) throws java.io.IOException {
+		int    offset = constantOffsets[index];
+		int    length = readUnsignedShort(offset);
+		char[] chars  = new char[length];
+		int    count  = 0;
+		int    end    = offset + 2 + length;
+		for (int i = offset + 2; i < end; i++) {
+			int b = bytes[i] & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				chars[count++] = (char) (((b & 0x1F) << 6) | (bytes[++i] & 0x3F));
+			} else if ((b & 0xF0) == 0xE0) {
+				chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes[++i] & 0x3F) << 6) | (bytes[++i] & 0x3F));
+			} else {
+				throw new java.io.IOException("Malformed modified UTF-8 in constant pool");
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	private int readByte(int offset) {
+		return bytes[offset] & 0xFF;
+	}
+
+	private int readUnsignedShort(int offset) {
+		return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+	}
+
+	private int readInt(int offset) {
+		return (readUnsignedShort(offset) << 16) | readUnsignedShort(offset + 2);
+	}
+}
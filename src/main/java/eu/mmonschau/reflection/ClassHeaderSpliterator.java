@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Lazily reads the class-headers of a list of jars and directories. A location is only opened when the previous one
+ * is exhausted and a class-file is only read when its name passes the filters of the {@link ScanSpec} and its
+ * header is not in the precomputed index of the location, so a consumer which stops early pays only for what it
+ * consumed. If a class name occurs in more than one location only the first
+ * header is returned.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#scan(ScanSpec)
+ */
+final class ClassHeaderSpliterator extends java.util.Spliterators.AbstractSpliterator<ClassHeader>
+		implements AutoCloseable {
+
+	private final java.util.Iterator<java.io.File>            locations;
+	private final ScanSpec                                    spec;
+	private final java.util.Set<String>                       returnedNames = new java.util.HashSet<>();
+	private       java.nio.file.FileSystem                    jar;
+	private       java.nio.file.Path                          root;
+	private       java.util.stream.Stream<java.nio.file.Path> walk;
+	private       java.util.Iterator<java.nio.file.Path>      files;
+	/** the precomputed index of the current location by name or null */
+	private       java.util.Map<String, ClassHeader>          indexed;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param locations
+	 * 		jar-files and directories
+	 * @param spec
+	 * 		the filters to apply
+	 */
+	ClassHeaderSpliterator(java.util.List<java.io.File> locations, ScanSpec spec) {
+		super(Long.MAX_VALUE, java.util.Spliterator.NONNULL);
+		this.locations = locations.iterator();
+		this.spec = spec;
+	}
+
+	@Override
+	public boolean tryAdvance(java.util.function.Consumer<? super ClassHeader> action) {
+		while (true) {
+			while (!hasNextFile()) {
+				close();
+				if (!locations.hasNext()) {
+					return false;
+				}
+				open(locations.next());
+			}
+			ClassHeader header = read(files.next());
+			if (header != null && returnedNames.add(header.getName())) {
+				action.accept(header);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the current location has more files, false if it is exhausted or cannot be read any further
+	 */
+	private boolean hasNextFile() {
+		try {
+			return files != null && files.hasNext();
+		} catch (java.io.UncheckedIOException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Could not read " + root + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a class-file if its path and header pass the filters, from the index if it contains the class
+	 *
+	 * @param file
+	 * 		a file of the current location
+	 *
+	 * @return the header or null if the file is filtered or not readable
+	 */
+	private ClassHeader read(java.nio.file.Path file) {
+		String path = ClassScanner.getClassFilePath(root, file);
+		if (!ClassScanner.isClassFileName(path)) {
+			return null;
+		}
+		String name = ClassScanner.convertFilePathToFullyQualifiedName(path);
+		if (!spec.acceptsName(name)) {
+			return null;
+		}
+		ClassHeader indexedHeader = indexed != null ? indexed.get(name) : null;
+		if (indexedHeader != null) {
+			return filter(indexedHeader);
+		}
+		java.util.List<ClassHeader> header = new java.util.ArrayList<>(1);
+		ClassScanner.addClassHeader(header, file);
+		return header.isEmpty() ? null : filter(header.get(0));
+	}
+
+	private ClassHeader filter(ClassHeader header) {
+		return spec.accepts(header) ? header : null;
+	}
+
+	/**
+	 * Starts a lazy walk over a jar or directory, unreadable locations are skipped
+	 *
+	 * @param location
+	 * 		the jar-file or directory
+	 */
+	private void open(java.io.File location) {
+		try {
+			if (location.getName().endsWith(".jar") && location.isFile()) {
+				jar = java.nio.file.FileSystems.newFileSystem(location.toPath(), (ClassLoader) null);
+				root = jar.getPath("/");
+			} else if (location.isDirectory()) {
+				root = location.toPath();
+			} else {
+				return;
+			}
+			//the index may not cover all class-files, so they are listed anyway
+			indexed = ClassIndexFile.readByName(root);
+			walk = java.nio.file.Files.walk(root)
+					.filter(f -> f.getFileName() != null && f.getFileName().toString().endsWith(".class"));
+			files = walk.iterator();
+		} catch (java.io.IOException | java.io.UncheckedIOException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Could not read " + location + ": " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Closes the current location
+	 */
+	@Override
+	public void close() {
+		files = null;
+		indexed = null;
+		if (walk != null) {
+			walk.close();
+			walk = null;
+		}
+		if (jar != null) {
+			try {
+				jar.close();
+			} catch (java.io.IOException e) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, e::getMessage);
+			}
+			jar = null;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * A name-based index of the class hierarchy, built once from a scan. It maps every type to its direct subtypes and
+ * answers transitive queries in time linear to the size of the result, repeated queries in constant time.
+ * Types which are only referenced (e.g. {@link Object} or jdk interfaces) can be queried as well.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public class ClassHierarchyIndex {
+
+	private final java.util.concurrent.ConcurrentHashMap<String, ClassHeader>           headers        =
+			new java.util.concurrent.ConcurrentHashMap<>();
+	private final java.util.concurrent.ConcurrentHashMap<String, java.util.Set<String>> directSubtypes =
+			new java.util.concurrent.ConcurrentHashMap<>();
+	private volatile Memo memo = new Memo();
+
+	/**
+	 * Creates an empty index, filled by the scanner
+	 */
+	ClassHierarchyIndex() {
+	}
+
+	/**
+	 * Creates an index of given class-headers, if a name occurs more than once the first header is used
+	 *
+	 * @param headers
+	 * 		the headers of all classes to index
+	 *
+	 * @return the index
+	 */
+	public static ClassHierarchyIndex of(java.util.stream.Stream<ClassHeader> headers) {
+		ClassHierarchyIndex index = new ClassHierarchyIndex();
+		headers.forEachOrdered(index::add);
+		return index;
+	}
+
+	/**
+	 * Creates an index of given class-headers, if a name occurs more than once the first header is used
+	 *
+	 * @param headers
+	 * 		the headers of all classes to index
+	 *
+	 * @return the index
+	 */
+	public static ClassHierarchyIndex of(java.util.Collection<ClassHeader> headers) {
+		return of(headers.stream());
+	}
+
+	/**
+	 * Adds a class to the index unless a class with the same name is already indexed, may be called concurrently
+	 *
+	 * @param header
+	 * 		the header of the class
+	 *
+	 * @return true if the class was added
+	 */
+	boolean add(ClassHeader header) {
+		if (headers.putIfAbsent(header.getName(), header) != null) {
+			return false;
+		}
+		for (String superName : getDirectSupertypes(header)) {
+			directSubtypes.computeIfAbsent(superName, k -> java.util.concurrent.ConcurrentHashMap.newKeySet())
+					.add(header.getName());
+		}
+		invalidateMemo();
+		return true;
+	}
+
+	/**
+	 * Removes a class from the index
+	 *
+	 * @param name
+	 * 		the fully qualified name of the class
+	 *
+	 * @return the removed header or null if the class was not indexed
+	 */
+	ClassHeader remove(String name) {
+		ClassHeader header = headers.remove(name);
+		if (header != null) {
+			for (String superName : getDirectSupertypes(header)) {
+				java.util.Set<String> subtypes = directSubtypes.get(superName);
+				if (subtypes != null) {
+					subtypes.remove(name);
+				}
+			}
+			invalidateMemo();
+		}
+		return header;
+	}
+
+	/**
+	 * @param name
+	 * 		a fully qualified name
+	 *
+	 * @return the header of the class or null if it is not indexed
+	 */
+	public ClassHeader getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * @return the headers of all indexed classes
+	 */
+	public java.util.Collection<ClassHeader> getHeaders() {
+		return java.util.Collections.unmodifiableCollection(headers.values());
+	}
+
+	/**
+	 * @return the number of indexed classes
+	 */
+	public int size() {
+		return headers.size();
+	}
+
+	/**
+	 * @return a compact copy of the current hierarchy on the heap
+	 *
+	 * @see CompactClassHierarchy#of(ClassHierarchyIndex, boolean)
+	 */
+	public CompactClassHierarchy toCompact() {
+		return CompactClassHierarchy.of(this);
+	}
+
+	/**
+	 * gets the names of the classes and interfaces directly extending or implementing the given type
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of the direct subtypes
+	 */
+	public java.util.Set<String> directSubtypesOf(String name) {
+		java.util.Set<String> subtypes = directSubtypes.get(name);
+		return subtypes == null ? java.util.Collections.emptySet() : java.util.Collections.unmodifiableSet(subtypes);
+	}
+
+	/**
+	 * gets the names of the superclass and the interfaces of the given type
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of the direct supertypes, empty if the type is not indexed
+	 */
+	public java.util.Set<String> directSupertypesOf(String name) {
+		ClassHeader header = headers.get(name);
+		return header == null ? java.util.Collections.emptySet() : getDirectSupertypes(header);
+	}
+
+	/**
+	 * gets the names of all classes and interfaces extending or implementing the given type, directly or indirectly
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all subtypes
+	 */
+	public java.util.Set<String> subtypesOf(String name) {
+		return memo().subtypes.computeIfAbsent(name, n -> closure(n, this::directSubtypesOf));
+	}
+
+	/**
+	 * gets the names of all classes (not interfaces) extending or implementing the given type, directly or
+	 * indirectly, abstract classes are included
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all subclasses
+	 */
+	public java.util.Set<String> subclassesOf(String name) {
+		return memo().subclasses.computeIfAbsent(name, n -> filter(subtypesOf(n), h -> !h.isInterface()));
+	}
+
+	/**
+	 * gets the names of all instantiable classes (neither interfaces nor abstract) extending or implementing the
+	 * given type, directly or indirectly
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all implementors
+	 */
+	public java.util.Set<String> implementorsOf(String name) {
+		return memo().implementors.computeIfAbsent(name, n -> filter(subtypesOf(n), h -> !h.isAbstract()));
+	}
+
+	/**
+	 * gets the names of all superclasses and interfaces of the given type, directly or indirectly
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all supertypes
+	 */
+	public java.util.Set<String> supertypesOf(String name) {
+		return memo().supertypes.computeIfAbsent(name, n -> closure(n, this::directSupertypesOf));
+	}
+
+	/**
+	 * checks whether a type extends or implements another type, directly or indirectly
+	 *
+	 * @param name
+	 * 		the fully qualified name of the possible subtype
+	 * @param superName
+	 * 		the fully qualified name of the possible supertype
+	 *
+	 * @return true if name is a subtype of superName
+	 */
+	public boolean isSubtype(String name, String superName) {
+		return supertypesOf(name).contains(superName);
+	}
+
+	/**
+	 * @return the memoized results, marked as used so the next change replaces them
+	 */
+	private Memo memo() {
+		Memo current = memo;
+		if (!current.used) {
+			current.used = true;
+		}
+		return current;
+	}
+
+	/**
+	 * discards memoized results after the index changed, results which were never queried are kept
+	 */
+	private void invalidateMemo() {
+		if (memo.used) {
+			memo = new Memo();
+		}
+	}
+
+	private static java.util.Set<String> getDirectSupertypes(ClassHeader header) {
+		java.util.Set<String> result = new java.util.LinkedHashSet<>(header.getInterfaceNames());
+		if (header.getSuperName() != null) {
+			result.add(header.getSuperName());
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * computes the transitive closure of a relation by breadth-first search
+	 *
+	 * @param start
+	 * 		the name to start with (not contained in the result unless there is a cycle)
+	 * @param edges
+	 * 		the relation
+	 *
+	 * @return an unmodifiable set of all reachable names
+	 */
+	private static java.util.Set<String> closure(String start,
+	                                             java.util.function.Function<String, java.util.Set<String>> edges) {
+		java.util.Set<String>        result = new java.util.HashSet<>();
+		java.util.ArrayDeque<String> queue  = new java.util.ArrayDeque<>();
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			for (String next : edges.apply(queue.poll())) {
+				if (result.add(next)) {
+					queue.add(next);
+				}
+			}
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+
+	private java.util.Set<String> filter(java.util.Set<String> names,
+	                                     java.util.function.Predicate<ClassHeader> predicate) {
+		java.util.Set<String> result = new java.util.HashSet<>();
+		for (String name : names) {
+			ClassHeader header = headers.get(name);
+			if (header != null && predicate.test(header)) {
+				result.add(name);
+			}
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Memoized query results, replaced as a whole whenever the index changes
+	 */
+	private static final class Memo {
+		private volatile boolean used;
+		private final java.util.Map<String, java.util.Set<String>> subtypes     =
+				new java.util.concurrent.ConcurrentHashMap<>();
+		private final java.util.Map<String, java.util.Set<String>> subclasses   =
+				new java.util.concurrent.ConcurrentHashMap<>();
+		private final java.util.Map<String, java.util.Set<String>> implementors =
+				new java.util.concurrent.ConcurrentHashMap<>();
+		private final java.util.Map<String, java.util.Set<String>> supertypes   =
+				new java.util.concurrent.ConcurrentHashMap<>();
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * An on-disk cache of the class-headers of jars and class directories. Every location is stored with its
+ * modification time, size and a hash, so only changed locations have to be scanned again.
+ * <p>
+ * The cache file is replaced atomically on {@link #save()}, so it can be shared between processes: readers see
+ * either the old or the new version, concurrent writers overwrite each other completely.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public class ClassIndexCache {
+
+	private static final int MAGIC   = 0x524C4943;//RLIC
+	private static final int VERSION = 3;
+
+	/** number of bytes at the end of a jar which are hashed, contains the central directory of most jars */
+	private static final int JAR_TAIL_LENGTH = 64 * 1024;
+
+	/** the permissions of written files, temporary files are only readable by their owner */
+	private static final java.util.Set<java.nio.file.attribute.PosixFilePermission> PERMISSIONS =
+			java.nio.file.attribute.PosixFilePermissions.fromString("rw-r--r--");
+
+	private final java.nio.file.Path                                    file;
+	private final java.util.concurrent.ConcurrentHashMap<String, Entry> entries;
+	private final java.util.concurrent.atomic.AtomicInteger             hits   =
+			new java.util.concurrent.atomic.AtomicInteger();
+	private final java.util.concurrent.atomic.AtomicInteger             misses =
+			new java.util.concurrent.atomic.AtomicInteger();
+
+	private ClassIndexCache(java.nio.file.Path file, java.util.Map<String, Entry> entries) {
+		this.file = file;
+		this.entries = new java.util.concurrent.ConcurrentHashMap<>(entries);
+	}
+
+	/**
+	 * Opens a cache file, a missing, outdated or corrupt file results in an empty cache
+	 *
+	 * @param file
+	 * 		the cache file
+	 *
+	 * @return the cache
+	 */
+	public static ClassIndexCache load(java.nio.file.Path file) {
+		java.util.Map<String, Entry> entries = new java.util.HashMap<>();
+		if (java.nio.file.Files.isRegularFile(file)) {
+			try (java.io.DataInputStream in = new java.io.DataInputStream(
+					new java.io.BufferedInputStream(java.nio.file.Files.newInputStream(file)))) {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new java.io.IOException("Unsupported cache format");
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					String      location    = in.readUTF();
+					Fingerprint fingerprint = new Fingerprint(in.readLong(), in.readLong(), in.readLong());
+					entries.put(location, new Entry(fingerprint, ClassHeaderCodec.read(in)));
+				}
+			} catch (java.io.IOException e) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+						"Ignoring class index cache " + file + ": " + e);
+				entries.clear();
+			}
+		}
+		return new ClassIndexCache(file, entries);
+	}
+
+	/**
+	 * Gets the class-headers of a jar or directory, the location is only scanned if it changed since it was cached
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 *
+	 * @return a collection of class-headers
+	 */
+	public java.util.Collection<ClassHeader> getClassHeaders(java.io.File location) {
+		return getClassHeaders(location, null);
+	}
+
+	/**
+	 * Gets the class-headers of a jar or directory, the location is only scanned if it changed since it was cached
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 * @param statistics
+	 * 		the statistics of the location or null
+	 *
+	 * @return a collection of class-headers
+	 */
+	java.util.Collection<ClassHeader> getClassHeaders(java.io.File location,
+	                                                  ScanStatistics.LocationStatistics statistics) {
+		String      key         = location.getAbsolutePath();
+		Fingerprint fingerprint = Fingerprint.of(location);
+		Entry       entry       = entries.get(key);
+		if (entry != null && entry.fingerprint.equals(fingerprint)) {
+			hits.incrementAndGet();
+			if (statistics != null) {
+				statistics.cacheHit();
+			}
+			return entry.headers;
+		}
+		misses.incrementAndGet();
+		java.util.List<ClassHeader> headers = java.util.Collections.unmodifiableList(
+				new java.util.ArrayList<>(ClassScanner.getClassHeaders(location, statistics)));
+		entries.put(key, new Entry(fingerprint, headers));
+		return headers;
+	}
+
+	/**
+	 * Writes the cache to its file. Entries of locations which do not exist anymore are dropped.
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be written
+	 */
+	public void save() throws java.io.IOException {
+		java.nio.file.Path dir = file.toAbsolutePath().getParent();
+		java.nio.file.Files.createDirectories(dir);
+		java.nio.file.Path tmp = java.nio.file.Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			java.util.Map<String, Entry> snapshot = new java.util.TreeMap<>(entries);
+			snapshot.keySet().removeIf(location -> !new java.io.File(location).exists());
+			try (java.io.DataOutputStream out = new java.io.DataOutputStream(
+					new java.io.BufferedOutputStream(java.nio.file.Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(snapshot.size());
+				for (java.util.Map.Entry<String, Entry> e : snapshot.entrySet()) {
+					out.writeUTF(e.getKey());
+					out.writeLong(e.getValue().fingerprint.modified);
+					out.writeLong(e.getValue().fingerprint.size);
+					out.writeLong(e.getValue().fingerprint.hash);
+					ClassHeaderCodec.write(out, e.getValue().headers);
+				}
+			}
+			makeReadable(tmp);
+			moveAtomically(tmp, file);
+		} finally {
+			java.nio.file.Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Makes a file readable by all users, so a file written to a temporary file can be shared like one created with
+	 * the usual umask. File systems without posix permissions are left as they are.
+	 *
+	 * @param file
+	 * 		the file
+	 *
+	 * @throws java.io.IOException
+	 * 		if the permissions cannot be set
+	 */
+	static void makeReadable(java.nio.file.Path file) throws java.io.IOException {
+		try {
+			java.nio.file.Files.setPosixFilePermissions(file, PERMISSIONS);
+		} catch (UnsupportedOperationException e) {
+			//not a posix file system, the permissions are inherited from the directory
+		}
+	}
+
+	/**
+	 * Renames a file, atomically if the file system supports it
+	 *
+	 * @param source
+	 * 		the file to move
+	 * @param target
+	 * 		the new name
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be moved
+	 */
+	static void moveAtomically(java.nio.file.Path source, java.nio.file.Path target) throws java.io.IOException {
+		try {
+			java.nio.file.Files.move(source, target, java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+			                         java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		} catch (java.nio.file.AtomicMoveNotSupportedException e) {
+			java.nio.file.Files.move(source, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return the number of locations served from the cache
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of locations which had to be scanned
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Cached headers of one location
+	 */
+	private static final class Entry {
+		private final Fingerprint                 fingerprint;
+		private final java.util.List<ClassHeader> headers;
+
+		private Entry(Fingerprint fingerprint, java.util.List<ClassHeader> headers) {
+			this.fingerprint = fingerprint;
+			this.headers = headers;
+		}
+	}
+
+	/**
+	 * Modification time, size and hash of a location.
+	 * Jars are hashed by their tail (containing the central directory with the CRCs of all entries), directories by
+	 * the paths, sizes and modification times of their class-files, so no class-file has to be read.
+	 */
+	static final class Fingerprint {
+		final long modified;
+		final long size;
+		final long hash;
+
+		Fingerprint(long modified, long size, long hash) {
+			this.modified = modified;
+			this.size = size;
+			this.hash = hash;
+		}
+
+		/**
+		 * Creates the fingerprint of a location
+		 *
+		 * @param location
+		 * 		a jar-file or a directory
+		 *
+		 * @return the fingerprint
+		 */
+		static Fingerprint of(java.io.File location) {
+			java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+			if (location.isFile()) {
+				long size = location.length();
+				try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(location, "r")) {
+					byte[] tail = new byte[(int) Math.min(size, JAR_TAIL_LENGTH)];
+					raf.seek(size - tail.length);
+					raf.readFully(tail);
+					crc.update(tail);
+				} catch (java.io.IOException e) {
+					return new Fingerprint(-1, -1, -1);
+				}
+				return new Fingerprint(location.lastModified(), size, crc.getValue());
+			}
+			long[] modifiedAndSize = {location.lastModified(), 0};
+			try {
+				ClassScanner.walkClassFiles(location.toPath(), (file, attributes) -> {
+					long modified = attributes.lastModifiedTime().toMillis();
+					modifiedAndSize[0] = Math.max(modifiedAndSize[0], modified);
+					modifiedAndSize[1] += attributes.size();
+					crc.update(file.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+					crc.update(java.nio.ByteBuffer.allocate(16).putLong(modified).putLong(attributes.size()).array());
+				});
+			} catch (java.io.IOException e) {
+				return new Fingerprint(-1, -1, -1);
+			}
+			long modified = modifiedAndSize[0];
+			long size     = modifiedAndSize[1];
+			return new Fingerprint(modified, size, crc.getValue());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Fingerprint)) {
+				return false;
+			}
+			Fingerprint that = (Fingerprint) o;
+			return modified == that.modified && size == that.size && hash == that.hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hash);
+		}
+	}
+}
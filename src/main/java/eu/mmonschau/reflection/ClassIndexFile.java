@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * A precomputed index of the class-headers of a jar or class directory, stored as {@value #PATH} inside of it.
+ * If present, the scanner reads it instead of the class-files it covers.
+ *
+ * @see eu.mmonschau.reflection.ClassIndexProcessor
+ */
+final class ClassIndexFile {
+
+	/** path of the index relative to the root of the jar or directory */
+	static final String PATH = "META-INF/reflectionlib/index.bin";
+
+	private static final int MAGIC   = 0x524C4958;//RLIX
+	private static final int VERSION = 1;
+
+	private ClassIndexFile() {
+	}
+
+	/**
+	 * checks whether a jar or directory contains an index
+	 *
+	 * @param root
+	 * 		the root of a directory or of an opened jar
+	 *
+	 * @return true if there is an index
+	 */
+	static boolean exists(java.nio.file.Path root) {
+		return java.nio.file.Files.isRegularFile(root.resolve(PATH));
+	}
+
+	/**
+	 * Reads the index of a jar or directory
+	 *
+	 * @param root
+	 * 		the root of a directory or of an opened jar
+	 *
+	 * @return the headers or null if there is no readable index
+	 */
+	static java.util.List<ClassHeader> read(java.nio.file.Path root) {
+		java.nio.file.Path file = root.resolve(PATH);
+		if (!java.nio.file.Files.isRegularFile(file)) {
+			return null;
+		}
+		try (java.io.InputStream in = java.nio.file.Files.newInputStream(file)) {
+			return read(in);
+		} catch (java.io.IOException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE,
+			                                          () -> "Ignoring class index " + file + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads an index
+	 *
+	 * @param in
+	 * 		the stream to read from, it is not closed
+	 *
+	 * @return the headers
+	 *
+	 * @throws java.io.IOException
+	 * 		if the stream cannot be read or contains no index
+	 */
+	static java.util.List<ClassHeader> read(java.io.InputStream in) throws java.io.IOException {
+		java.io.DataInputStream data = new java.io.DataInputStream(new java.io.BufferedInputStream(in));
+		if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+			throw new java.io.IOException("Unsupported index format");
+		}
+		return ClassHeaderCodec.read(data);
+	}
+
+	/**
+	 * Reads the index of a jar or directory as map of names to headers
+	 *
+	 * @param root
+	 * 		the root of a directory or of an opened jar
+	 *
+	 * @return the headers by name or null if there is no readable index
+	 */
+	static java.util.Map<String, ClassHeader> readByName(java.nio.file.Path root) {
+		java.util.List<ClassHeader> headers = read(root);
+		if (headers == null) {
+			return null;
+		}
+		java.util.Map<String, ClassHeader> byName = new java.util.HashMap<>(headers.size() * 2);
+		for (ClassHeader header : headers) {
+			byName.put(header.getName(), header);
+		}
+		return byName;
+	}
+
+	/**
+	 * Reads the headers of all class-files of a jar or directory with the help of its index. The index is not
+	 * trusted to be complete: it lacks anonymous and local classes, classes compiled without the processor and the
+	 * classes of other libraries merged into the same jar. So the class-files are listed and every class-file which
+	 * is not indexed is read, indexed classes without class-file are dropped.
+	 *
+	 * @param root
+	 * 		the root of a directory or of an opened jar
+	 * @param statistics
+	 * 		the statistics of the location or null
+	 *
+	 * @return the headers or null if there is no readable index
+	 *
+	 * @throws java.io.IOException
+	 * 		if the class-files cannot be listed
+	 */
+	static java.util.List<ClassHeader> readComplete(java.nio.file.Path root,
+	                                                ScanStatistics.LocationStatistics statistics)
+			throws java.io.IOException {
+		java.util.Map<String, ClassHeader> indexed = readByName(root);
+		if (indexed == null) {
+			return null;
+		}
+		java.util.List<ClassHeader> headers = new java.util.ArrayList<>(indexed.size());
+		int[]                       used    = {0};
+		ClassScanner.walkClassFiles(root, (file, attributes) -> {
+			String path = ClassScanner.getClassFilePath(root, file);
+			if (!ClassScanner.isClassFileName(path)) {
+				return;
+			}
+			ClassHeader header = indexed.get(ClassScanner.convertFilePathToFullyQualifiedName(path));
+			if (header != null) {
+				headers.add(header);
+				used[0]++;
+			} else {
+				ClassScanner.addClassHeader(headers, file, statistics);
+			}
+		});
+		if (statistics != null) {
+			statistics.index(java.nio.file.Files.size(root.resolve(PATH)), used[0]);
+		}
+		if (used[0] < headers.size()) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Class index of " + root.toUri() + " is incomplete, read " + (headers.size() - used[0]) +
+					" class-files");
+		}
+		return headers;
+	}
+
+	/**
+	 * Writes an index
+	 *
+	 * @param out
+	 * 		the stream to write to, it is not closed
+	 * @param headers
+	 * 		the headers of all classes of the jar or directory
+	 *
+	 * @throws java.io.IOException
+	 * 		if writing fails
+	 */
+	static void write(java.io.OutputStream out, java.util.Collection<ClassHeader> headers) throws java.io.IOException {
+		java.io.DataOutputStream data = new java.io.DataOutputStream(new java.io.BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		ClassHeaderCodec.write(data, headers);
+		data.flush();
+	}
+}
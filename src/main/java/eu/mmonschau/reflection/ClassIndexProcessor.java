@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * An annotation processor which writes the class-headers of all compiled classes to
+ * {@value ClassIndexFile#PATH}, so {@link ClassScanner} can read the index instead of scanning the jar at runtime.
+ * <p>
+ * It is not registered as a service, so it has to be enabled explicitly, e.g. with maven:
+ * <pre>{@code
+ * <plugin>
+ *     <artifactId>maven-compiler-plugin</artifactId>
+ *     <configuration>
+ *         <annotationProcessors>
+ *             <annotationProcessor>eu.mmonschau.reflection.ClassIndexProcessor</annotationProcessor>
+ *         </annotationProcessors>
+ *     </configuration>
+ * </plugin>
+ * }</pre>
+ * The classes of a compilation are merged into the index of former compilations in the same output directory, so
+ * incremental compilations keep the other classes indexed. Anonymous and local classes are not visible to the
+ * processor; the scanner reads every class-file which is not indexed and ignores indexed classes without class-file.
+ */
+@javax.annotation.processing.SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends javax.annotation.processing.AbstractProcessor {
+
+	private final java.util.Map<String, ClassHeader> headers = new java.util.LinkedHashMap<>();
+
+	@Override
+	public javax.lang.model.SourceVersion getSupportedSourceVersion() {
+		return javax.lang.model.SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(java.util.Set<? extends javax.lang.model.element.TypeElement> annotations,
+	                       javax.annotation.processing.RoundEnvironment roundEnv) {
+		for (javax.lang.model.element.Element e : roundEnv.getRootElements()) {
+			if (e instanceof javax.lang.model.element.TypeElement) {
+				addType((javax.lang.model.element.TypeElement) e);
+			}
+		}
+		if (roundEnv.processingOver() && !headers.isEmpty()) {
+			//read before the index is created, the filer does not open a created file again
+			java.util.Collection<ClassHeader> merged = merge();
+			try (java.io.OutputStream out = processingEnv.getFiler()
+					.createResource(javax.tools.StandardLocation.CLASS_OUTPUT, "", ClassIndexFile.PATH)
+					.openOutputStream()) {
+				ClassIndexFile.write(out, merged);
+			} catch (java.io.IOException e) {
+				processingEnv.getMessager().printMessage(javax.tools.Diagnostic.Kind.WARNING,
+				                                         "Could not write " + ClassIndexFile.PATH + ": " + e);
+			}
+		}
+		return false;//annotations are not claimed
+	}
+
+	/**
+	 * @return the headers of the previous index in the output directory, replaced by those of this compilation
+	 */
+	private java.util.Collection<ClassHeader> merge() {
+		java.util.Map<String, ClassHeader> merged = new java.util.LinkedHashMap<>();
+		try (java.io.InputStream in = processingEnv.getFiler()
+				.getResource(javax.tools.StandardLocation.CLASS_OUTPUT, "", ClassIndexFile.PATH).openInputStream()) {
+			for (ClassHeader header : ClassIndexFile.read(in)) {
+				merged.put(header.getName(), header);
+			}
+		} catch (java.io.IOException | IllegalArgumentException e) {
+			//no previous index
+		}
+		merged.putAll(headers);
+		return merged.values();
+	}
+
+	/**
+	 * Adds a type and its nested types to the index
+	 *
+	 * @param type
+	 * 		the type
+	 */
+	private void addType(javax.lang.model.element.TypeElement type) {
+		String                       name    = binaryName(type);
+		java.util.List<MemberHeader> members = new java.util.ArrayList<>();
+		for (javax.lang.model.element.Element e : type.getEnclosedElements()) {
+			if (e instanceof javax.lang.model.element.TypeElement) {
+				addType((javax.lang.model.element.TypeElement) e);
+			} else {
+				java.util.List<String> memberAnnotations = runtimeAnnotations(e);
+				if (!memberAnnotations.isEmpty()) {
+					addMember(members, name, type, e, memberAnnotations);
+				}
+			}
+		}
+		boolean isInterface = type.getKind().isInterface();
+		String superName = null;
+		if (type.getSuperclass().getKind() == javax.lang.model.type.TypeKind.DECLARED) {
+			superName = binaryName(type.getSuperclass());
+		} else if (isInterface) {
+			superName = Object.class.getName();//as in the class-file
+		}
+		java.util.List<String> interfaces = new java.util.ArrayList<>();
+		for (javax.lang.model.type.TypeMirror i : type.getInterfaces()) {
+			interfaces.add(binaryName(i));
+		}
+		headers.put(name, new ClassHeader(name, superName, interfaces, classAccessFlags(type),
+		                                  runtimeAnnotations(type), members));
+	}
+
+	private void addMember(java.util.List<MemberHeader> members, String className,
+	                       javax.lang.model.element.TypeElement type, javax.lang.model.element.Element e,
+	                       java.util.List<String> annotations) {
+		javax.lang.model.util.Types types = processingEnv.getTypeUtils();
+		int                         flags = memberAccessFlags(e);
+		switch (e.getKind()) {
+			case FIELD:
+			case ENUM_CONSTANT:
+				members.add(new MemberHeader(className, MemberHeader.Kind.FIELD, e.getSimpleName().toString(),
+				                             descriptor(types.erasure(e.asType())), flags, annotations));
+				break;
+			case CONSTRUCTOR:
+			case METHOD:
+				javax.lang.model.element.ExecutableElement method = (javax.lang.model.element.ExecutableElement) e;
+				StringBuilder                               desc   = new StringBuilder("(");
+				if (e.getKind() == javax.lang.model.element.ElementKind.CONSTRUCTOR) {
+					//implicit parameters of the constructors in the class-file
+					if (type.getKind() == javax.lang.model.element.ElementKind.ENUM) {
+						desc.append("Ljava/lang/String;I");
+					} else if (type.getNestingKind() == javax.lang.model.element.NestingKind.MEMBER &&
+					           !type.getModifiers().contains(javax.lang.model.element.Modifier.STATIC)) {
+						desc.append(descriptor(types.erasure(type.getEnclosingElement().asType())));
+					}
+				}
+				for (javax.lang.model.element.VariableElement p : method.getParameters()) {
+					desc.append(descriptor(types.erasure(p.asType())));
+				}
+				desc.append(')').append(descriptor(types.erasure(method.getReturnType())));
+				if (method.isVarArgs()) {
+					flags |= 0x0080;
+				}
+				members.add(new MemberHeader(className,
+				                             e.getKind() == javax.lang.model.element.ElementKind.CONSTRUCTOR ?
+				                             MemberHeader.Kind.CONSTRUCTOR : MemberHeader.Kind.METHOD,
+				                             e.getSimpleName().toString(), desc.toString(), flags, annotations));
+				break;
+			default:
+		}
+	}
+
+	/**
+	 * gets the annotations of an element which are retained at runtime
+	 *
+	 * @param e
+	 * 		the element
+	 *
+	 * @return the fully qualified (binary) names of the annotation types
+	 */
+	private java.util.List<String> runtimeAnnotations(javax.lang.model.element.Element e) {
+		java.util.List<String> names = new java.util.ArrayList<>();
+		for (javax.lang.model.element.AnnotationMirror a : e.getAnnotationMirrors()) {
+			java.lang.annotation.Retention retention = a.getAnnotationType().asElement()
+					.getAnnotation(java.lang.annotation.Retention.class);
+			if (retention != null && retention.value() == java.lang.annotation.RetentionPolicy.RUNTIME) {
+				names.add(binaryName(a.getAnnotationType()));
+			}
+		}
+		return names;
+	}
+
+	private String binaryName(javax.lang.model.type.TypeMirror type) {
+		return binaryName((javax.lang.model.element.TypeElement) processingEnv.getTypeUtils().asElement(type));
+	}
+
+	private String binaryName(javax.lang.model.element.TypeElement type) {
+		return processingEnv.getElementUtils().getBinaryName(type).toString();
+	}
+
+	/**
+	 * creates the descriptor (JVMS 4.3.2) of an erased type
+	 *
+	 * @param type
+	 * 		the erased type
+	 *
+	 * @return the descriptor
+	 */
+	private String descriptor(javax.lang.model.type.TypeMirror type) {
+		switch (type.getKind()) {
+			case BOOLEAN:
+				return "Z";
+			case BYTE:
+				return "B";
+			case CHAR:
+				return "C";
+			case SHORT:
+				return "S";
+			case INT:
+				return "I";
+			case LONG:
+				return "J";
+			case FLOAT:
+				return "F";
+			case DOUBLE:
+				return "D";
+			case VOID:
+				return "V";
+			case ARRAY:
+				return "[" + descriptor(((javax.lang.model.type.ArrayType) type).getComponentType());
+			default:
+				return "L" + binaryName(type).replace('.', '/') + ";";
+		}
+	}
+
+	/**
+	 * computes the access flags of the class-file of a type as javac writes them
+	 *
+	 * @param type
+	 * 		the type
+	 *
+	 * @return the access flags
+	 */
+	private static int classAccessFlags(javax.lang.model.element.TypeElement type) {
+		java.util.Set<javax.lang.model.element.Modifier> modifiers = type.getModifiers();
+		int                                              flags     = 0;
+		//protected nested classes are public in the class-file, private ones package-private
+		if (modifiers.contains(javax.lang.model.element.Modifier.PUBLIC) ||
+		    modifiers.contains(javax.lang.model.element.Modifier.PROTECTED)) {
+			flags |= ClassHeader.ACC_PUBLIC;
+		}
+		if (modifiers.contains(javax.lang.model.element.Modifier.FINAL)) {
+			flags |= ClassHeader.ACC_FINAL;
+		}
+		if (modifiers.contains(javax.lang.model.element.Modifier.ABSTRACT)) {
+			flags |= ClassHeader.ACC_ABSTRACT;
+		}
+		switch (type.getKind()) {
+			case ANNOTATION_TYPE:
+				flags |= ClassHeader.ACC_ANNOTATION | ClassHeader.ACC_INTERFACE | ClassHeader.ACC_ABSTRACT;
+				break;
+			case INTERFACE:
+				flags |= ClassHeader.ACC_INTERFACE | ClassHeader.ACC_ABSTRACT;
+				break;
+			case ENUM:
+				flags |= ClassHeader.ACC_ENUM | 0x0020;//ACC_SUPER
+				break;
+			default:
+				flags |= 0x0020;//ACC_SUPER
+		}
+		return flags;
+	}
+
+	/**
+	 * computes the access flags of a field, method or constructor
+	 *
+	 * @param e
+	 * 		the member
+	 *
+	 * @return the access flags
+	 */
+	private static int memberAccessFlags(javax.lang.model.element.Element e) {
+		int flags = 0;
+		for (javax.lang.model.element.Modifier m : e.getModifiers()) {
+			switch (m) {
+				case PUBLIC:
+					flags |= java.lang.reflect.Modifier.PUBLIC;
+					break;
+				case PRIVATE:
+					flags |= java.lang.reflect.Modifier.PRIVATE;
+					break;
+				case PROTECTED:
+					flags |= java.lang.reflect.Modifier.PROTECTED;
+					break;
+				case STATIC:
+					flags |= java.lang.reflect.Modifier.STATIC;
+					break;
+				case FINAL:
+					flags |= java.lang.reflect.Modifier.FINAL;
+					break;
+				case SYNCHRONIZED:
+					flags |= java.lang.reflect.Modifier.SYNCHRONIZED;
+					break;
+				case VOLATILE:
+					flags |= java.lang.reflect.Modifier.VOLATILE;
+					break;
+				case TRANSIENT:
+					flags |= java.lang.reflect.Modifier.TRANSIENT;
+					break;
+				case NATIVE:
+					flags |= java.lang.reflect.Modifier.NATIVE;
+					break;
+				case ABSTRACT:
+					flags |= java.lang.reflect.Modifier.ABSTRACT;
+					break;
+				default:
+			}
+		}
+		if (e.getKind() == javax.lang.model.element.ElementKind.ENUM_CONSTANT) {
+			flags |= ClassHeader.ACC_ENUM;
+		}
+		return flags;
+	}
+}
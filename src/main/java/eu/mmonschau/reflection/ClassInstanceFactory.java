@@ -6,6 +6,14 @@ package eu.mmonschau.reflection;
 
 /**
  * Creates a new Instance of a class using a constructor and arguments
+ * <p>
+ * The constructor and the arguments are bound to a {@link java.lang.invoke.MethodHandle} once, so a call of
+ * {@link #newInstance()} needs neither access checks nor an argument array. The handle is held in an instance field,
+ * so the JIT treats it as a non-constant and calls it through the handle; it is only inlined where a factory itself is
+ * a constant. Where the call should be inlined, use the creators of
+ * {@link ClassInstatiator#getInstanceCreator(Class, java.util.List)} with the {@link InstantiationBackend#GENERATED}
+ * backend, which call the constructor directly from a generated class. This class is that backend's fallback, so it
+ * does not delegate to it. If the constructor cannot be unreflected it is called reflectively.
  *
  * @param <T>
  * 		the Class to create
@@ -13,15 +21,28 @@ package eu.mmonschau.reflection;
  * @see eu.mmonschau.reflection.ClassInstatiator#getInstanceFactory(Class, java.util.List)
  */
 public class ClassInstanceFactory<T> implements ClassInstanceCreator<T> {
+	private static final java.lang.invoke.MethodType FACTORY_TYPE =
+			java.lang.invoke.MethodType.methodType(Object.class);
+
 	private final java.lang.reflect.Constructor<T> constructor;
 	private final Object[]                         args;
+	private final java.lang.invoke.MethodHandle    handle;
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public T newInstance() {
+		if (handle == null) {
+			try {
+				return this.constructor.newInstance(args);
+			} catch (InstantiationException | IllegalAccessException | java.lang.reflect.InvocationTargetException e) {
+				throw new RuntimeException(e);
+			}
+		}
 		try {
-			return this.constructor.newInstance(args);
-		} catch (InstantiationException | IllegalAccessException | java.lang.reflect.InvocationTargetException e) {
-			throw new RuntimeException(e);
+			return (T) handle.invokeExact();
+		} catch (Throwable e) {
+			//wrapped as by the reflective call
+			throw new RuntimeException(new java.lang.reflect.InvocationTargetException(e));
 		}
 	}
 
@@ -33,5 +54,31 @@ public class ClassInstanceFactory<T> implements ClassInstanceCreator<T> {
 	ClassInstanceFactory(java.lang.reflect.Constructor<T> constructor, Object[] args) {
 		this.constructor = constructor;
 		this.args = args;
+		this.handle = bind(constructor, args);
+	}
+
+	/**
+	 * binds the arguments to a method handle of the constructor
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 * @param args
+	 * 		args matching to the constructor
+	 *
+	 * @return a method handle of type ()Object or null if the constructor is not accessible as method handle
+	 */
+	private static java.lang.invoke.MethodHandle bind(java.lang.reflect.Constructor<?> constructor, Object[] args) {
+		try {
+			java.lang.invoke.MethodHandle handle = java.lang.invoke.MethodHandles.publicLookup()
+					.unreflectConstructor(constructor);
+			if (args != null && args.length > 0) {
+				handle = java.lang.invoke.MethodHandles.insertArguments(handle, 0, args);
+			}
+			return handle.asType(FACTORY_TYPE);
+		} catch (IllegalAccessException | ClassCastException | IllegalArgumentException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Using reflection for " + constructor + ": " + e);
+			return null;
+		}
 	}
 }
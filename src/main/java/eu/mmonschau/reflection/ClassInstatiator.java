@@ -12,19 +12,8 @@ import eu.mmonschau.reflection.util.JTextLog;
 @SuppressWarnings("unchecked")
 public class ClassInstatiator {
 
-	private static final java.util.Map<Class<?>, Class<?>> PRIMITIVES_TO_WRAPPERS
-			= new com.google.common.collect.ImmutableMap.Builder<Class<?>, Class<?>>()
-			.put(boolean.class, Boolean.class)
-			.put(byte.class, Byte.class)
-			.put(char.class, Character.class)
-			.put(double.class, Double.class)
-			.put(float.class, Float.class)
-			.put(int.class, Integer.class)
-			.put(long.class, Long.class)
-			.put(short.class, Short.class)
-			.put(void.class, Void.class)
-			.build();
-
+	/** the backend of {@link #getInstanceCreator(Class, java.util.List)} */
+	private static volatile InstantiationBackend backend = selectBackend();
 
 	/**
 	 * gets the constructor with maximum number of arguments
@@ -57,7 +46,7 @@ public class ClassInstatiator {
 	}
 
 	/**
-	 * gets all constructors with no arguments or only primitive and/or String-Arguments
+	 * gets all constructors with no arguments or only arguments convertible from String
 	 *
 	 * @param aClass
 	 * 		the class which constructor to search
@@ -65,12 +54,12 @@ public class ClassInstatiator {
 	 * 		trivial
 	 *
 	 * @return a list of usable constuctor
+	 *
+	 * @see eu.mmonschau.reflection.StringConverters
 	 */
 	public static <T> java.util.List<java.lang.reflect.Constructor<T>> getUsableConstructors(Class<T> aClass) {
-		return (java.util.List<java.lang.reflect.Constructor<T>>) java.util.Arrays.stream(
-				aClass.getConstructors())
-				.filter(constructor -> isUsableInCLIContext(getConstructorArguments(constructor)))
-				.map(constructor -> (java.lang.reflect.Constructor<T>) constructor)
+		return ConstructorPlan.of(aClass).stream()
+				.map(plan -> (java.lang.reflect.Constructor<T>) plan.getConstructor())
 				.collect(java.util.stream.Collectors.toList());
 	}
 
@@ -92,31 +81,6 @@ public class ClassInstatiator {
 	}
 
 
-	/**
-	 * checks whether the given values are Primitives, wrappers or string
-	 *
-	 * @param arguments
-	 * 		the arguments to check
-	 *
-	 * @return false if one argument is not primitive or String
-	 */
-	private static boolean isUsableInCLIContext(java.util.Map<String, Class<?>> arguments) {
-		//System.out.println(arguments);
-		for (Class<?> c : arguments.values()) {
-			//System.out.println(c);
-			if (!c.equals(String.class) && !c.isPrimitive()) {
-				try {
-					//Primitive types have ValueOf Method in Wrapper-Class
-					c.getMethod("valueOf", String.class);
-				} catch (NoSuchMethodException e) {
-					//e.printStackTrace();
-					return false;
-				}
-			}
-		}
-		return true;
-	}
-
 	/**
 	 * Tries to create an instance of the class unsing the given argument and values
 	 *
@@ -134,141 +98,249 @@ public class ClassInstatiator {
 	 */
 	public static <T> T createInstance(java.lang.reflect.Constructor<T> c, java.util.List<String> values)
 			throws InstantiationException {
-		try {
-			java.lang.reflect.Parameter[] parameters = c.getParameters();
-			if (parameters.length == 0) {
-				return (T) c.newInstance();
-			}
-			if (values == null || parameters.length != values.size()) {
-				throw new InstantiationException("Tried to instantiate class without proper Argument number");
-			}
-			return (T) c.newInstance(castArgsToMatchConstructor(c, values));
-		} catch (java.lang.reflect.InvocationTargetException | IllegalAccessException e) {
-			throw new InstantiationException(e.toString());
+		ConstructorPlan plan = ConstructorPlan.of(c);
+		if (plan == null) {
+			throw new InstantiationException("Constructor is not usable with String arguments: " + c);
 		}
+		return (T) plan.newInstance(values);
 	}
 
 	/**
-	 * cast values to matching objects
+	 * crates an instance of a class using the given arguments, if several constructors accept the arguments the one
+	 * with the most specific parameter types is used
 	 *
 	 * @param c
-	 * 		the constructor
+	 * 		the class to create an instance of
 	 * @param values
-	 * 		the arguments for the constructor
+	 * 		the arguments to use in the constructor
+	 * @param <T>
+	 * 		the class to create an instance of
 	 *
-	 * @return an array of objects for passing to the constructor
+	 * @return a new instance
 	 *
-	 * @throws java.lang.reflect.InvocationTargetException
-	 * 		if the constructor is not callable with the given values
-	 * @throws IllegalAccessException
-	 * 		if the constructor is not accessible
+	 * @throws InstantiationException
+	 * 		if the instantiation fails
 	 */
-	private static Object[] castArgsToMatchConstructor(java.lang.reflect.Constructor<?> c,
-	                                                   java.util.List<String> values)
-			throws java.lang.reflect.InvocationTargetException, IllegalAccessException {
-		java.util.LinkedList<Object>  args       = new java.util.LinkedList<>();
-		java.lang.reflect.Parameter[] parameters = c.getParameters();
-		for (int i = 0; i < parameters.length; i++) {
-			Object   arg     = null;
-			String   toCast  = values.get(i);
-			Class<?> aClass1 = (parameters[i]).getType();
-			aClass1 = aClass1.isPrimitive() ? PRIMITIVES_TO_WRAPPERS.get(aClass1) : aClass1;
-			if (aClass1.equals(String.class)) {
-				arg = toCast;
-			} else {
-				try {
-					arg = aClass1.getMethod("valueOf", String.class).invoke(null, toCast);
-				} catch (NoSuchMethodException e) {
-					throw new RuntimeException(e);
-				}
-			}
-			args.add(arg);
+	public static <T> T createInstance(Class<T> c, java.util.List<String> values) throws InstantiationException {
+		if (values == null || values.isEmpty()) {
+			return createInstance(c);
 		}
-		return args.toArray();
+		return (T) ConstructorPlan.newInstance(c, values);
+	}
 
+
+	/**
+	 * Creates an instance per row of arguments, the candidate constructors are resolved once per shape of the rows
+	 * (see {@link #createInstance(Class, java.util.List)}). The rows are processed lazily, a parallel stream is
+	 * processed in parallel.
+	 *
+	 * @param aClass
+	 * 		the class to create instances of
+	 * @param rows
+	 * 		the arguments to use in the constructor, one list per instance
+	 * @param <T>
+	 * 		the class to create instances of
+	 *
+	 * @return a stream of new instances, a row which matches no constructor causes a RuntimeException wrapping an
+	 * InstantiationException when it is processed
+	 */
+	public static <T> java.util.stream.Stream<T> createInstances(Class<T> aClass,
+	                                                           java.util.stream.Stream<java.util.List<String>> rows) {
+		RowInstantiator<T> instantiator = new RowInstantiator<>(aClass);
+		return rows.map(row -> {
+			try {
+				return instantiator.newInstance(row);
+			} catch (InstantiationException e) {
+				throw new RuntimeException(e);
+			}
+		});
 	}
 
 	/**
-	 * crates an instance of a class using the given arguments
+	 * Creates an instance per row of columnar arguments, the candidate constructors are resolved once per shape of the
+	 * rows
 	 *
-	 * @param c
+	 * @param aClass
+	 * 		the class to create instances of
+	 * @param columns
+	 * 		one array per constructor argument, holding its values of all rows; all arrays must have the same length
+	 * @param <T>
+	 * 		the class to create instances of
+	 *
+	 * @return an array with one new instance per row
+	 *
+	 * @throws InstantiationException
+	 * 		if a row matches no constructor
+	 */
+	public static <T> T[] createInstances(Class<T> aClass, String[][] columns) throws InstantiationException {
+		return new RowInstantiator<>(aClass).fill(columns, null);
+	}
+
+	/**
+	 * Creates an instance per row of columnar arguments like {@link #createInstances(Class, String[][])}, the rows
+	 * are partitioned across a pool
+	 *
+	 * @param aClass
+	 * 		the class to create instances of
+	 * @param columns
+	 * 		one array per constructor argument, holding its values of all rows; all arrays must have the same length
+	 * @param pool
+	 * 		the pool to create the instances in, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}
+	 * @param <T>
+	 * 		the class to create instances of
+	 *
+	 * @return an array with one new instance per row
+	 *
+	 * @throws InstantiationException
+	 * 		if a row matches no constructor
+	 */
+	public static <T> T[] createInstances(Class<T> aClass, String[][] columns,
+	                                      java.util.concurrent.ForkJoinPool pool) throws InstantiationException {
+		return new RowInstantiator<>(aClass).fill(columns, java.util.Objects.requireNonNull(pool));
+	}
+
+	/**
+	 * Creates an Instance Factory for given class and arguments, the constructor is chosen as by
+	 * {@link #createInstance(Class, java.util.List)} but not called. The factory calls a method handle, see
+	 * {@link #getInstanceCreator(Class, java.util.List)} for creators the JIT can inline.
+	 *
+	 * @param aClass
 	 * 		the class to create an instance of
 	 * @param values
 	 * 		the arguments to use in the constructor
 	 * @param <T>
 	 * 		the class to create an instance of
 	 *
-	 * @return a new instance
+	 * @return a instance factory
 	 *
 	 * @throws InstantiationException
-	 * 		if the instantiation fails
+	 * 		if the class cannot be created with the given args
 	 */
-	public static <T> T createInstance(Class<T> c, java.util.List<String> values) throws InstantiationException {
-		T result = null;
-		if (values == null || values.isEmpty()) {
-			return createInstance(c);
-
-		} else {
-			for (java.lang.reflect.Constructor<T> constructor : getUsableConstructors(c)) {
-				if (constructor.getParameterCount() == values.size()) {
-					try {
-						result = createInstance(constructor, values);
-						return result;
-					} catch (InstantiationException ignored) {
-					}
-				}
-			}
-		}
-		if (result == null) {
-			throw new InstantiationException();
-		}
-		return result;
+	public static <T> ClassInstanceFactory<T> getInstanceFactory(Class<T> aClass, java.util.List<String> values)
+			throws InstantiationException {
+		return (ClassInstanceFactory<T>) getInstanceCreator(aClass, values, InstantiationBackend.METHOD_HANDLE);
 	}
 
+	/**
+	 * Creates an Instance Creator for given class and arguments with the current backend, the constructor is chosen
+	 * as by {@link #createInstance(Class, java.util.List)} but not called
+	 *
+	 * @param aClass
+	 * 		the class to create an instance of
+	 * @param values
+	 * 		the arguments to use in the constructor
+	 * @param <T>
+	 * 		the class to create an instance of
+	 *
+	 * @return a instance creator
+	 *
+	 * @throws InstantiationException
+	 * 		if the class cannot be created with the given args
+	 * @see #setBackend(InstantiationBackend)
+	 */
+	public static <T> ClassInstanceCreator<T> getInstanceCreator(Class<T> aClass, java.util.List<String> values)
+			throws InstantiationException {
+		return getInstanceCreator(aClass, values, backend);
+	}
 
 	/**
-	 * Creates an Instance Factory for given class and arguments
+	 * Creates an Instance Creator for given class and arguments with given backend, the constructor is chosen as by
+	 * {@link #createInstance(Class, java.util.List)} but not called
 	 *
 	 * @param aClass
 	 * 		the class to create an instance of
 	 * @param values
 	 * 		the arguments to use in the constructor
+	 * @param backend
+	 * 		the backend building the creator
 	 * @param <T>
 	 * 		the class to create an instance of
 	 *
-	 * @return a instance factory
+	 * @return a instance creator
 	 *
 	 * @throws InstantiationException
 	 * 		if the class cannot be created with the given args
 	 */
-	public static <T> ClassInstanceFactory<T> getInstanceFactory(Class<T> aClass, java.util.List<String> values)
+	public static <T> ClassInstanceCreator<T> getInstanceCreator(Class<T> aClass, java.util.List<String> values,
+	                                                            InstantiationBackend backend)
 			throws InstantiationException {
-		java.lang.reflect.Constructor<T> cons = null;
-		Object[]                         args = null;
 		if (values == null || values.isEmpty()) {
-			createInstance(aClass);
-
+			try {
+				return backend.newCreator(aClass.getConstructor(), new Object[0]);
+			} catch (NoSuchMethodException e) {
+				throw new InstantiationException("No default constructor of " + aClass.getName());
+			}
+		}
+		ConstructorPlan best = ConstructorPlan.resolve(aClass, values);
+		if (best != null) {
+			try {
+				return backend.newCreator((java.lang.reflect.Constructor<T>) best.getConstructor(),
+				                          best.convert(values));
+			} catch (InstantiationException ignored) {
+				//a registered converter accepted a value it cannot convert
+			}
 		}
-		for (java.lang.reflect.Constructor<T> constructor : getUsableConstructors(aClass)) {
-			if (constructor.getParameterCount() == values.size()) {
+		//values rejected by the converters may still be convertible
+		for (ConstructorPlan plan : ConstructorPlan.of(aClass, values.size())) {
+			if (plan != best) {
 				try {
-					createInstance(constructor, values);
-					cons = constructor;
-					args = castArgsToMatchConstructor(cons, values);
-					break;
-				} catch (java.lang.reflect.InvocationTargetException |
-						IllegalAccessException | InstantiationException ignored) {
+					return backend.newCreator((java.lang.reflect.Constructor<T>) plan.getConstructor(),
+					                          plan.convert(values));
+				} catch (InstantiationException ignored) {
 				}
 			}
 		}
-		if (cons == null && args == null) {
-			throw new InstantiationException();
+		throw new InstantiationException("No constructor of " + aClass.getName() + " accepts " + values);
+	}
+
+	/**
+	 * @return the backend of {@link #getInstanceCreator(Class, java.util.List)}
+	 */
+	public static InstantiationBackend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * Sets the backend of {@link #getInstanceCreator(Class, java.util.List)}
+	 *
+	 * @param backend
+	 * 		an available backend or null to select the default again
+	 */
+	public static void setBackend(InstantiationBackend backend) {
+		if (backend != null && !backend.isAvailable()) {
+			throw new IllegalArgumentException("Backend is not available: " + backend.getName());
+		}
+		ClassInstatiator.backend = backend == null ? selectBackend() : backend;
+	}
+
+	/**
+	 * selects the first available backend registered with {@link java.util.ServiceLoader}, else the fastest
+	 * available built-in backend
+	 *
+	 * @return the backend
+	 */
+	private static InstantiationBackend selectBackend() {
+		try {
+			for (InstantiationBackend provided : java.util.ServiceLoader.load(InstantiationBackend.class)) {
+				if (provided.isAvailable()) {
+					return provided;
+				}
+			}
+		} catch (java.util.ServiceConfigurationError e) {
+			JTextLog.getLogger().log(java.util.logging.Level.FINE, e::toString);
+		}
+		for (InstantiationBackend builtIn : new InstantiationBackend[]{InstantiationBackend.GENERATED,
+		                                                               InstantiationBackend.METHOD_HANDLE}) {
+			if (builtIn.isAvailable()) {
+				return builtIn;
+			}
 		}
-		return new ClassInstanceFactory<>(cons, args);
+		return InstantiationBackend.REFLECTION;
 	}
 
 	/**
-	 * Tries to create an Instance of given class by using default Constructor or getInstance Method
+	 * Tries to create an Instance of given class by using default Constructor, getInstance Method or a static factory
+	 * method (of, valueOf, create). The way is searched once per class and reused, including that there is none.
 	 *
 	 * @param aClass
 	 * 		the Class to Instatiate
@@ -282,15 +354,38 @@ public class ClassInstatiator {
 	 */
 	public static <T> T createInstance(Class<T> aClass) throws InstantiationException {
 		try {
-			return (T) aClass.newInstance();
-		} catch (InstantiationException | IllegalAccessException e) {
-			JTextLog.getLogger().log(java.util.logging.Level.FINE, e.toString());
+			return getInstanceSupplier(aClass).get();
+		} catch (RuntimeException e) {
+			if (!(e.getCause() instanceof java.lang.reflect.InvocationTargetException)) {
+				throw e;
+			}
+			JTextLog.getLogger().log(java.util.logging.Level.FINE, () -> e.getCause().getCause().toString());
+			throw (InstantiationException) new InstantiationException(
+					"Could not Create Instance of Class " + aClass.getName()).initCause(e.getCause().getCause());
 		}
-		try {
-			return (T) aClass.getMethod("getInstance").invoke(null);
-		} catch (IllegalAccessException | java.lang.reflect.InvocationTargetException | NoSuchMethodException e) {
-			JTextLog.getLogger().log(java.util.logging.Level.FINE, e.toString());
+	}
+
+	/**
+	 * Gets the way {@link #createInstance(Class)} creates instances of given class, bound to the default
+	 * Constructor, getInstance Method or static factory method. A throwable of the call is wrapped into a
+	 * RuntimeException with an {@link java.lang.reflect.InvocationTargetException} as cause.
+	 *
+	 * @param aClass
+	 * 		the Class to Instatiate
+	 * @param <T>
+	 * 		the type represented by the class
+	 *
+	 * @return the supplier of instances
+	 *
+	 * @throws InstantiationException
+	 * 		if the class has no public no-arg constructor or static method to create an instance
+	 */
+	public static <T> java.util.function.Supplier<T> getInstanceSupplier(Class<T> aClass)
+			throws InstantiationException {
+		java.util.function.Supplier<Object> supplier = CreationStrategy.of(aClass).getSupplier();
+		if (supplier == null) {
+			throw new InstantiationException("Could not Create Instance of Class " + aClass.getName());
 		}
-		throw new InstantiationException("Could not Create Instance of Class " + aClass.getName());
+		return (java.util.function.Supplier<T>) supplier;
 	}
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Scans the jars and directories of individual class loaders, URLs and module layers, e.g. of plugins, exploded WARs
+ * or the module path. The result of every loader is kept and cached separately: a loader is only scanned when it is
+ * requested the first time or after {@link #invalidate(ClassLoader)}, so reloading one plugin does not rescan the
+ * others. The cache holds its loaders weakly, the partition of a collected loader is dropped with it.
+ * <p>
+ * The locations of a loader are found by its urls if it is a {@link java.net.URLClassLoader}, by the class and module
+ * path for the system class loader and by the roots of its resources otherwise. Only locations of the loader itself
+ * are scanned, not those of its parents.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public class ClassLoaderScanner {
+
+	private static final String MODULE_INFO = "module-info.class";
+	private static final String MANIFEST    = "META-INF/MANIFEST.MF";
+
+	private final ClassIndexCache                         cache;
+	private final java.util.concurrent.ExecutorService    executor;
+	private final java.util.Map<ClassLoader, Partition>   partitions      =
+			java.util.Collections.synchronizedMap(new java.util.WeakHashMap<>());
+	/** the module locations of loaders scanned by {@link #scanLayer(Object)}, kept apart from their full scans */
+	private final java.util.Map<ClassLoader, Partition>   layerPartitions =
+			java.util.Collections.synchronizedMap(new java.util.WeakHashMap<>());
+
+	/**
+	 * A scanner which scans sequentially without cache file
+	 */
+	public ClassLoaderScanner() {
+		this(null, null);
+	}
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param cache
+	 * 		a cache for unchanged jars and directories or null, it is updated but not saved
+	 * @param executor
+	 * 		the executor to scan the locations of a loader in parallel or null to scan sequentially, it is not shut
+	 * 		down
+	 */
+	public ClassLoaderScanner(ClassIndexCache cache, java.util.concurrent.ExecutorService executor) {
+		this.cache = cache;
+		this.executor = executor;
+	}
+
+	/**
+	 * Gets the classes of a class loader, it is only scanned if it was not scanned before
+	 *
+	 * @param loader
+	 * 		the class loader
+	 *
+	 * @return the indexes of the classes in the locations of the loader, not of its parents
+	 */
+	public ScanResult scan(ClassLoader loader) {
+		return getPartition(loader).result;
+	}
+
+	/**
+	 * Gets the classes of several class loaders, each one is only scanned if it was not scanned before
+	 *
+	 * @param loaders
+	 * 		the class loaders
+	 *
+	 * @return the indexes per loader, in the order of the loaders
+	 */
+	public java.util.Map<ClassLoader, ScanResult> scan(java.util.Collection<? extends ClassLoader> loaders) {
+		java.util.Map<ClassLoader, ScanResult> results = new java.util.LinkedHashMap<>();
+		for (ClassLoader loader : loaders) {
+			results.put(loader, scan(loader));
+		}
+		return results;
+	}
+
+	/**
+	 * Gets the classes of the modules of a module layer, partitioned by the loaders the layer maps them to. Loaders
+	 * which were scanned before with the same modules are not scanned again. The results only contain the modules of
+	 * the layer and are cached apart from {@link #scan(ClassLoader)}. Before Java 9 there are no module layers and the
+	 * result is empty.
+	 *
+	 * @param layer
+	 * 		a {@code java.lang.ModuleLayer}, it is accessed reflectively for Java 8 compatibility
+	 *
+	 * @return the indexes per loader
+	 */
+	public java.util.Map<ClassLoader, ScanResult> scanLayer(Object layer) {
+		java.util.Map<ClassLoader, ScanResult> results = new java.util.LinkedHashMap<>();
+		getModuleLocations(layer).forEach(
+				(loader, locations) -> results.put(loader, getLayerPartition(loader, locations).result));
+		return results;
+	}
+
+	/**
+	 * Scans jars and directories given by urls, the result is not cached per loader
+	 *
+	 * @param urls
+	 * 		{@code file:} urls of jars, directories or exploded WARs and {@code jar:} urls of jars
+	 *
+	 * @return the indexes of the classes
+	 */
+	public ScanResult scanUrls(java.util.Collection<java.net.URL> urls) {
+		java.util.List<java.io.File> locations = new java.util.ArrayList<>();
+		for (java.net.URL url : urls) {
+			java.io.File location = toFile(url);
+			if (location != null) {
+				addLocation(locations, location);
+			}
+		}
+		return scanLocations(distinct(locations));
+	}
+
+	/**
+	 * Gets the locations of a loader, scanning it if it was not scanned before
+	 *
+	 * @param loader
+	 * 		the class loader
+	 *
+	 * @return the scanned jars and directories of the loader
+	 */
+	public java.util.List<java.io.File> getLocations(ClassLoader loader) {
+		return getPartition(loader).locations;
+	}
+
+	/**
+	 * Drops the cached result of a loader, it is scanned again when it is requested the next time
+	 *
+	 * @param loader
+	 * 		the class loader
+	 *
+	 * @return true if a result was cached
+	 */
+	public boolean invalidate(ClassLoader loader) {
+		boolean scanned = partitions.remove(loader) != null;
+		return layerPartitions.remove(loader) != null || scanned;
+	}
+
+	/**
+	 * Drops the cached results of all loaders
+	 */
+	public void invalidateAll() {
+		partitions.clear();
+		layerPartitions.clear();
+	}
+
+	/**
+	 * @return the loaders with a cached result
+	 */
+	public java.util.Set<ClassLoader> getScannedLoaders() {
+		java.util.Set<ClassLoader> loaders;
+		synchronized (partitions) {
+			loaders = new java.util.HashSet<>(partitions.keySet());
+		}
+		synchronized (layerPartitions) {
+			loaders.addAll(layerPartitions.keySet());
+		}
+		return loaders;
+	}
+
+	/**
+	 * Loads classes of a scanned loader by their fully qualified names without initializing them
+	 *
+	 * @param loader
+	 * 		the class loader of the classes
+	 * @param classNames
+	 * 		the fully qualified names, e.g. from {@link #scan(ClassLoader)}
+	 *
+	 * @return the classes which could be loaded
+	 */
+	public static java.util.Collection<Class<?>> loadClasses(ClassLoader loader,
+	                                                         java.util.Collection<String> classNames) {
+		return ClassScanner.loadClasses(classNames, loader, null);
+	}
+
+	private Partition getPartition(ClassLoader loader) {
+		Partition partition = partitions.get(loader);
+		if (partition == null) {
+			//scanned outside of the lock, concurrent first scans of a loader may both scan it
+			java.util.List<java.io.File> locations = getClassLocations(loader);
+			partition = new Partition(locations, scanLocations(locations));
+			Partition previous = partitions.putIfAbsent(loader, partition);
+			if (previous != null) {
+				partition = previous;
+			}
+		}
+		return partition;
+	}
+
+	private Partition getLayerPartition(ClassLoader loader, java.util.List<java.io.File> locations) {
+		Partition partition = layerPartitions.get(loader);
+		if (partition == null || !partition.locations.equals(locations)) {
+			//scanned outside of the lock like by getPartition, the first of concurrent scans is kept
+			Partition scanned = new Partition(locations, scanLocations(locations));
+			synchronized (layerPartitions) {
+				partition = layerPartitions.get(loader);
+				if (partition == null || !partition.locations.equals(locations)) {
+					layerPartitions.put(loader, scanned);
+					partition = scanned;
+				}
+			}
+		}
+		return partition;
+	}
+
+	private ScanResult scanLocations(java.util.List<java.io.File> locations) {
+		if (executor != null) {
+			return new ParallelClassScan(executor, cache).scan(locations);
+		}
+		return ScanResult.of(locations.stream()
+				                     .map(location -> cache != null ?
+				                                      cache.getClassHeaders(location) :
+				                                      ClassScanner.getClassHeaders(location))
+				                     .flatMap(java.util.Collection::stream));
+	}
+
+	/**
+	 * Finds the jars and directories of a class loader, without those of its parents and of $JAVAHOME
+	 *
+	 * @param loader
+	 * 		the class loader, null for the bootstrap loader which has no scanned locations
+	 *
+	 * @return the locations in search order
+	 */
+	public static java.util.List<java.io.File> getClassLocations(ClassLoader loader) {
+		java.util.List<java.io.File> locations = new java.util.ArrayList<>();
+		if (loader == null) {
+			return locations;
+		}
+		if (loader instanceof java.net.URLClassLoader) {
+			for (java.net.URL url : ((java.net.URLClassLoader) loader).getURLs()) {
+				java.io.File location = toFile(url);
+				if (location != null) {
+					addLocation(locations, location);
+				}
+			}
+		} else if (loader == ClassLoader.getSystemClassLoader()) {
+			return getSystemClassLocations();
+		} else {
+			java.util.Set<java.io.File> inherited = getResourceRoots(loader.getParent());
+			for (java.io.File root : getResourceRoots(loader)) {
+				if (!inherited.contains(root)) {
+					addLocation(locations, root);
+				}
+			}
+		}
+		return distinct(locations);
+	}
+
+	/**
+	 * Finds the jars and directories of the class path and module path, except those in $JAVAHOME
+	 *
+	 * @return the locations in search order
+	 */
+	public static java.util.List<java.io.File> getSystemClassLocations() {
+		java.util.List<java.io.File> locations = new java.util.ArrayList<>();
+		for (String property : new String[]{"java.class.path", "jdk.module.path"}) {
+			String path = System.getProperty(property);
+			if (path == null || path.isEmpty()) {
+				continue;
+			}
+			for (String entry : path.split(java.io.File.pathSeparator)) {
+				if (entry.isEmpty()) {
+					continue;
+				}
+				java.io.File location = new java.io.File(entry);
+				if ("jdk.module.path".equals(property)) {
+					addModulePathEntry(locations, location);
+				} else {
+					addLocation(locations, location);
+				}
+			}
+		}
+		return distinct(locations);
+	}
+
+	/**
+	 * adds a location, an exploded WAR is added as its classes directory and libraries
+	 */
+	private static void addLocation(java.util.List<java.io.File> locations, java.io.File location) {
+		java.io.File webInf = new java.io.File(location, "WEB-INF");
+		if (location.isDirectory() && webInf.isDirectory()) {
+			java.io.File classes = new java.io.File(webInf, "classes");
+			if (classes.isDirectory()) {
+				locations.add(classes);
+			}
+			java.io.File[] libraries = new java.io.File(webInf, "lib").listFiles(ClassScanner::isJar);
+			if (libraries != null) {
+				java.util.Arrays.sort(libraries);
+				locations.addAll(java.util.Arrays.asList(libraries));
+			}
+		} else {
+			locations.add(location);
+		}
+	}
+
+	/**
+	 * adds an entry of the module path, which is either a module or a directory of modules
+	 */
+	private static void addModulePathEntry(java.util.List<java.io.File> locations, java.io.File entry) {
+		if (!entry.isDirectory() || new java.io.File(entry, MODULE_INFO).isFile()) {
+			locations.add(entry);
+			return;
+		}
+		java.io.File[] modules = entry.listFiles(
+				file -> ClassScanner.isJar(file) || new java.io.File(file, MODULE_INFO).isFile());
+		if (modules != null) {
+			java.util.Arrays.sort(modules);
+			locations.addAll(java.util.Arrays.asList(modules));
+		}
+	}
+
+	private static java.util.List<java.io.File> distinct(java.util.List<java.io.File> locations) {
+		String javaHome = System.getProperty("java.home");
+		return locations.stream()
+				.filter(location -> !location.getPath().startsWith(javaHome))
+				.distinct()
+				.collect(java.util.stream.Collectors.toList());
+	}
+
+	/**
+	 * finds the jars and directories a loader and its parents find resources in, by the roots of the packages and
+	 * the manifests of jars
+	 */
+	private static java.util.Set<java.io.File> getResourceRoots(ClassLoader loader) {
+		java.util.Set<java.io.File> roots = new java.util.LinkedHashSet<>();
+		if (loader == null) {
+			return roots;
+		}
+		try {
+			for (String resource : new String[]{"", MANIFEST}) {
+				java.util.Enumeration<java.net.URL> urls = loader.getResources(resource);
+				while (urls.hasMoreElements()) {
+					java.net.URL url = urls.nextElement();
+					//directories are found as package root, jars by their manifest
+					java.io.File root = resource.isEmpty() || "jar".equals(url.getProtocol()) ? toFile(url) : null;
+					if (root != null) {
+						roots.add(root);
+					}
+				}
+			}
+		} catch (java.io.IOException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Could not list resources of " + loader + ": " + e);
+		}
+		return roots;
+	}
+
+	/**
+	 * converts a {@code file:} url or the jar of a {@code jar:} url to a file
+	 *
+	 * @param url
+	 * 		the url
+	 *
+	 * @return the file or null if the url does not denote a local file
+	 */
+	static java.io.File toFile(java.net.URL url) {
+		try {
+			java.net.URL file = url;
+			if ("jar".equals(url.getProtocol())) {
+				String spec      = url.getPath();
+				int    separator = spec.indexOf("!/");
+				file = new java.net.URL(separator < 0 ? spec : spec.substring(0, separator));
+			}
+			if (!"file".equals(file.getProtocol())) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+						"Not scanning " + url);
+				return null;
+			}
+			return java.nio.file.Paths.get(file.toURI()).toFile();
+		} catch (java.net.MalformedURLException | java.net.URISyntaxException | IllegalArgumentException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Not scanning " + url + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * reads the locations of the modules of a layer reflectively, grouped by the loaders they are mapped to
+	 *
+	 * @param layer
+	 * 		a ModuleLayer
+	 *
+	 * @return the locations per loader, modules of the bootstrap loader and without file location are omitted
+	 */
+	private static java.util.Map<ClassLoader, java.util.List<java.io.File>> getModuleLocations(Object layer) {
+		java.util.Map<ClassLoader, java.util.List<java.io.File>> locations = new java.util.LinkedHashMap<>();
+		try {
+			Class<?> layerClass      = Class.forName("java.lang.ModuleLayer");
+			Class<?> configuration   = Class.forName("java.lang.module.Configuration");
+			Class<?> resolvedModule  = Class.forName("java.lang.module.ResolvedModule");
+			Class<?> moduleReference = Class.forName("java.lang.module.ModuleReference");
+			if (!layerClass.isInstance(layer)) {
+				throw new IllegalArgumentException("Not a module layer: " + layer);
+			}
+			java.lang.reflect.Method findLoader = layerClass.getMethod("findLoader", String.class);
+			java.lang.reflect.Method name       = resolvedModule.getMethod("name");
+			java.lang.reflect.Method reference  = resolvedModule.getMethod("reference");
+			java.lang.reflect.Method location   = moduleReference.getMethod("location");
+			Object modules = configuration.getMethod("modules")
+					.invoke(layerClass.getMethod("configuration").invoke(layer));
+			for (Object module : (java.util.Set<?>) modules) {
+				ClassLoader loader = (ClassLoader) findLoader.invoke(layer, name.invoke(module));
+				java.util.Optional<?> uri = (java.util.Optional<?>) location.invoke(reference.invoke(module));
+				if (loader != null && uri.isPresent() && "file".equals(((java.net.URI) uri.get()).getScheme())) {
+					locations.computeIfAbsent(loader, key -> new java.util.ArrayList<>())
+							.add(java.nio.file.Paths.get((java.net.URI) uri.get()).toFile());
+				}
+			}
+		} catch (ClassNotFoundException e) {
+			//Java 8, there are no module layers
+		} catch (ReflectiveOperationException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Could not read module layer: " + e);
+		}
+		locations.replaceAll((loader, files) -> distinct(files));
+		return locations;
+	}
+
+	/**
+	 * The scanned locations and result of one loader, it must not refer to the loader
+	 */
+	private static final class Partition {
+		private final java.util.List<java.io.File> locations;
+		private final ScanResult                   result;
+
+		private Partition(java.util.List<java.io.File> locations, ScanResult result) {
+			this.locations = java.util.Collections.unmodifiableList(locations);
+			this.result = result;
+		}
+	}
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Keeps a {@link ScanResult} of jars and class directories up to date while they change. The directories and the
+ * directories containing the jars are observed by a {@link java.nio.file.WatchService}; a changed class-file is read
+ * on its own and a changed jar is read again and compared with its former classes, so only the changed classes are
+ * removed from or added to the indexes. The listeners are notified with the changes of every batch of file system
+ * events.
+ * <p>
+ * If a class occurs in more than one location the header of the first location is indexed, as in a scan. Events are
+ * processed by a daemon thread until the watcher is closed.
+ *
+ * @see eu.mmonschau.reflection.ClassLoaderScanner#getSystemClassLocations()
+ */
+public class ClassPathWatcher implements java.io.Closeable {
+
+	/** the time to wait for further events before a batch is processed, e.g. while a jar is written */
+	private static final long SETTLE_MILLIS = 50;
+
+	private final ScanResult                                                result    =
+			new ScanResult(new ClassHierarchyIndex(), new AnnotationIndex());
+	private final java.util.List<Location>                                  locations =
+			new java.util.concurrent.CopyOnWriteArrayList<>();
+	/** the location whose header of a class is indexed */
+	private final java.util.Map<String, Location>                           owners    = new java.util.HashMap<>();
+	private final java.util.Map<java.nio.file.WatchKey, java.nio.file.Path> keys      =
+			new java.util.concurrent.ConcurrentHashMap<>();
+	private final java.util.List<Listener>                                  listeners =
+			new java.util.concurrent.CopyOnWriteArrayList<>();
+	private final java.nio.file.WatchService                                watchService;
+	private final Thread                                                    thread;
+
+	/**
+	 * Indexes and watches the jars and directories of the class and module path
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file system cannot be watched
+	 */
+	public ClassPathWatcher() throws java.io.IOException {
+		this(ClassLoaderScanner.getSystemClassLocations());
+	}
+
+	/**
+	 * Indexes and watches the given jars and directories, a location which does not exist yet is indexed when it is
+	 * created if its parent directory exists
+	 *
+	 * @param locations
+	 * 		jars and directories in classpath order
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file system cannot be watched
+	 */
+	public ClassPathWatcher(java.util.List<java.io.File> locations) throws java.io.IOException {
+		this.watchService = java.nio.file.FileSystems.getDefault().newWatchService();
+		for (java.io.File location : locations) {
+			add(location);
+		}
+		this.thread = new Thread(this::run, "ClassPathWatcher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * @return the live indexes, they are updated in place
+	 */
+	public ScanResult getScanResult() {
+		return result;
+	}
+
+	/**
+	 * @return the watched jars and directories in classpath order
+	 */
+	public java.util.List<java.io.File> getLocations() {
+		return locations.stream()
+				.map(location -> location.file)
+				.collect(java.util.stream.Collectors.toList());
+	}
+
+	/**
+	 * Adds a listener which is notified on the thread of the watcher
+	 *
+	 * @param listener
+	 * 		the listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(java.util.Objects.requireNonNull(listener));
+	}
+
+	/**
+	 * Removes a listener
+	 *
+	 * @param listener
+	 * 		the listener
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Watches another jar or directory after the existing ones, its classes are reported as added
+	 *
+	 * @param location
+	 * 		a jar or directory, e.g. of a new plugin
+	 *
+	 * @throws java.io.IOException
+	 * 		if the location cannot be watched
+	 */
+	public void addLocation(java.io.File location) throws java.io.IOException {
+		notify(add(location));
+	}
+
+	/**
+	 * Stops watching, the indexes keep their last state
+	 *
+	 * @throws java.io.IOException
+	 * 		if the watch service cannot be closed
+	 */
+	@Override
+	public void close() throws java.io.IOException {
+		thread.interrupt();
+		watchService.close();
+	}
+
+	private java.util.List<ClassChangeEvent> add(java.io.File file) throws java.io.IOException {
+		Location location = new Location(file);
+		locations.add(location);
+		if (!location.jar && java.nio.file.Files.isDirectory(location.root)) {
+			registerTree(location.root);
+		} else {
+			//a jar or a directory which does not exist yet is observed by its parent
+			java.nio.file.Path parent = location.root.getParent();
+			if (parent != null && java.nio.file.Files.isDirectory(parent)) {
+				register(parent);
+			}
+		}
+		java.util.List<ClassChangeEvent> events = new java.util.ArrayList<>();
+		synchronized (this) {
+			resync(location, events);
+		}
+		return events;
+	}
+
+	private void register(java.nio.file.Path directory) throws java.io.IOException {
+		keys.put(directory.register(watchService, java.nio.file.StandardWatchEventKinds.ENTRY_CREATE,
+		                            java.nio.file.StandardWatchEventKinds.ENTRY_DELETE,
+		                            java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY), directory);
+	}
+
+	private void registerTree(java.nio.file.Path root) throws java.io.IOException {
+		java.nio.file.Files.walkFileTree(root, new java.nio.file.SimpleFileVisitor<java.nio.file.Path>() {
+			@Override
+			public java.nio.file.FileVisitResult preVisitDirectory(java.nio.file.Path dir,
+			                                                       java.nio.file.attribute.BasicFileAttributes attrs)
+					throws java.io.IOException {
+				register(dir);
+				return java.nio.file.FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public java.nio.file.FileVisitResult visitFileFailed(java.nio.file.Path file, java.io.IOException e) {
+				return java.nio.file.FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * takes batches of events until the watcher is closed
+	 */
+	private void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				java.util.Set<java.nio.file.Path> changed  = new java.util.LinkedHashSet<>();
+				boolean                           overflow = poll(watchService.take(), changed);
+				java.nio.file.WatchKey            key;
+				while ((key = watchService.poll(SETTLE_MILLIS, java.util.concurrent.TimeUnit.MILLISECONDS)) != null) {
+					overflow |= poll(key, changed);
+				}
+				try {
+					notify(apply(changed, overflow));
+				} catch (RuntimeException e) {
+					eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+							"Could not apply changes of " + changed + ": " + e);
+				}
+			}
+		} catch (InterruptedException | java.nio.file.ClosedWatchServiceException e) {
+			//closed
+		}
+	}
+
+	/**
+	 * collects the changed paths of a key
+	 *
+	 * @return true if events were lost
+	 */
+	private boolean poll(java.nio.file.WatchKey key, java.util.Set<java.nio.file.Path> changed) {
+		boolean            overflow  = false;
+		java.nio.file.Path directory = keys.get(key);
+		for (java.nio.file.WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == java.nio.file.StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else if (directory != null) {
+				changed.add(directory.resolve((java.nio.file.Path) event.context()));
+			}
+		}
+		if (!key.reset()) {
+			keys.remove(key);
+		}
+		return overflow;
+	}
+
+	/**
+	 * applies the changed paths to the indexes
+	 *
+	 * @param changed
+	 * 		the created, modified and deleted files and directories
+	 * @param overflow
+	 * 		true if events were lost and all locations have to be compared
+	 *
+	 * @return the changes of the indexes
+	 */
+	private synchronized java.util.List<ClassChangeEvent> apply(java.util.Set<java.nio.file.Path> changed,
+	                                                            boolean overflow) {
+		java.util.List<ClassChangeEvent> events = new java.util.ArrayList<>();
+		for (Location location : locations) {
+			if (overflow || location.jar && changed.contains(location.root)) {
+				resync(location, events);
+			} else if (!location.jar) {
+				for (java.nio.file.Path path : changed) {
+					if (path.startsWith(location.root)) {
+						update(location, path, events);
+					}
+				}
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * applies a changed file or directory below a class directory
+	 */
+	private void update(Location location, java.nio.file.Path path, java.util.List<ClassChangeEvent> events) {
+		if (java.nio.file.Files.isDirectory(path)) {
+			try {
+				registerTree(path);
+				ClassScanner.walkClassFiles(path, (file, attributes) -> updateFile(location, file, events));
+			} catch (java.io.IOException e) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+						"Could not watch " + path + ": " + e.getMessage());
+			}
+		} else if (java.nio.file.Files.isRegularFile(path)) {
+			updateFile(location, path, events);
+		} else {
+			//deleted, maybe a whole directory
+			java.util.List<java.nio.file.Path> deleted = location.names.keySet().stream()
+					.filter(file -> file.startsWith(path))
+					.collect(java.util.stream.Collectors.toList());
+			for (java.nio.file.Path file : deleted) {
+				drop(location, location.names.remove(file), events);
+			}
+		}
+	}
+
+	private void updateFile(Location location, java.nio.file.Path file, java.util.List<ClassChangeEvent> events) {
+		if (!ClassScanner.isClassFileName(ClassScanner.getClassFilePath(location.root, file))) {
+			return;
+		}
+		ClassHeader header = read(file);
+		if (header != null) {
+			String previous = location.names.put(file, header.getName());
+			if (previous != null && !previous.equals(header.getName())) {
+				drop(location, previous, events);
+			}
+			put(location, header, events);
+		}
+	}
+
+	/**
+	 * reads a location completely and applies the differences to its former classes
+	 */
+	private void resync(Location location, java.util.List<ClassChangeEvent> events) {
+		java.util.Map<String, ClassHeader>        headers = new java.util.LinkedHashMap<>();
+		java.util.Map<java.nio.file.Path, String> names   = new java.util.HashMap<>();
+		if (location.jar) {
+			if (location.file.isFile()) {
+				try {
+					new java.util.zip.ZipFile(location.file).close();
+				} catch (java.io.IOException e) {
+					//still written, the next event reads it again
+					return;
+				}
+				for (ClassHeader header : ClassScanner.getClassHeaders(location.file)) {
+					headers.putIfAbsent(header.getName(), header);
+				}
+			}
+		} else if (java.nio.file.Files.isDirectory(location.root)) {
+			try {
+				ClassScanner.walkClassFiles(location.root, (file, attributes) -> {
+					ClassHeader header = ClassScanner.isClassFileName(
+							ClassScanner.getClassFilePath(location.root, file)) ? read(file) : null;
+					if (header != null) {
+						headers.putIfAbsent(header.getName(), header);
+						names.put(file, header.getName());
+					}
+				});
+			} catch (java.io.IOException e) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+						"Could not read " + location.file + ": " + e.getMessage());
+			}
+		}
+		for (String name : new java.util.ArrayList<>(location.headers.keySet())) {
+			if (!headers.containsKey(name)) {
+				drop(location, name, events);
+			}
+		}
+		for (ClassHeader header : headers.values()) {
+			put(location, header, events);
+		}
+		location.names.clear();
+		location.names.putAll(names);
+	}
+
+	/**
+	 * sets the header of a class in a location and indexes it unless a former location provides the class
+	 */
+	private void put(Location location, ClassHeader header, java.util.List<ClassChangeEvent> events) {
+		String      name     = header.getName();
+		ClassHeader previous = location.headers.put(name, header);
+		Location    owner    = owners.get(name);
+		if (owner == null) {
+			owners.put(name, location);
+			result.add(header);
+			events.add(new ClassChangeEvent(ClassChangeEvent.Kind.ADDED, header, location.file));
+		} else if (owner == location ? !header.equals(previous) :
+		           locations.indexOf(location) < locations.indexOf(owner)) {
+			owners.put(name, location);
+			result.remove(name);
+			result.add(header);
+			events.add(new ClassChangeEvent(ClassChangeEvent.Kind.MODIFIED, header, location.file));
+		}
+	}
+
+	/**
+	 * removes a class from a location, if it was indexed from there the next location providing it is indexed
+	 */
+	private void drop(Location location, String name, java.util.List<ClassChangeEvent> events) {
+		ClassHeader removed = location.headers.remove(name);
+		if (removed == null || owners.get(name) != location) {
+			return;
+		}
+		result.remove(name);
+		for (Location next : locations) {
+			ClassHeader header = next.headers.get(name);
+			if (header != null) {
+				owners.put(name, next);
+				result.add(header);
+				events.add(new ClassChangeEvent(ClassChangeEvent.Kind.MODIFIED, header, next.file));
+				return;
+			}
+		}
+		owners.remove(name);
+		events.add(new ClassChangeEvent(ClassChangeEvent.Kind.REMOVED, removed, location.file));
+	}
+
+	private static ClassHeader read(java.nio.file.Path classFile) {
+		try {
+			return ClassHeaderReader.read(java.nio.file.Files.readAllBytes(classFile));
+		} catch (java.io.IOException | RuntimeException e) {
+			//deleted or still written, the next event reads it again
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Could not read class-file " + classFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void notify(java.util.List<ClassChangeEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		java.util.List<ClassChangeEvent> changes = java.util.Collections.unmodifiableList(events);
+		for (Listener listener : listeners) {
+			try {
+				listener.classesChanged(changes);
+			} catch (RuntimeException e) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+						"Listener failed: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Is notified about the changes of the indexes
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		/**
+		 * called after the changes of one batch of file system events were applied to the indexes
+		 *
+		 * @param events
+		 * 		the changes
+		 */
+		void classesChanged(java.util.List<ClassChangeEvent> events);
+	}
+
+	/**
+	 * A watched jar or directory and the classes read from it
+	 */
+	private static final class Location {
+		private final java.io.File                              file;
+		private final java.nio.file.Path                        root;
+		private final boolean                                   jar;
+		private final java.util.Map<String, ClassHeader>        headers = new java.util.HashMap<>();
+		/** the class name of every class-file of a directory */
+		private final java.util.Map<java.nio.file.Path, String> names   = new java.util.HashMap<>();
+
+		private Location(java.io.File file) {
+			this.file = file;
+			this.root = file.toPath().toAbsolutePath().normalize();
+			this.jar = file.getName().endsWith(".jar");
+		}
+	}
+}
@@ -4,9 +4,6 @@
 
 package eu.mmonschau.reflection;
 
-import static java.io.File.pathSeparator;
-
-
 /**
  * A Class to determine Super-/Sub-Classes of a specific class
  */
@@ -64,6 +61,456 @@ public class ClassScanner {
 	}
 
 
+	/**
+	 * Gets the names of all subclasses for given superclass by reading the class-file headers, no class is loaded
+	 * (Interfaces are excluded)
+	 *
+	 * @param superClassName
+	 * 		the fully qualified name of the class which subclasses should be found
+	 *
+	 * @return a collection of fully qualified names of subclasses
+	 *
+	 * @see #loadClasses(java.util.Collection, ClassLoader, ScanStatistics)
+	 */
+	public static java.util.Collection<String> getSubclassNames(String superClassName) {
+		return getSubclassNames(java.util.Collections.singleton(superClassName)).get(superClassName);
+	}
+
+	/**
+	 * Gets the names of all subclasses for given superclasses by reading the class-file headers, no class is loaded
+	 * (Interfaces are excluded)
+	 *
+	 * @param superClassNames
+	 * 		the fully qualified names of the classes to search subclasses for
+	 *
+	 * @return a superclass-subclasses Map of fully qualified names
+	 *
+	 * @see #loadClasses(java.util.Collection, ClassLoader, ScanStatistics)
+	 */
+	public static java.util.Map<String, java.util.Collection<String>> getSubclassNames(
+			java.util.Collection<String> superClassNames) {
+		return getSubclassNames(superClassNames, getAllClassHeaders());
+	}
+
+	/**
+	 * Gets the names of all subclasses for given superclasses from given class-headers (Interfaces are excluded)
+	 *
+	 * @param superClassNames
+	 * 		the fully qualified names of the classes to search subclasses for
+	 * @param allHeaders
+	 * 		the headers of all classes to consider
+	 *
+	 * @return a superclass-subclasses Map of fully qualified names
+	 */
+	private static java.util.Map<String, java.util.Collection<String>> getSubclassNames(
+			java.util.Collection<String> superClassNames, java.util.stream.Stream<ClassHeader> allHeaders) {
+		ClassHierarchyIndex                                 index      = ClassHierarchyIndex.of(allHeaders);
+		java.util.Map<String, java.util.Collection<String>> subclasses = new java.util.HashMap<>();
+		for (String sc : superClassNames) {
+			subclasses.put(sc, index.subclassesOf(sc));
+		}
+		return subclasses;
+	}
+
+	/**
+	 * Builds the hierarchy and the annotation index of all classes matching the specification in one pass over their
+	 * class-files, no class is loaded. The specification also decides whether unchanged jars and directories are read
+	 * from a cache, whether they are scanned in parallel and where timings and counters are recorded, e.g.
+	 * {@code buildScanResult(new ScanSpec().cache(cache).executor(executor)).getHierarchy()}
+	 *
+	 * @param spec
+	 * 		the filters, locations and options of the scan, later changes do not affect it
+	 *
+	 * @return the indexes
+	 */
+	public static ScanResult buildScanResult(ScanSpec spec) {
+		ScanSpec                     copy       = spec.copy();
+		java.util.List<java.io.File> locations  = copy.getLocations() != null ?
+		                                          copy.getLocations() :
+		                                          getDistinctClassLocations();
+		ClassIndexCache              cache      = copy.getCache();
+		ScanStatistics               statistics = copy.getStatistics();
+		if (copy.getExecutor() != null) {
+			return new ParallelClassScan(copy.getExecutor(), cache, statistics, copy::accepts).scan(locations);
+		}
+		long       start  = System.nanoTime();
+		ScanResult result = ScanResult.of(locations.stream()
+				                                  .map(location -> getClassHeaders(location, cache, statistics))
+				                                  .flatMap(java.util.Collection::stream)
+				                                  .filter(copy::accepts));
+		if (statistics != null) {
+			statistics.addScanTime(System.nanoTime() - start);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates an executor for parallel scans: a virtual thread per task if the jdk supports it, otherwise a
+	 * work-stealing pool with one thread per processor
+	 *
+	 * @return a new executor, the caller has to shut it down
+	 */
+	public static java.util.concurrent.ExecutorService newScanExecutor() {
+		try {
+			return (java.util.concurrent.ExecutorService) java.util.concurrent.Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			//jdk without (or with preview) virtual threads
+			return java.util.concurrent.Executors.newWorkStealingPool();
+		}
+	}
+
+	static java.util.List<java.io.File> getDistinctClassLocations() {
+		return getAllClassLocations().stream()
+				.distinct()
+				.collect(java.util.stream.Collectors.toList());
+	}
+
+	/**
+	 * Loads classes by their fully qualified names without initializing them, e.g. results of
+	 * {@link #getSubclassNames(String)} or {@link ClassLoaderScanner#scan(ClassLoader)}
+	 *
+	 * @param classNames
+	 * 		the fully qualified names of the classes
+	 * @param classLoader
+	 * 		the class loader to use or null for the loader of this library
+	 * @param statistics
+	 * 		the statistics to count the loaded and failed classes in or null
+	 *
+	 * @return a collection of all classes which could be loaded
+	 */
+	public static java.util.Collection<Class<?>> loadClasses(java.util.Collection<String> classNames,
+	                                                         ClassLoader classLoader, ScanStatistics statistics) {
+		ClassLoader loader = classLoader != null ? classLoader : ClassScanner.class.getClassLoader();
+		return classNames.stream()
+				.map(name -> {
+					Class<?> loaded = loadClass(name, loader);
+					if (statistics != null) {
+						statistics.classLoaded(loaded != null);
+					}
+					return loaded;
+				})
+				.filter(java.util.Objects::nonNull)
+				.collect(java.util.stream.Collectors.toSet());
+	}
+
+	/**
+	 * Creates a Stream of the headers of all class-files in Classpath and not in $JAVAHOME, no class is loaded
+	 *
+	 * @return a stream of class-headers
+	 */
+	private static java.util.stream.Stream<ClassHeader> getAllClassHeaders() {
+		return getAllClassLocations().stream()
+				.distinct()
+				.map(ClassScanner::getClassHeaders)
+				.flatMap(java.util.Collection::stream);
+	}
+
+	/**
+	 * Creates a lazy Stream of the headers of all classes matching the specification, no class is loaded. Jars and
+	 * directories are opened one after another while the stream is consumed, so stopping early (e.g. with
+	 * {@link java.util.stream.Stream#findFirst()}) skips the remaining locations. The stream should be closed to
+	 * release the currently opened jar.
+	 *
+	 * @param spec
+	 * 		the filters and locations to scan, later changes do not affect the stream
+	 *
+	 * @return a sequential stream of class-headers
+	 *
+	 * @see ClassHeader#load()
+	 */
+	public static java.util.stream.Stream<ClassHeader> scan(ScanSpec spec) {
+		ScanSpec                     copy        = spec.copy();
+		java.util.List<java.io.File> locations   = copy.getLocations() != null ?
+		                                           copy.getLocations() :
+		                                           getDistinctClassLocations();
+		ClassHeaderSpliterator       spliterator = new ClassHeaderSpliterator(locations, copy);
+		return java.util.stream.StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+
+	/**
+	 * Reads the headers of all class-files in a jar or directory, from its precomputed index if there is one
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 *
+	 * @return a collection of class-headers
+	 *
+	 * @see ClassIndexProcessor
+	 */
+	static java.util.Collection<ClassHeader> getClassHeaders(java.io.File location) {
+		return getClassHeaders(location, (ScanStatistics.LocationStatistics) null);
+	}
+
+	/**
+	 * Reads the headers of all class-files in a jar or directory, from the cache if it is unchanged and the cache is
+	 * given, and records the time taken
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 * @param cache
+	 * 		the cache or null
+	 * @param statistics
+	 * 		the statistics to record in or null
+	 *
+	 * @return a collection of class-headers
+	 */
+	static java.util.Collection<ClassHeader> getClassHeaders(java.io.File location, ClassIndexCache cache,
+	                                                         ScanStatistics statistics) {
+		if (statistics == null) {
+			return cache != null ? cache.getClassHeaders(location) : getClassHeaders(location);
+		}
+		ScanStatistics.LocationStatistics locationStatistics = statistics.location(location);
+		long                              start              = System.nanoTime();
+		try {
+			return cache != null ?
+			       cache.getClassHeaders(location, locationStatistics) :
+			       getClassHeaders(location, locationStatistics);
+		} finally {
+			locationStatistics.addTime(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Reads the headers of all class-files in a jar or directory, from its precomputed index as far as it covers the
+	 * class-files
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 * @param statistics
+	 * 		the statistics of the location or null
+	 *
+	 * @return a collection of class-headers
+	 */
+	static java.util.Collection<ClassHeader> getClassHeaders(java.io.File location,
+	                                                         ScanStatistics.LocationStatistics statistics) {
+		try {
+			java.util.Collection<ClassHeader> headers = withLocationRoot(location, root -> {
+				java.util.Collection<ClassHeader> indexed = ClassIndexFile.readComplete(root, statistics);
+				if (indexed != null) {
+					return indexed;
+				}
+				java.util.Collection<ClassHeader> read = new java.util.ArrayList<>();
+				visitClassFiles(root, (path, file) -> addClassHeader(read, file, statistics));
+				return read;
+			});
+			return headers != null ? headers : java.util.Collections.emptyList();
+		} catch (java.io.IOException | java.nio.file.FileSystemNotFoundException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger()
+					.log(java.util.logging.Level.FINEST, () -> "Could not read " + location + ": " + e.getMessage());
+			return java.util.Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Gets the paths (relative to the location, separated by /) of all class-files in a jar or directory
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 *
+	 * @return a collection of paths
+	 */
+	private static java.util.Collection<String> getClassFilePaths(java.io.File location) {
+		java.util.Collection<String> paths = new java.util.ArrayList<>();
+		try {
+			visitClassFiles(location, (path, file) -> paths.add(path));
+		} catch (java.io.IOException | java.nio.file.FileSystemNotFoundException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger()
+					.log(java.util.logging.Level.FINEST, () -> "Could not read " + location + ": " + e.getMessage());
+		}
+		return paths;
+	}
+
+	/**
+	 * Visits all class-files in a jar or directory. Jars are opened as zip file system and closed afterwards.
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 * @param visitor
+	 * 		gets the path relative to the location (separated by /) and the file of every class-file
+	 *
+	 * @throws java.io.IOException
+	 * 		if the jar cannot be opened
+	 */
+	static void visitClassFiles(java.io.File location,
+	                            java.util.function.BiConsumer<String, java.nio.file.Path> visitor)
+			throws java.io.IOException {
+		withLocationRoot(location, root -> {
+			visitClassFiles(root, visitor);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs an action on the root of a jar or directory. Jars are opened as zip file system and closed afterwards.
+	 *
+	 * @param location
+	 * 		a jar-file or a directory
+	 * @param action
+	 * 		the action to run
+	 * @param <R>
+	 * 		the result of the action
+	 *
+	 * @return the result of the action or null if location is neither a jar nor a directory
+	 *
+	 * @throws java.io.IOException
+	 * 		if the jar cannot be opened or the action fails
+	 */
+	static <R> R withLocationRoot(java.io.File location, LocationAction<R> action) throws java.io.IOException {
+		if (isJar(location)) {
+			try (java.nio.file.FileSystem jar = java.nio.file.FileSystems
+					.newFileSystem(location.toPath(), (ClassLoader) null)) {
+				return action.apply(jar.getPath("/"));
+			}
+		} else if (location.isDirectory()) {
+			return action.apply(location.toPath());
+		}
+		return null;
+	}
+
+	/**
+	 * An action on the root of a jar or directory
+	 *
+	 * @param <R>
+	 * 		the result of the action
+	 */
+	@FunctionalInterface
+	interface LocationAction<R> {
+		R apply(java.nio.file.Path root) throws java.io.IOException;
+	}
+
+	/**
+	 * Visits all class-files below a root directory
+	 *
+	 * @param root
+	 * 		the root directory, of the default or a zip file system
+	 * @param visitor
+	 * 		gets the path relative to the root (separated by /) and the file of every class-file
+	 *
+	 * @throws java.io.IOException
+	 * 		if the root cannot be read
+	 */
+	private static void visitClassFiles(java.nio.file.Path root,
+	                                    java.util.function.BiConsumer<String, java.nio.file.Path> visitor)
+			throws java.io.IOException {
+		walkClassFiles(root, (file, attributes) -> {
+			String path = getClassFilePath(root, file);
+			if (isClassFileName(path)) {
+				visitor.accept(path, file);
+			}
+		});
+	}
+
+	/**
+	 * Walks a directory tree and reports every file ending with .class together with its attributes, which are
+	 * read during the walk anyway. Unreadable subdirectories are skipped.
+	 *
+	 * @param root
+	 * 		the root directory
+	 * @param visitor
+	 * 		gets every class-file and its attributes
+	 *
+	 * @throws java.io.IOException
+	 * 		if the root cannot be read
+	 */
+	static void walkClassFiles(java.nio.file.Path root,
+	                           java.util.function.BiConsumer<java.nio.file.Path,
+			                           java.nio.file.attribute.BasicFileAttributes> visitor)
+			throws java.io.IOException {
+		java.nio.file.Files.walkFileTree(root, new java.nio.file.SimpleFileVisitor<java.nio.file.Path>() {
+			@Override
+			public java.nio.file.FileVisitResult visitFile(java.nio.file.Path file,
+			                                               java.nio.file.attribute.BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".class")) {
+					visitor.accept(file, attrs);
+				}
+				return java.nio.file.FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public java.nio.file.FileVisitResult visitFileFailed(java.nio.file.Path file, java.io.IOException e) {
+				eu.mmonschau.reflection.util.JTextLog.getLogger()
+						.log(java.util.logging.Level.FINEST, () -> "Could not read " + file + ": " + e.getMessage());
+				return java.nio.file.FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Creates the path of a class-file relative to its root, separated by /
+	 *
+	 * @param root
+	 * 		the root directory
+	 * @param file
+	 * 		a file below root
+	 *
+	 * @return the relative path
+	 */
+	static String getClassFilePath(java.nio.file.Path root, java.nio.file.Path file) {
+		String path      = root.relativize(file).toString();
+		String separator = root.getFileSystem().getSeparator();
+		return separator.equals("/") ? path : path.replace(separator, "/");
+	}
+
+	static boolean isJar(java.io.File location) {
+		return location.getName().endsWith(".jar") && location.isFile();
+	}
+
+	/**
+	 * checks whether a path denotes a regular class-file (no module or package descriptors or versioned entries)
+	 *
+	 * @param path
+	 * 		a path inside a jar or directory
+	 *
+	 * @return true if the path denotes a class-file
+	 */
+	static boolean isClassFileName(String path) {
+		return path.endsWith(".class") &&
+		       !path.startsWith("META-INF/") &&
+		       !path.endsWith("module-info.class") &&
+		       !path.endsWith("package-info.class");
+	}
+
+	/**
+	 * Reads the header of a class-file and adds it to the collection
+	 *
+	 * @param headers
+	 * 		the collection to add the header to
+	 * @param classFile
+	 * 		the class-file, of the default or a zip file system
+	 */
+	static void addClassHeader(java.util.Collection<ClassHeader> headers, java.nio.file.Path classFile) {
+		addClassHeader(headers, classFile, null);
+	}
+
+	/**
+	 * Reads the header of a class-file and adds it to the collection
+	 *
+	 * @param headers
+	 * 		the collection to add the header to
+	 * @param classFile
+	 * 		the class-file, of the default or a zip file system
+	 * @param statistics
+	 * 		the statistics of the location or null
+	 */
+	static void addClassHeader(java.util.Collection<ClassHeader> headers, java.nio.file.Path classFile,
+	                           ScanStatistics.LocationStatistics statistics) {
+		byte[] bytes = null;
+		try {
+			bytes = java.nio.file.Files.readAllBytes(classFile);
+			headers.add(ClassHeaderReader.read(bytes));
+			if (statistics != null) {
+				statistics.classFile(bytes.length, true);
+			}
+		} catch (java.io.IOException e) {
+			if (statistics != null) {
+				statistics.classFile(bytes == null ? 0 : bytes.length, false);
+			}
+			eu.mmonschau.reflection.util.JTextLog.getLogger()
+					.log(java.util.logging.Level.FINEST, () -> "Could not read class-file " + classFile + ": " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Creates a Stream of All Classes in Classpath and not in $JAVAHOME
 	 *
@@ -79,24 +526,30 @@ public class ClassScanner {
 	}
 
 	/**
-	 * Scans the classpath for jars and class-files (except from $JAVAHOME
+	 * Scans the classpath and module path for jars and class-files (except from $JAVAHOME), exploded WARs are
+	 * scanned by their classes and libraries
 	 *
 	 * @return a Collection of class- und jar-Files
+	 *
+	 * @see ClassLoaderScanner#getSystemClassLocations()
 	 */
 	private static java.util.Collection<java.io.File> getAllClassLocations() {
-		return java.util.Arrays.stream(
-				System.getProperty("java.class.path").split(pathSeparator)
-		)
-				//Remove Java Home
-				.filter(s -> !s.startsWith(System.getProperty("java.home")))
-				.map(java.io.File::new)
-				.collect(java.util.stream.Collectors.toList());
+		return ClassLoaderScanner.getSystemClassLocations();
 	}
 
-	private static boolean filterStdLibrary(String s) {
-		java.util.regex.Pattern p = java.util.regex.Pattern
-				.compile("^((javaf?x?)|(jdk)|(oracle)|((com\\.)?sun))((\\.)|/|(\\\\)).*");
-		return !p.matcher(s).matches();
+	private static final java.util.regex.Pattern STD_LIBRARY = java.util.regex.Pattern
+			.compile("^((javaf?x?)|(jdk)|(oracle)|((com\\.)?sun))((\\.)|/|(\\\\)).*");
+
+	/**
+	 * checks whether a fully qualified name or path is outside of the packages of the jdk
+	 *
+	 * @param s
+	 * 		a fully qualified name or path
+	 *
+	 * @return false if s belongs to the jdk
+	 */
+	static boolean filterStdLibrary(String s) {
+		return !STD_LIBRARY.matcher(s).matches();
 	}
 
 	/**
@@ -112,23 +565,8 @@ public class ClassScanner {
 		return files.stream()
 				.filter(file -> file.getName().endsWith(".jar"))
 				.distinct()
-				//Create JarFile Object
-				.map(jarFile -> {
-					java.util.jar.JarFile jFile = null;
-					try {
-						jFile = new java.util.jar.JarFile(jarFile);
-					} catch (java.io.IOException e) {
-						new java.io.IOError(e);
-					} finally {
-						return jFile;//To circumvent Missing-Return-Error
-					}
-				})
-				//get all Jar-Entries
-				.flatMap(jarFile -> jarFile.stream())
-				//get only class-Files
-				.filter(jarEntry -> !jarEntry.isDirectory() && jarEntry.getName().endsWith(".class"))
-				//get FileName (Path)
-				.map(java.util.zip.ZipEntry::getName)
+				//get paths of all class-Files, the jar is closed afterwards
+				.flatMap(jarFile -> getClassFilePaths(jarFile).stream())
 				.distinct()
 				//remove .class
 				.map(eu.mmonschau.reflection.ClassScanner::convertFilePathToFullyQualifiedName)
@@ -152,15 +590,33 @@ public class ClassScanner {
 				c = Class.forName(s);
 			} catch (ClassNotFoundException | NoClassDefFoundError e) {
 				eu.mmonschau.reflection.util.JTextLog.getLogger()
-						.log(java.util.logging.Level.FINEST, "Could not load Class:");
-				eu.mmonschau.reflection.util.JTextLog.getLogger()
-						.log(java.util.logging.Level.FINEST, e.getMessage());
+						.log(java.util.logging.Level.FINEST, () -> "Could not load Class: " + e.getMessage());
 			} finally {
 				return c;
 			}
 		}
 	}
 
+	/**
+	 * Creates a Class from given fully qualified name without initializing it
+	 *
+	 * @param s
+	 * 		a fully qualified name
+	 * @param classLoader
+	 * 		the class loader to use
+	 *
+	 * @return a class object if the class exists or null
+	 */
+	static Class<?> loadClass(String s, ClassLoader classLoader) {
+		try {
+			return Class.forName(s, false, classLoader);
+		} catch (ClassNotFoundException | LinkageError e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger()
+					.log(java.util.logging.Level.FINEST, () -> "Could not load Class: " + e.getMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * Converts a file path to a fully qualified name
 	 *
@@ -169,7 +625,7 @@ public class ClassScanner {
 	 *
 	 * @return a String representing a fully qulified name
 	 */
-	private static String convertFilePathToFullyQualifiedName(String path) {
+	static String convertFilePathToFullyQualifiedName(String path) {
 		if (path.startsWith("/")) {
 			path = path.substring(1);
 		}
@@ -193,16 +649,8 @@ public class ClassScanner {
 		return files.stream()
 				.filter(file -> !file.getName().endsWith(".jar"))
 				.filter(java.io.File::isDirectory)
-				.map(file ->
-						     new java.util.AbstractMap.SimpleEntry<>(
-								     file,
-								     getClassFilesInDirectory(
-										     file)
-						     )
-				)
-				.map(fileStreamSimpleEntry ->
-						     getRelativePathsforSubfolders(fileStreamSimpleEntry.getKey(),
-						                                   fileStreamSimpleEntry.getValue()))
+				//get paths relative to the directory
+				.map(ClassScanner::getClassFilePaths)
 				.flatMap(java.util.Collection::stream)
 				.distinct()
 				.map(ClassScanner::convertFilePathToFullyQualifiedName)
@@ -210,61 +658,6 @@ public class ClassScanner {
 				.filter(java.util.Objects::nonNull);
 	}
 
-	/**
-	 * Gets all class-Files in given directory
-	 *
-	 * @param directory
-	 * 		the directory to search for class-files
-	 *
-	 * @return a collection of class-files
-	 */
-	private static java.util.Collection<java.io.File> getClassFilesInDirectory(java.io.File directory) {
-		java.util.LinkedList<java.io.File> files = new java.util.LinkedList<>();
-		try {
-			if (directory != null && directory.listFiles() != null) {
-				for (java.io.File f : directory.listFiles()) {
-					if (f.isDirectory()) {
-						files.addAll(getClassFilesInDirectory(f));
-					} else if (f.isFile() &&
-					           (f.getName().endsWith(".class"))
-					) {
-						files.add(f);
-					}
-				}
-			}
-		} catch (RuntimeException e) {
-			throw new java.io.IOError(e);
-		}
-		return files;
-	}
-
-
-	/**
-	 * Creates a collection of strings representing the relative path of "files" to "directory"
-	 * surrently only supported for subfolders
-	 *
-	 * @param directory
-	 * 		the root directory
-	 * @param files
-	 * 		a collection of files
-	 *
-	 * @return a collection of strings representing realativ paths
-	 */
-	private static java.util.Collection<String> getRelativePathsforSubfolders(java.io.File directory,
-	                                                                          Iterable<java.io.File> files) {
-		java.util.Collection<String> paths = new java.util.LinkedList<>();
-		for (java.io.File f : files) {
-			try {
-				paths.add(
-						f.getCanonicalPath().replace(directory.getCanonicalPath(), ""));
-			} catch (java.io.IOException e) {
-				eu.mmonschau.reflection.util.JTextLog.getLogger()
-						.log(java.util.logging.Level.FINEST, e.getMessage());
-			}
-		}
-		return paths;
-	}
-
 
 	/**
 	 * gets all superclasses and interfaces of a given class
@@ -289,12 +682,20 @@ public class ClassScanner {
 
 
 	/**
-	 * Prints the class-Locations and all loadable classes, which are not shipped with the jre/jdk
+	 * Prints the class-Locations and all loadable classes, which are not shipped with the jre/jdk. With
+	 * {@code --stats [n]} the classpath is scanned without loading classes and the statistics with the n (default 10)
+	 * slowest locations are printed as JSON instead.
 	 *
 	 * @param args
-	 * 		CLIParams (unused)
+	 * 		CLIParams
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && "--stats".equals(args[0])) {
+			ScanStatistics statistics = new ScanStatistics();
+			buildScanResult(new ScanSpec().statistics(statistics));
+			System.out.println(statistics.toJson(args.length > 1 ? Integer.parseInt(args[1]) : 10));
+			return;
+		}
 		try {
 			java.util.Collection<java.io.File> allClassLocations = getAllClassLocations();
 			System.out.println(allClassLocations);
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Shares the {@link ScanResult} of a set of locations between threads. Concurrent callers needing a scan wait for
+ * the same scan instead of scanning themselves; every scan publishes a new immutable {@link Snapshot} by a volatile
+ * write, so reading the current snapshot takes no lock. A {@link #refresh()} scans in the background while readers
+ * keep using the former snapshot until the new one is complete.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public final class ClassScannerService {
+
+	private final java.util.List<java.io.File>           locations;
+	private final ClassIndexCache                        cache;
+	private final java.util.concurrent.ExecutorService   executor;
+	private final java.util.concurrent.atomic.AtomicLong versions = new java.util.concurrent.atomic.AtomicLong();
+	private volatile Snapshot                            snapshot;
+	/** the future of the running scan or null */
+	private final java.util.concurrent.atomic.AtomicReference<java.util.concurrent.CompletableFuture<Snapshot>>
+			inFlight = new java.util.concurrent.atomic.AtomicReference<>();
+
+	/**
+	 * A basic constructor, nothing is scanned until a snapshot is requested
+	 *
+	 * @param locations
+	 * 		the jars and directories in class path order or null for all classes in Classpath and not in $JAVAHOME
+	 * @param cache
+	 * 		the cache to scan with or null, it is updated but not saved
+	 * @param executor
+	 * 		the executor to scan on or null to scan sequentially, it is not shut down
+	 */
+	public ClassScannerService(java.util.List<java.io.File> locations, ClassIndexCache cache,
+	                           java.util.concurrent.ExecutorService executor) {
+		this.locations = locations == null ? null :
+		                 java.util.Collections.unmodifiableList(new java.util.ArrayList<>(locations));
+		this.cache = cache;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the service of all classes in Classpath and not in $JAVAHOME, scanning sequentially
+	 */
+	public static ClassScannerService getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Gets the current snapshot, the first call scans and concurrent first calls wait for the same scan
+	 *
+	 * @return the current snapshot
+	 *
+	 * @throws RuntimeException
+	 * 		if the first scan failed
+	 */
+	public Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current != null) {
+			return current;
+		}
+		try {
+			return start(true).join();
+		} catch (java.util.concurrent.CompletionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * @return the current snapshot or null if no scan has completed yet
+	 */
+	public Snapshot getSnapshotIfPresent() {
+		return snapshot;
+	}
+
+	/**
+	 * Scans again in the background and publishes the result as the next snapshot. If a scan is already running, no
+	 * further scan is started and its future is returned.
+	 *
+	 * @return the future of the next snapshot, completed exceptionally if the scan fails (the current snapshot stays)
+	 */
+	public java.util.concurrent.CompletableFuture<Snapshot> refresh() {
+		return start(false);
+	}
+
+	/**
+	 * joins the running scan or starts one
+	 *
+	 * @param first
+	 * 		true to only scan if no snapshot is published yet, a scan which completed since the caller read
+	 * 		{@link #snapshot} is not repeated
+	 *
+	 * @return the future of the next snapshot, or a completed future of the current one
+	 */
+	private java.util.concurrent.CompletableFuture<Snapshot> start(boolean first) {
+		while (true) {
+			java.util.concurrent.CompletableFuture<Snapshot> running = inFlight.get();
+			if (running != null) {
+				return running;
+			}
+			java.util.concurrent.CompletableFuture<Snapshot> future = new java.util.concurrent.CompletableFuture<>();
+			if (inFlight.compareAndSet(null, future)) {
+				//a completed scan publishes its snapshot before it clears inFlight
+				Snapshot current = snapshot;
+				if (first && current != null) {
+					inFlight.compareAndSet(future, null);
+					future.complete(current);
+					return future;
+				}
+				Thread thread = new Thread(() -> scan(future), "ClassScannerService-scan");
+				thread.setDaemon(true);
+				thread.start();
+				return future;
+			}
+		}
+	}
+
+	private void scan(java.util.concurrent.CompletableFuture<Snapshot> future) {
+		try {
+			long     start = System.nanoTime();
+			ScanSpec spec  = new ScanSpec().cache(cache).executor(executor);
+			if (locations != null) {
+				spec.locations(locations);
+			}
+			ScanResult result = ClassScanner.buildScanResult(spec);
+			Snapshot next = new Snapshot(result, versions.incrementAndGet(), System.currentTimeMillis());
+			snapshot = next;
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Published snapshot " + next.getVersion() + " of " + result.getHierarchy().size() +
+					" classes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+			//cleared before completing, so a refresh by a dependent action starts a new scan
+			inFlight.compareAndSet(future, null);
+			future.complete(next);
+		} catch (RuntimeException | Error e) {
+			inFlight.compareAndSet(future, null);
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * @return true if a scan is running
+	 */
+	public boolean isScanning() {
+		return inFlight.get() != null;
+	}
+
+	/**
+	 * @return the scanned jars and directories or null for the class path
+	 */
+	public java.util.List<java.io.File> getLocations() {
+		return locations;
+	}
+
+	/**
+	 * gets the names of all subtypes in the current snapshot
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all subtypes
+	 *
+	 * @see ClassHierarchyIndex#subtypesOf(String)
+	 */
+	public java.util.Set<String> subtypesOf(String name) {
+		return getSnapshot().getHierarchy().subtypesOf(name);
+	}
+
+	/**
+	 * gets the names of all instantiable classes extending or implementing a type in the current snapshot
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all implementors
+	 *
+	 * @see ClassHierarchyIndex#implementorsOf(String)
+	 */
+	public java.util.Set<String> implementorsOf(String name) {
+		return getSnapshot().getHierarchy().implementorsOf(name);
+	}
+
+	/**
+	 * gets all classes annotated with the given annotation in the current snapshot
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the fully qualified names of the annotated classes
+	 *
+	 * @see AnnotationIndex#classesAnnotatedWith(String)
+	 */
+	public java.util.Set<String> classesAnnotatedWith(String annotationName) {
+		return getSnapshot().getAnnotations().classesAnnotatedWith(annotationName);
+	}
+
+	@Override
+	public String toString() {
+		Snapshot current = snapshot;
+		return "ClassScannerService{" + (locations == null ? "class path" : locations.size() + " locations") +
+		       (current == null ? "" : ", version " + current.getVersion()) + (isScanning() ? ", scanning" : "") +
+		       '}';
+	}
+
+	/**
+	 * The result of one scan, it is not changed after it is published
+	 */
+	public static final class Snapshot {
+		private final ScanResult result;
+		private final long       version;
+		private final long       timestamp;
+
+		private Snapshot(ScanResult result, long version, long timestamp) {
+			this.result = result;
+			this.version = version;
+			this.timestamp = timestamp;
+		}
+
+		/**
+		 * @return the indexes of the scan
+		 */
+		public ScanResult getResult() {
+			return result;
+		}
+
+		/**
+		 * @return the hierarchy index of the scan
+		 */
+		public ClassHierarchyIndex getHierarchy() {
+			return result.getHierarchy();
+		}
+
+		/**
+		 * @return the annotation index of the scan
+		 */
+		public AnnotationIndex getAnnotations() {
+			return result.getAnnotations();
+		}
+
+		/**
+		 * @return the number of the scan, starting with 1 and increasing with every published snapshot
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return the time the snapshot was published in milliseconds since the epoch
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot{version " + version + ", " + result.getHierarchy().size() + " classes}";
+		}
+	}
+
+	private static final class Holder {
+		private static final ClassScannerService INSTANCE = new ClassScannerService(null, null, null);
+	}
+}
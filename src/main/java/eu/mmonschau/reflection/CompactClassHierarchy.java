@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * An immutable class hierarchy stored in a single {@link java.nio.ByteBuffer} instead of maps of boxed names. Every
+ * type gets an int id by the order of its name; the direct subtypes and supertypes are stored as adjacency arrays
+ * (an offset per type into one array of ids, in both directions) and transitive queries are answered by a
+ * breadth-first search over a {@link java.util.BitSet}. The names are front coded in blocks, i.e. a name only stores
+ * the suffix which differs from the previous name.
+ * <p>
+ * The buffer may be on the heap, direct or a memory-mapped file written by {@link #write(java.nio.file.Path)}, so
+ * an index of some hundred thousand types is resident in a few MB and is shared between processes by the page cache.
+ * The access methods do not change the buffer and may be called concurrently.
+ *
+ * @see eu.mmonschau.reflection.ClassHierarchyIndex
+ */
+public final class CompactClassHierarchy {
+
+	private static final int MAGIC       = 0x524C4348;//RLCH
+	private static final int VERSION     = 1;
+	private static final int HEADER_SIZE = 32;
+	/** names per block of front coded names */
+	private static final int BLOCK_SIZE  = 16;
+	/** flags of types which are only referenced */
+	private static final int NOT_INDEXED = -1;
+
+	private final java.nio.ByteBuffer buffer;
+	private final int                 size;
+	private final int                 blockCount;
+	private final int                 maxNameLength;
+	private final int                 flagsStart;
+	private final int                 subOffsetsStart;
+	private final int                 subsStart;
+	private final int                 superOffsetsStart;
+	private final int                 supersStart;
+	private final int                 blocksStart;
+	private final int                 namesStart;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param buffer
+	 * 		the buffer starting with the header, its position and limit are ignored
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the buffer does not contain a hierarchy
+	 */
+	private CompactClassHierarchy(java.nio.ByteBuffer buffer) {
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Not a compact class hierarchy");
+		}
+		this.buffer = buffer;
+		this.size = buffer.getInt(8);
+		int edges = buffer.getInt(12);
+		this.blockCount = buffer.getInt(16);
+		int namesLength = buffer.getInt(20);
+		this.maxNameLength = buffer.getInt(24);
+		this.flagsStart = HEADER_SIZE;
+		this.subOffsetsStart = flagsStart + 4 * size;
+		this.subsStart = subOffsetsStart + 4 * (size + 1);
+		this.superOffsetsStart = subsStart + 4 * edges;
+		this.supersStart = superOffsetsStart + 4 * (size + 1);
+		this.blocksStart = supersStart + 4 * edges;
+		this.namesStart = blocksStart + 4 * blockCount;
+		if (buffer.capacity() < namesStart + namesLength) {
+			throw new IllegalArgumentException("Truncated compact class hierarchy");
+		}
+	}
+
+	/**
+	 * Converts an index into a compact hierarchy on the heap
+	 *
+	 * @param index
+	 * 		the index
+	 *
+	 * @return the compact hierarchy
+	 */
+	public static CompactClassHierarchy of(ClassHierarchyIndex index) {
+		return of(index, false);
+	}
+
+	/**
+	 * Converts an index into a compact hierarchy
+	 *
+	 * @param index
+	 * 		the index
+	 * @param direct
+	 * 		true to store the hierarchy outside of the heap
+	 *
+	 * @return the compact hierarchy
+	 */
+	public static CompactClassHierarchy of(ClassHierarchyIndex index, boolean direct) {
+		//a snapshot, the index may change concurrently
+		java.util.List<ClassHeader> headers = new java.util.ArrayList<>(index.getHeaders());
+		//all names, including referenced supertypes, ordered by their UTF-8 bytes
+		java.util.Map<String, byte[]> encoded = new java.util.HashMap<>();
+		for (ClassHeader header : headers) {
+			encoded.computeIfAbsent(header.getName(), CompactClassHierarchy::utf8);
+			for (String superName : supertypeNames(header)) {
+				encoded.computeIfAbsent(superName, CompactClassHierarchy::utf8);
+			}
+		}
+		String[] names = encoded.keySet().toArray(new String[0]);
+		java.util.Arrays.sort(names, (a, b) -> compare(encoded.get(a), encoded.get(b)));
+		java.util.Map<String, Integer> ids = new java.util.HashMap<>(names.length * 2);
+		for (int i = 0; i < names.length; i++) {
+			ids.put(names[i], i);
+		}
+
+		int   n            = names.length;
+		int[] flags        = new int[n];
+		int[] superOffsets = new int[n + 1];
+		int[] subOffsets   = new int[n + 1];
+		java.util.Arrays.fill(flags, NOT_INDEXED);
+		int edges = 0;
+		for (ClassHeader header : headers) {
+			int id = ids.get(header.getName());
+			flags[id] = header.getAccessFlags();
+			for (String superName : supertypeNames(header)) {
+				superOffsets[id + 1]++;
+				subOffsets[ids.get(superName) + 1]++;
+				edges++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			superOffsets[i + 1] += superOffsets[i];
+			subOffsets[i + 1] += subOffsets[i];
+		}
+		int[] supers = new int[edges];
+		int[] subs   = new int[edges];
+		int[] filled = subOffsets.clone();
+		for (ClassHeader header : headers) {
+			int id   = ids.get(header.getName());
+			int next = superOffsets[id];
+			for (String superName : supertypeNames(header)) {
+				int superId = ids.get(superName);
+				supers[next++] = superId;
+				subs[filled[superId]++] = id;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			java.util.Arrays.sort(subs, subOffsets[i], subOffsets[i + 1]);
+		}
+
+		//front coded names
+		java.io.ByteArrayOutputStream nameBytes     = new java.io.ByteArrayOutputStream();
+		int                           blockCount    = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int[]                         blocks        = new int[blockCount];
+		int                           maxNameLength = 0;
+		byte[]                        previous      = new byte[0];
+		for (int i = 0; i < n; i++) {
+			byte[] name   = encoded.get(names[i]);
+			int    prefix = 0;
+			if (i % BLOCK_SIZE == 0) {
+				blocks[i / BLOCK_SIZE] = nameBytes.size();
+			} else {
+				int max = Math.min(255, Math.min(previous.length, name.length));
+				while (prefix < max && previous[prefix] == name[prefix]) {
+					prefix++;
+				}
+			}
+			nameBytes.write(prefix);
+			writeVarInt(nameBytes, name.length - prefix);
+			nameBytes.write(name, prefix, name.length - prefix);
+			maxNameLength = Math.max(maxNameLength, name.length);
+			previous = name;
+		}
+
+		int length = HEADER_SIZE + 4 * (n + 2 * (n + 1) + 2 * edges + blockCount) + nameBytes.size();
+		java.nio.ByteBuffer buffer = direct ? java.nio.ByteBuffer.allocateDirect(length) :
+		                             java.nio.ByteBuffer.allocate(length);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(edges).putInt(blockCount).putInt(nameBytes.size())
+				.putInt(maxNameLength).putInt(0);
+		putInts(buffer, flags);
+		putInts(buffer, subOffsets);
+		putInts(buffer, subs);
+		putInts(buffer, superOffsets);
+		putInts(buffer, supers);
+		putInts(buffer, blocks);
+		buffer.put(nameBytes.toByteArray());
+		buffer.clear();
+		return new CompactClassHierarchy(buffer);
+	}
+
+	/**
+	 * Maps a file written by {@link #write(java.nio.file.Path)} into memory, it is read on demand by the operating
+	 * system and not copied to the heap
+	 *
+	 * @param file
+	 * 		the file
+	 *
+	 * @return the compact hierarchy
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be read or is no compact hierarchy
+	 */
+	public static CompactClassHierarchy map(java.nio.file.Path file) throws java.io.IOException {
+		try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel
+				.open(file, java.nio.file.StandardOpenOption.READ)) {
+			return new CompactClassHierarchy(
+					channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IllegalArgumentException e) {
+			throw new java.io.IOException(file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Wraps a buffer holding a compact hierarchy, e.g. read from another source than a file
+	 *
+	 * @param buffer
+	 * 		the buffer starting with the hierarchy at index 0
+	 *
+	 * @return the compact hierarchy
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the buffer does not contain a hierarchy
+	 */
+	public static CompactClassHierarchy wrap(java.nio.ByteBuffer buffer) {
+		return new CompactClassHierarchy(buffer.duplicate());
+	}
+
+	/**
+	 * Writes the hierarchy to a file which can be mapped by {@link #map(java.nio.file.Path)}, the file is replaced
+	 * atomically
+	 *
+	 * @param file
+	 * 		the file
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be written
+	 */
+	public void write(java.nio.file.Path file) throws java.io.IOException {
+		java.nio.file.Path dir = file.toAbsolutePath().getParent();
+		java.nio.file.Files.createDirectories(dir);
+		java.nio.file.Path tmp = java.nio.file.Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel
+					.open(tmp, java.nio.file.StandardOpenOption.WRITE)) {
+				java.nio.ByteBuffer content = getBuffer();
+				while (content.hasRemaining()) {
+					channel.write(content);
+				}
+			}
+			ClassIndexCache.makeReadable(tmp);
+			ClassIndexCache.moveAtomically(tmp, file);
+		} finally {
+			java.nio.file.Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * @return the whole hierarchy, positioned at 0, for embedding it into another file
+	 */
+	java.nio.ByteBuffer getBuffer() {
+		java.nio.ByteBuffer content = buffer.duplicate();
+		content.clear();
+		return content;
+	}
+
+	/**
+	 * @return the number of types, including those which are only referenced
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of bytes of the hierarchy
+	 */
+	public int getByteSize() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * @return true if the hierarchy is stored outside of the heap
+	 */
+	public boolean isDirect() {
+		return buffer.isDirect();
+	}
+
+	/**
+	 * gets the id of a type
+	 *
+	 * @param name
+	 * 		the fully qualified name
+	 *
+	 * @return the id or -1 if the type is unknown
+	 */
+	public int getId(String name) {
+		byte[] key = utf8(name);
+		//the last block whose first name is not greater than the name
+		int low  = 0;
+		int high = blockCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (compareFirstName(middle, key) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (high < 0) {
+			return -1;
+		}
+		byte[] current  = new byte[maxNameLength];
+		int    position = namesStart + buffer.getInt(blocksStart + 4 * high);
+		for (int id = high * BLOCK_SIZE; id < Math.min(size, (high + 1) * BLOCK_SIZE); id++) {
+			int prefix       = buffer.get(position++) & 0xFF;
+			int suffixLength = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = buffer.get(position++);
+				suffixLength |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			for (int i = 0; i < suffixLength; i++) {
+				current[prefix + i] = buffer.get(position++);
+			}
+			int length = prefix + suffixLength;
+			int order  = compare(current, length, key);
+			if (order == 0) {
+				return id;
+			} else if (order > 0) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * gets the name of a type
+	 *
+	 * @param id
+	 * 		the id
+	 *
+	 * @return the fully qualified name
+	 */
+	public String getName(int id) {
+		checkId(id);
+		byte[] current  = new byte[maxNameLength];
+		int    length   = 0;
+		int    position = namesStart + buffer.getInt(blocksStart + 4 * (id / BLOCK_SIZE));
+		for (int i = id / BLOCK_SIZE * BLOCK_SIZE; i <= id; i++) {
+			int prefix       = buffer.get(position++) & 0xFF;
+			int suffixLength = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = buffer.get(position++);
+				suffixLength |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			for (int j = 0; j < suffixLength; j++) {
+				current[prefix + j] = buffer.get(position++);
+			}
+			length = prefix + suffixLength;
+		}
+		return new String(current, 0, length, java.nio.charset.StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param id
+	 * 		the id of a type
+	 *
+	 * @return the access flags of the class-file or -1 if the type is only referenced
+	 */
+	public int getAccessFlags(int id) {
+		return buffer.getInt(flagsStart + 4 * checkId(id));
+	}
+
+	/**
+	 * @param id
+	 * 		the id of a type
+	 *
+	 * @return true if the class-file of the type was scanned, false if it is only referenced
+	 */
+	public boolean isIndexed(int id) {
+		return getAccessFlags(id) != NOT_INDEXED;
+	}
+
+	/**
+	 * @param id
+	 * 		the id of a type
+	 *
+	 * @return the ids of the direct subtypes
+	 */
+	public int[] directSubtypesOf(int id) {
+		return slice(subOffsetsStart, subsStart, id);
+	}
+
+	/**
+	 * @param id
+	 * 		the id of a type
+	 *
+	 * @return the ids of the direct supertypes
+	 */
+	public int[] directSupertypesOf(int id) {
+		return slice(superOffsetsStart, supersStart, id);
+	}
+
+	/**
+	 * gets all types extending or implementing a type, directly or indirectly
+	 *
+	 * @param id
+	 * 		the id of the type
+	 *
+	 * @return the ids of the subtypes
+	 */
+	public java.util.BitSet subtypesOf(int id) {
+		return closure(id, subOffsetsStart, subsStart);
+	}
+
+	/**
+	 * gets all superclasses and interfaces of a type, directly or indirectly
+	 *
+	 * @param id
+	 * 		the id of the type
+	 *
+	 * @return the ids of the supertypes
+	 */
+	public java.util.BitSet supertypesOf(int id) {
+		return closure(id, superOffsetsStart, supersStart);
+	}
+
+	/**
+	 * checks whether a type extends or implements another type, directly or indirectly, by searching the supertypes
+	 * of the possible subtype
+	 *
+	 * @param id
+	 * 		the id of the possible subtype
+	 * @param superId
+	 * 		the id of the possible supertype
+	 *
+	 * @return true if id is a subtype of superId
+	 */
+	public boolean isSubtype(int id, int superId) {
+		checkId(superId);
+		java.util.BitSet visited = new java.util.BitSet();
+		int[]            stack   = new int[16];
+		int              top     = 0;
+		stack[top++] = checkId(id);
+		while (top > 0) {
+			int current = stack[--top];
+			int end     = buffer.getInt(superOffsetsStart + 4 * (current + 1));
+			for (int i = buffer.getInt(superOffsetsStart + 4 * current); i < end; i++) {
+				int next = buffer.getInt(supersStart + 4 * i);
+				if (next == superId) {
+					return true;
+				}
+				if (!visited.get(next)) {
+					visited.set(next);
+					if (top == stack.length) {
+						stack = java.util.Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = next;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * gets the names of all subtypes of a type, as {@link ClassHierarchyIndex#subtypesOf(String)}
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all subtypes
+	 */
+	public java.util.Set<String> subtypesOf(String name) {
+		int id = getId(name);
+		return id < 0 ? java.util.Collections.emptySet() : names(subtypesOf(id), flags -> true);
+	}
+
+	/**
+	 * gets the names of all classes (not interfaces) extending or implementing a type, as
+	 * {@link ClassHierarchyIndex#subclassesOf(String)}
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all subclasses
+	 */
+	public java.util.Set<String> subclassesOf(String name) {
+		int id = getId(name);
+		return id < 0 ? java.util.Collections.emptySet() :
+		       names(subtypesOf(id), flags -> flags != NOT_INDEXED && (flags & ClassHeader.ACC_INTERFACE) == 0);
+	}
+
+	/**
+	 * gets the names of all instantiable classes extending or implementing a type, as
+	 * {@link ClassHierarchyIndex#implementorsOf(String)}
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all implementors
+	 */
+	public java.util.Set<String> implementorsOf(String name) {
+		int id = getId(name);
+		return id < 0 ? java.util.Collections.emptySet() :
+		       names(subtypesOf(id), flags -> flags != NOT_INDEXED && (flags & ClassHeader.ACC_ABSTRACT) == 0);
+	}
+
+	/**
+	 * gets the names of all supertypes of a type, as {@link ClassHierarchyIndex#supertypesOf(String)}
+	 *
+	 * @param name
+	 * 		the fully qualified name of the type
+	 *
+	 * @return the names of all supertypes
+	 */
+	public java.util.Set<String> supertypesOf(String name) {
+		int id = getId(name);
+		return id < 0 ? java.util.Collections.emptySet() : names(supertypesOf(id), flags -> true);
+	}
+
+	/**
+	 * checks whether a type extends or implements another type, directly or indirectly
+	 *
+	 * @param name
+	 * 		the fully qualified name of the possible subtype
+	 * @param superName
+	 * 		the fully qualified name of the possible supertype
+	 *
+	 * @return true if name is a subtype of superName
+	 */
+	public boolean isSubtype(String name, String superName) {
+		int id      = getId(name);
+		int superId = getId(superName);
+		return id >= 0 && superId >= 0 && isSubtype(id, superId);
+	}
+
+	private int[] slice(int offsetsStart, int edgesStart, int id) {
+		checkId(id);
+		int   start  = buffer.getInt(offsetsStart + 4 * id);
+		int[] result = new int[buffer.getInt(offsetsStart + 4 * (id + 1)) - start];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = buffer.getInt(edgesStart + 4 * (start + i));
+		}
+		return result;
+	}
+
+	/**
+	 * computes the transitive closure of one direction of the edges by breadth-first search, the bitset of found ids
+	 * is the queue as well: every id is set once and processed once
+	 */
+	private java.util.BitSet closure(int id, int offsetsStart, int edgesStart) {
+		checkId(id);
+		java.util.BitSet result = new java.util.BitSet();
+		int[]            queue  = new int[16];
+		int              head   = 0;
+		int              tail   = 0;
+		queue[tail++] = id;
+		while (head < tail) {
+			int current = queue[head++];
+			int end     = buffer.getInt(offsetsStart + 4 * (current + 1));
+			for (int i = buffer.getInt(offsetsStart + 4 * current); i < end; i++) {
+				int next = buffer.getInt(edgesStart + 4 * i);
+				if (!result.get(next)) {
+					result.set(next);
+					if (tail == queue.length) {
+						queue = java.util.Arrays.copyOf(queue, tail * 2);
+					}
+					queue[tail++] = next;
+				}
+			}
+		}
+		return result;
+	}
+
+	private java.util.Set<String> names(java.util.BitSet ids, java.util.function.IntPredicate flags) {
+		java.util.Set<String> result = new java.util.HashSet<>();
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			if (flags.test(getAccessFlags(id))) {
+				result.add(getName(id));
+			}
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * compares the first name of a block, which is stored completely, with a name
+	 */
+	private int compareFirstName(int block, byte[] key) {
+		int position = namesStart + buffer.getInt(blocksStart + 4 * block) + 1;
+		int length   = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = buffer.get(position++);
+			length |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				break;
+			}
+		}
+		for (int i = 0; i < length && i < key.length; i++) {
+			int order = (buffer.get(position + i) & 0xFF) - (key[i] & 0xFF);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return length - key.length;
+	}
+
+	private int checkId(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("id " + id + " of " + size + " types");
+		}
+		return id;
+	}
+
+	private static java.util.List<String> supertypeNames(ClassHeader header) {
+		java.util.List<String> result = new java.util.ArrayList<>(header.getInterfaceNames().size() + 1);
+		if (header.getSuperName() != null) {
+			result.add(header.getSuperName());
+		}
+		for (String interfaceName : header.getInterfaceNames()) {
+			if (!result.contains(interfaceName)) {
+				result.add(interfaceName);
+			}
+		}
+		return result;
+	}
+
+	private static byte[] utf8(String name) {
+		return name.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+	}
+
+	private static int compare(byte[] a, byte[] b) {
+		return compare(a, a.length, b);
+	}
+
+	private static int compare(byte[] a, int length, byte[] b) {
+		for (int i = 0; i < length && i < b.length; i++) {
+			int order = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return length - b.length;
+	}
+
+	private static void writeVarInt(java.io.ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static void putInts(java.nio.ByteBuffer buffer, int[] values) {
+		for (int value : values) {
+			buffer.putInt(value);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CompactClassHierarchy{" + size + " types, " + getByteSize() + " bytes" +
+		       (isDirect() ? ", direct" : "") + '}';
+	}
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * A usable constructor with its {@link StringConverter}s already looked up in a fixed array, so creating an instance
+ * from string arguments needs no reflective lookup and allocates only the arguments and the instance. The plans of a
+ * class are computed once and cached per class by a {@link ClassValue}, which is stored with the class itself and
+ * does not keep its class loader reachable.
+ *
+ * @see eu.mmonschau.reflection.ClassInstatiator#getUsableConstructors(Class)
+ */
+final class ConstructorPlan {
+
+	private static final ClassValue<Table> PLANS = new ClassValue<Table>() {
+		@Override
+		protected Table computeValue(Class<?> type) {
+			return new Table(type);
+		}
+	};
+
+	private static final java.lang.invoke.MethodType INVOKER_TYPE =
+			java.lang.invoke.MethodType.methodType(Object.class, Object[].class);
+
+	/** shapes with more values than fit into a long are not cached */
+	private static final int MAX_SHAPE_LENGTH = (Long.SIZE - 1) / StringConverters.CATEGORY_BITS;
+	/** the maximum number of cached decisions per class */
+	private static final int MAX_DECISIONS    = 256;
+
+	private final java.lang.reflect.Constructor<?> constructor;
+	private final java.lang.invoke.MethodHandle    invoker;
+	private final StringConverter<?>[]             converters;
+	private final int[]                            categories;
+	private final int                              specificity;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 * @param converters
+	 * 		a converter per parameter, null if the parameter type cannot be converted
+	 */
+	private ConstructorPlan(java.lang.reflect.Constructor<?> constructor, StringConverter<?>[] converters) {
+		this.constructor = constructor;
+		this.converters = converters;
+		this.invoker = unreflect(constructor);
+		this.categories = new int[converters.length];
+		int specificity = 0;
+		for (int i = 0; i < converters.length; i++) {
+			if (converters[i] != null) {
+				categories[i] = StringConverters.getCategories(converters[i]);
+				specificity += StringConverters.getSpecificity(converters[i]);
+			}
+		}
+		this.specificity = specificity;
+	}
+
+	/**
+	 * gets the plans of all usable constructors of a class in the order of {@link Class#getConstructors()}
+	 *
+	 * @param type
+	 * 		the class
+	 *
+	 * @return the plans
+	 */
+	static java.util.List<ConstructorPlan> of(Class<?> type) {
+		return getTable(type).all;
+	}
+
+	/**
+	 * gets the plans of all usable constructors of a class with given number of parameters
+	 *
+	 * @param type
+	 * 		the class
+	 * @param arity
+	 * 		the number of parameters
+	 *
+	 * @return the plans, possibly empty
+	 */
+	static java.util.List<ConstructorPlan> of(Class<?> type, int arity) {
+		java.util.List<ConstructorPlan>[] byArity = getTable(type).byArity;
+		return arity < byArity.length ? byArity[arity] : java.util.Collections.emptyList();
+	}
+
+	/**
+	 * gets the plan of a constructor
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 *
+	 * @return the plan or null if the constructor is not usable
+	 */
+	static ConstructorPlan of(java.lang.reflect.Constructor<?> constructor) {
+		for (ConstructorPlan plan : of(constructor.getDeclaringClass(), constructor.getParameterCount())) {
+			if (plan.constructor.equals(constructor)) {
+				return plan;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves the best constructor for a row of values without converting them: the constructors whose converters
+	 * accept all values are ranked by the specificity of their converters, then by their signature. The candidates
+	 * are cached per shape of the values, i.e. per sequence of {@link StringConverters#categorize(String) categories}.
+	 *
+	 * @param type
+	 * 		the class
+	 * @param values
+	 * 		the values, not empty
+	 *
+	 * @return the best plan or null if no constructor accepts the values
+	 */
+	static ConstructorPlan resolve(Class<?> type, java.util.List<String> values) {
+		return resolve(candidates(type, values, shapeKey(values)), values);
+	}
+
+	/**
+	 * gets the first of the ranked candidates accepting a row of values
+	 *
+	 * @param candidates
+	 * 		the candidates for the shape of the values
+	 * @param values
+	 * 		the values
+	 *
+	 * @return the best plan or null if no candidate accepts the values
+	 */
+	static ConstructorPlan resolve(ConstructorPlan[] candidates, java.util.List<String> values) {
+		for (ConstructorPlan candidate : candidates) {
+			if (candidate.accepts(values)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * gets the key of the shape of a row of values, rows of different length have different keys
+	 *
+	 * @param values
+	 * 		the values
+	 *
+	 * @return the key or -1 if the row is too long for its shape to be cached
+	 */
+	static long shapeKey(java.util.List<String> values) {
+		int arity = values.size();
+		if (arity > MAX_SHAPE_LENGTH) {
+			return -1;
+		}
+		long key = 1;
+		for (int i = 0; i < arity; i++) {
+			key = key << StringConverters.CATEGORY_BITS | StringConverters.categorize(values.get(i));
+		}
+		return key;
+	}
+
+	/**
+	 * gets the ranked plans whose converters may accept a row of values, they are cached per shape key
+	 *
+	 * @param type
+	 * 		the class
+	 * @param values
+	 * 		the values, not empty
+	 * @param key
+	 * 		the shape key of the values, see {@link #shapeKey(java.util.List)}
+	 *
+	 * @return the candidates, possibly empty
+	 */
+	static ConstructorPlan[] candidates(Class<?> type, java.util.List<String> values, long key) {
+		Table table = getTable(type);
+		if (values.size() >= table.byArity.length) {
+			return new ConstructorPlan[0];
+		}
+		ConstructorPlan[] candidates = key == -1 ? null : table.decisions.get(key);
+		if (candidates == null) {
+			int[] shape = new int[values.size()];
+			for (int i = 0; i < shape.length; i++) {
+				shape[i] = StringConverters.categorize(values.get(i));
+			}
+			candidates = table.candidates(shape);
+			if (key != -1) {
+				table.decisions.put(key, candidates);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Creates an instance with the best constructor for a row of values. Only if the values cannot be converted for
+	 * it, the other constructors with as many parameters are tried, as values rejected by
+	 * {@link StringConverter#accepts(String)} may still be convertible. An exception of the called constructor is
+	 * thrown as is.
+	 *
+	 * @param type
+	 * 		the class
+	 * @param values
+	 * 		the values, not empty
+	 *
+	 * @return the new instance
+	 *
+	 * @throws InstantiationException
+	 * 		if no constructor can be called with the values or the called constructor fails
+	 */
+	static Object newInstance(Class<?> type, java.util.List<String> values) throws InstantiationException {
+		return newInstance(type, values, resolve(type, values));
+	}
+
+	/**
+	 * Creates an instance with a resolved constructor for a row of values, see
+	 * {@link #newInstance(Class, java.util.List)}
+	 *
+	 * @param type
+	 * 		the class
+	 * @param values
+	 * 		the values, not empty
+	 * @param best
+	 * 		the resolved plan or null if no constructor accepts the values
+	 *
+	 * @return the new instance
+	 *
+	 * @throws InstantiationException
+	 * 		if no constructor can be called with the values or the called constructor fails
+	 */
+	static Object newInstance(Class<?> type, java.util.List<String> values, ConstructorPlan best)
+			throws InstantiationException {
+		InstantiationException failure = null;
+		if (best != null) {
+			try {
+				return best.newInstance(best.convert(values));
+			} catch (ConversionException e) {
+				failure = e;
+			}
+		}
+		for (ConstructorPlan plan : of(type, values.size())) {
+			if (plan != best) {
+				Object[] args;
+				try {
+					args = plan.convert(values);
+				} catch (ConversionException e) {
+					failure = failure == null ? e : failure;
+					continue;
+				}
+				return plan.newInstance(args);
+			}
+		}
+		throw failure != null ? failure :
+		      new InstantiationException("No constructor of " + type.getName() + " with " + values.size() +
+		                                 " parameters is usable");
+	}
+
+	/**
+	 * checks whether all values are accepted by the converters without converting them
+	 *
+	 * @param values
+	 * 		one value per parameter
+	 *
+	 * @return true if the values are accepted
+	 */
+	boolean accepts(java.util.List<String> values) {
+		if (values.size() != converters.length) {
+			return false;
+		}
+		for (int i = 0; i < converters.length; i++) {
+			if (converters[i] == null || !converters[i].accepts(values.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the constructor
+	 */
+	java.lang.reflect.Constructor<?> getConstructor() {
+		return constructor;
+	}
+
+	/**
+	 * @return the number of parameters
+	 */
+	int getArity() {
+		return converters.length;
+	}
+
+	/**
+	 * converts string values to the parameter types of the constructor
+	 *
+	 * @param values
+	 * 		one value per parameter
+	 *
+	 * @return the arguments for the constructor
+	 *
+	 * @throws InstantiationException
+	 * 		if the number of values does not match or a value cannot be converted
+	 */
+	Object[] convert(java.util.List<String> values) throws InstantiationException {
+		if (values == null || values.size() != converters.length) {
+			throw new ConversionException("Tried to instantiate class without proper Argument number");
+		}
+		Object[] args = new Object[converters.length];
+		for (int i = 0; i < args.length; i++) {
+			if (converters[i] == null) {
+				throw new ConversionException("Cannot convert argument " + i + " of " + constructor + " from String");
+			}
+			try {
+				args[i] = converters[i].convert(values.get(i));
+			} catch (RuntimeException e) {
+				ConversionException conversionException = new ConversionException(e.toString());
+				conversionException.initCause(e);
+				throw conversionException;
+			}
+		}
+		return args;
+	}
+
+	/**
+	 * calls the constructor
+	 *
+	 * @param args
+	 * 		the arguments for the constructor
+	 *
+	 * @return the new instance
+	 *
+	 * @throws InstantiationException
+	 * 		if the constructor fails
+	 */
+	Object newInstance(Object[] args) throws InstantiationException {
+		try {
+			if (invoker != null) {
+				return invoker.invokeExact(args);
+			}
+			return constructor.newInstance(args);
+		} catch (Throwable e) {
+			Throwable cause = e instanceof java.lang.reflect.InvocationTargetException ?
+			                  ((java.lang.reflect.InvocationTargetException) e).getTargetException() : e;
+			InstantiationException instantiationException = new InstantiationException(cause.toString());
+			instantiationException.initCause(cause);
+			throw instantiationException;
+		}
+	}
+
+	/**
+	 * converts the values and calls the constructor
+	 *
+	 * @param values
+	 * 		one value per parameter
+	 *
+	 * @return the new instance
+	 *
+	 * @throws InstantiationException
+	 * 		if the values do not match or the constructor fails
+	 */
+	Object newInstance(java.util.List<String> values) throws InstantiationException {
+		return newInstance(converters.length == 0 ? new Object[0] : convert(values));
+	}
+
+	private static java.lang.invoke.MethodHandle unreflect(java.lang.reflect.Constructor<?> constructor) {
+		try {
+			return java.lang.invoke.MethodHandles.publicLookup().unreflectConstructor(constructor)
+					.asSpreader(Object[].class, constructor.getParameterCount())
+					.asType(INVOKER_TYPE);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * gets the plans of a class, they are recomputed if a converter was registered since they were computed
+	 *
+	 * @param type
+	 * 		the class
+	 *
+	 * @return the plans
+	 */
+	private static Table getTable(Class<?> type) {
+		Table table = PLANS.get(type);
+		if (table.generation != StringConverters.getGeneration()) {
+			PLANS.remove(type);
+			table = PLANS.get(type);
+		}
+		return table;
+	}
+
+	private static boolean hasValueOf(Class<?> type) {
+		try {
+			type.getMethod("valueOf", String.class);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Thrown if values cannot be converted to the parameter types of a constructor, unlike a failure of the
+	 * constructor itself another constructor may be tried then
+	 */
+	private static final class ConversionException extends InstantiationException {
+		private static final long serialVersionUID = 1L;
+
+		private ConversionException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * The plans of one class
+	 */
+	private static final class Table {
+		private final int                               generation = StringConverters.getGeneration();
+		private final java.util.List<ConstructorPlan>   all;
+		/** ranked by specificity and signature */
+		private final java.util.List<ConstructorPlan>[] byArity;
+		/** the ranked candidates per shape of values */
+		private final Decisions                         decisions  = new Decisions();
+
+		private Table(Class<?> type) {
+			java.util.List<ConstructorPlan> plans    = new java.util.ArrayList<>();
+			int                             maxArity = -1;
+			for (java.lang.reflect.Constructor<?> c : type.getConstructors()) {
+				Class<?>[]                      parameterTypes = c.getParameterTypes();
+				StringConverter<?>[]            converters     = new StringConverter<?>[parameterTypes.length];
+				boolean                         usable         = true;
+				for (int i = 0; i < parameterTypes.length && usable; i++) {
+					converters[i] = StringConverters.get(parameterTypes[i]);
+					//as before inaccessible valueOf methods count as usable but fail at conversion
+					usable = converters[i] != null || hasValueOf(parameterTypes[i]);
+				}
+				if (usable) {
+					plans.add(new ConstructorPlan(c, converters));
+					maxArity = Math.max(maxArity, parameterTypes.length);
+				}
+			}
+			all = java.util.Collections.unmodifiableList(plans);
+			@SuppressWarnings({"unchecked", "rawtypes"})
+			java.util.List<ConstructorPlan>[] byArity = new java.util.List[maxArity + 1];
+			this.byArity = byArity;
+			for (int i = 0; i < byArity.length; i++) {
+				byArity[i] = new java.util.ArrayList<>(1);
+			}
+			for (ConstructorPlan plan : plans) {
+				byArity[plan.getArity()].add(plan);
+			}
+			for (int i = 0; i < byArity.length; i++) {
+				byArity[i].sort(java.util.Comparator.comparingInt((ConstructorPlan plan) -> -plan.specificity)
+						                .thenComparing(plan -> plan.constructor.toString()));
+				byArity[i] = java.util.Collections.unmodifiableList(byArity[i]);
+			}
+		}
+
+		/**
+		 * gets the ranked plans whose converters may accept values of given categories
+		 *
+		 * @param shape
+		 * 		the category of each value
+		 *
+		 * @return the candidates
+		 */
+		private ConstructorPlan[] candidates(int[] shape) {
+			java.util.List<ConstructorPlan> candidates = new java.util.ArrayList<>();
+			plans:
+			for (ConstructorPlan plan : byArity[shape.length]) {
+				for (int i = 0; i < shape.length; i++) {
+					if ((plan.categories[i] & 1 << shape[i]) == 0) {
+						continue plans;
+					}
+				}
+				candidates.add(plan);
+			}
+			return candidates.toArray(new ConstructorPlan[0]);
+		}
+	}
+
+	/**
+	 * The ranked candidates per shape key of one class, an open addressing table of at most {@value #MAX_DECISIONS}
+	 * decisions, so a lookup neither boxes the key nor allocates. Decisions are only added, by compare-and-set; when
+	 * the table is full further shapes are resolved without caching them.
+	 */
+	private static final class Decisions {
+		/** twice the maximum number of decisions, so probing always reaches an empty slot */
+		private final java.util.concurrent.atomic.AtomicReferenceArray<Decision> slots =
+				new java.util.concurrent.atomic.AtomicReferenceArray<>(2 * MAX_DECISIONS);
+		private final java.util.concurrent.atomic.AtomicInteger                  size  =
+				new java.util.concurrent.atomic.AtomicInteger();
+
+		private ConstructorPlan[] get(long key) {
+			for (int i = index(key); ; i = (i + 1) % slots.length()) {
+				Decision decision = slots.get(i);
+				if (decision == null) {
+					return null;
+				} else if (decision.key == key) {
+					return decision.candidates;
+				}
+			}
+		}
+
+		private void put(long key, ConstructorPlan[] candidates) {
+			if (size.incrementAndGet() > MAX_DECISIONS) {
+				size.decrementAndGet();
+				return;
+			}
+			Decision decision = new Decision(key, candidates);
+			for (int i = index(key); ; i = (i + 1) % slots.length()) {
+				Decision current = slots.get(i);
+				if (current == null && slots.compareAndSet(i, null, decision)) {
+					return;
+				} else if (current == null) {
+					current = slots.get(i);
+				}
+				if (current.key == key) {
+					//added concurrently
+					size.decrementAndGet();
+					return;
+				}
+			}
+		}
+
+		private int index(long key) {
+			return (int) ((key * 0x9E3779B97F4A7C15L >>> 32) % slots.length());
+		}
+	}
+
+	/**
+	 * The ranked candidates of one shape
+	 */
+	private static final class Decision {
+		private final long              key;
+		private final ConstructorPlan[] candidates;
+
+		private Decision(long key, ConstructorPlan[] candidates) {
+			this.key = key;
+			this.candidates = candidates;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * How {@link ClassInstatiator#createInstance(Class)} creates an instance of a class without arguments. The strategy
+ * of a class is searched once and cached per class by a {@link ClassValue}: the public no-arg constructor, a public
+ * static no-arg getInstance method or a static factory method (of, valueOf, create) returning the class. The found
+ * constructor or method is bound as a {@link java.util.function.Supplier} over a
+ * {@link java.lang.invoke.MethodHandle}, so a creation needs no lookup, and a class without any of them is
+ * remembered as well, so failing classes throw no exception until the final {@link InstantiationException}.
+ */
+final class CreationStrategy {
+
+	private static final ClassValue<CreationStrategy> STRATEGIES = new ClassValue<CreationStrategy>() {
+		@Override
+		protected CreationStrategy computeValue(Class<?> type) {
+			return new CreationStrategy(type);
+		}
+	};
+
+	/** the static no-arg methods tried after getInstance, in this order */
+	private static final String[] FACTORY_NAMES = {"of", "valueOf", "create"};
+
+	private static final java.lang.invoke.MethodType SUPPLIER_TYPE =
+			java.lang.invoke.MethodType.methodType(Object.class);
+
+	/** the way instances are created */
+	enum Kind {
+		CONSTRUCTOR, GET_INSTANCE, FACTORY, NONE
+	}
+
+	private final Kind                                kind;
+	/** the bound constructor or method, null if kind is NONE */
+	private final java.util.function.Supplier<Object> supplier;
+	/** the constructor or method, for messages */
+	private final String                              source;
+
+	private CreationStrategy(Class<?> type) {
+		java.lang.invoke.MethodHandle handle = null;
+		Kind                          kind   = Kind.NONE;
+		String                        source = null;
+		if (!type.isInterface() && !type.isPrimitive() && !type.isArray() &&
+		    !java.lang.reflect.Modifier.isAbstract(type.getModifiers())) {
+			for (java.lang.reflect.Constructor<?> constructor : type.getConstructors()) {
+				if (constructor.getParameterCount() == 0 && (handle = unreflect(constructor)) != null) {
+					kind = Kind.CONSTRUCTOR;
+					source = constructor.toString();
+					break;
+				}
+			}
+		}
+		if (handle == null) {
+			java.lang.reflect.Method method = getFactoryMethod(type, "getInstance");
+			if (method != null && (handle = unreflect(method)) != null) {
+				kind = Kind.GET_INSTANCE;
+				source = method.toString();
+			}
+		}
+		for (int i = 0; handle == null && i < FACTORY_NAMES.length; i++) {
+			java.lang.reflect.Method method = getFactoryMethod(type, FACTORY_NAMES[i]);
+			if (method != null && (handle = unreflect(method)) != null) {
+				kind = Kind.FACTORY;
+				source = method.toString();
+			}
+		}
+		this.kind = kind;
+		this.source = source;
+		this.supplier = handle == null ? null : bind(handle.asType(SUPPLIER_TYPE));
+		if (handle == null) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					type.getName() + " has no public no-arg constructor, getInstance or factory method");
+		}
+	}
+
+	/**
+	 * gets the strategy of a class, it is searched on first use
+	 *
+	 * @param type
+	 * 		the class
+	 *
+	 * @return the strategy
+	 */
+	static CreationStrategy of(Class<?> type) {
+		return STRATEGIES.get(type);
+	}
+
+	/**
+	 * @return the way instances are created
+	 */
+	Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the bound constructor or method, null if the class cannot be instantiated without arguments
+	 */
+	java.util.function.Supplier<Object> getSupplier() {
+		return supplier;
+	}
+
+	/**
+	 * @return the constructor or method instances are created with, null if there is none
+	 */
+	String getSource() {
+		return source;
+	}
+
+	/**
+	 * binds a handle of type ()Object, a throwable of the constructor or method is wrapped in an
+	 * {@link java.lang.reflect.InvocationTargetException} as by {@link GeneratedBackend}
+	 */
+	private static java.util.function.Supplier<Object> bind(java.lang.invoke.MethodHandle handle) {
+		return () -> {
+			try {
+				return handle.invokeExact();
+			} catch (Throwable t) {
+				throw new RuntimeException(new java.lang.reflect.InvocationTargetException(t));
+			}
+		};
+	}
+
+	/**
+	 * @return a public static no-arg method of given name returning the type, null if there is none
+	 */
+	private static java.lang.reflect.Method getFactoryMethod(Class<?> type, String name) {
+		for (java.lang.reflect.Method method : type.getMethods()) {
+			if (method.getName().equals(name) && method.getParameterCount() == 0 &&
+			    java.lang.reflect.Modifier.isStatic(method.getModifiers()) &&
+			    type.isAssignableFrom(method.getReturnType())) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private static java.lang.invoke.MethodHandle unreflect(java.lang.reflect.Executable executable) {
+		try {
+			java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.lookup();
+			return executable instanceof java.lang.reflect.Constructor ?
+			       lookup.unreflectConstructor((java.lang.reflect.Constructor<?>) executable) :
+			       lookup.unreflect((java.lang.reflect.Method) executable);
+		} catch (IllegalAccessException e) {
+			//e.g. a public member of a class which is not public
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, e::toString);
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CreationStrategy{" + kind + (source == null ? "" : " " + source) + '}';
+	}
+}
@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Generates a class per constructor which stores the converted arguments in typed final fields and calls the
+ * constructor directly, like compiled code would. The class is defined as hidden class where the running jvm supports
+ * them (Java 15+) and the target class is visible from this library, otherwise it is defined in a class loader of its
+ * own whose parent is the loader of the target class. It is defined on the first creator of a constructor and cached
+ * with the declaring class, so further creators only instantiate it with their arguments; it can be unloaded with the
+ * target class.
+ * <p>
+ * Constructors which are not accessible from another package, e.g. of non-public classes, are delegated to
+ * {@link InstantiationBackend#METHOD_HANDLE}.
+ *
+ * @see eu.mmonschau.reflection.InstantiationBackend#GENERATED
+ */
+final class GeneratedBackend implements InstantiationBackend {
+
+	/** the name of hidden classes, which must be in the package of the defining lookup */
+	private static final String HIDDEN_NAME    = "eu/mmonschau/reflection/GeneratedCreator";
+	/** the prefix of classes defined in a class loader of their own */
+	private static final String LOADER_PREFIX  = "eu/mmonschau/reflection/generated/Creator";
+	private static final String CREATOR        = ClassInstanceCreator.class.getName().replace('.', '/');
+	private static final String OBJECT         = "java/lang/Object";
+	private static final String CONSTRUCTOR    = "<init>";
+	private static final String ARGS_TYPE      = "([Ljava/lang/Object;)V";
+	private static final String FACTORY_METHOD = "newInstance";
+	private static final String FACTORY_TYPE   = "()Ljava/lang/Object;";
+	private static final String TO_STRING      = "toString";
+	private static final String STRING_TYPE    = "()Ljava/lang/String;";
+	private static final String THROWABLE      = "java/lang/Throwable";
+	private static final String WRAPPER        = "java/lang/RuntimeException";
+	private static final String TARGET_WRAPPER = "java/lang/reflect/InvocationTargetException";
+	private static final String WRAP_TYPE      = "(Ljava/lang/Throwable;)V";
+
+	private static final java.util.concurrent.atomic.AtomicLong COUNTER = new java.util.concurrent.atomic.AtomicLong();
+
+	/**
+	 * the constructors of the generated classes by target constructor, empty if the method handle backend is used for
+	 * a constructor
+	 */
+	private static final ClassValue<java.util.concurrent.ConcurrentMap<java.lang.reflect.Constructor<?>,
+			java.util.Optional<java.lang.reflect.Constructor<?>>>>
+			GENERATED = new ClassValue<java.util.concurrent.ConcurrentMap<java.lang.reflect.Constructor<?>,
+			java.util.Optional<java.lang.reflect.Constructor<?>>>>() {
+		@Override
+		protected java.util.concurrent.ConcurrentMap<java.lang.reflect.Constructor<?>,
+				java.util.Optional<java.lang.reflect.Constructor<?>>> computeValue(Class<?> type) {
+			return new java.util.concurrent.ConcurrentHashMap<>(4);
+		}
+	};
+
+	/** Lookup.defineHiddenClass or null before Java 15 */
+	private static final java.lang.reflect.Method DEFINE_HIDDEN_CLASS = findDefineHiddenClass();
+	/** an empty ClassOption[] for defineHiddenClass */
+	private static final Object                   NO_OPTIONS          = noOptions();
+	/** Lookup.accessClass or null before Java 9 */
+	private static final java.lang.reflect.Method ACCESS_CLASS        = findAccessClass();
+
+	@Override
+	public String getName() {
+		return "generated";
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> ClassInstanceCreator<T> newCreator(java.lang.reflect.Constructor<T> constructor, Object[] args)
+			throws InstantiationException {
+		java.util.Optional<java.lang.reflect.Constructor<?>> generated =
+				GENERATED.get(constructor.getDeclaringClass()).computeIfAbsent(constructor, GeneratedBackend::generated);
+		if (!generated.isPresent()) {
+			return METHOD_HANDLE.newCreator(constructor, args);
+		}
+		try {
+			return (ClassInstanceCreator<T>) generated.get().newInstance((Object) args.clone());
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Using method handle for " + constructor + ": " + e);
+			return METHOD_HANDLE.newCreator(constructor, args);
+		}
+	}
+
+	/**
+	 * defines the class calling a constructor, once per constructor
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 *
+	 * @return the constructor of the generated class taking an Object[], empty if it cannot be generated
+	 */
+	private static java.util.Optional<java.lang.reflect.Constructor<?>> generated(
+			java.lang.reflect.Constructor<?> constructor) {
+		if (!isAccessible(constructor)) {
+			return java.util.Optional.empty();
+		}
+		try {
+			return java.util.Optional.of(define(constructor).getConstructor(Object[].class));
+		} catch (ReflectiveOperationException | LinkageError e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Using method handle for " + constructor + ": " + e);
+			return java.util.Optional.empty();
+		}
+	}
+
+	/**
+	 * defines the class calling a constructor
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 *
+	 * @return the class implementing {@link ClassInstanceCreator} with a constructor taking an Object[]
+	 *
+	 * @throws ReflectiveOperationException
+	 * 		if defining a hidden class fails
+	 */
+	private static Class<?> define(java.lang.reflect.Constructor<?> constructor) throws ReflectiveOperationException {
+		if (DEFINE_HIDDEN_CLASS != null && isVisible(constructor)) {
+			Object lookup = DEFINE_HIDDEN_CLASS.invoke(java.lang.invoke.MethodHandles.lookup(),
+			                                           generate(HIDDEN_NAME, constructor), false, NO_OPTIONS);
+			return ((java.lang.invoke.MethodHandles.Lookup) lookup).lookupClass();
+		}
+		String name = LOADER_PREFIX + COUNTER.incrementAndGet();
+		return new CreatorLoader(constructor.getDeclaringClass().getClassLoader())
+				.define(name.replace('/', '.'), generate(name, constructor));
+	}
+
+	/**
+	 * checks whether the generated class may call the constructor from another package and module
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 *
+	 * @return true if the constructor and its parameter types are public and exported
+	 */
+	private static boolean isAccessible(java.lang.reflect.Constructor<?> constructor) {
+		try {
+			java.lang.invoke.MethodHandles.publicLookup().unreflectConstructor(constructor);
+			for (Class<?> type : constructor.getParameterTypes()) {
+				while (type.isArray()) {
+					type = type.getComponentType();
+				}
+				if (type.isPrimitive()) {
+					continue;
+				}
+				for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+					if (!java.lang.reflect.Modifier.isPublic(c.getModifiers())) {
+						return false;
+					}
+				}
+				if (ACCESS_CLASS != null) {
+					ACCESS_CLASS.invoke(java.lang.invoke.MethodHandles.publicLookup(), type);
+				}
+			}
+			return true;
+		} catch (IllegalAccessException | java.lang.reflect.InvocationTargetException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * checks whether this library resolves the declaring class and parameter types of a constructor to the same
+	 * classes, so a hidden class defined next to it can refer to them
+	 *
+	 * @param constructor
+	 * 		the constructor
+	 *
+	 * @return true if all types are visible
+	 */
+	private static boolean isVisible(java.lang.reflect.Constructor<?> constructor) {
+		ClassLoader loader = GeneratedBackend.class.getClassLoader();
+		try {
+			Class<?> declaring = constructor.getDeclaringClass();
+			if (Class.forName(declaring.getName(), false, loader) != declaring) {
+				return false;
+			}
+			for (Class<?> type : constructor.getParameterTypes()) {
+				if (!type.isPrimitive() && Class.forName(type.getName(), false, loader) != type) {
+					return false;
+				}
+			}
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Generates the class file of
+	 * <pre>
+	 * public final class Name implements ClassInstanceCreator {
+	 *     private final P0 a0; ...
+	 *
+	 *     public Name(Object[] args) {
+	 *         a0 = (P0) args[0]; ...
+	 *     }
+	 *
+	 *     public Object newInstance() {
+	 *         try {
+	 *             return new Target(a0, ...);
+	 *         } catch (Throwable e) {
+	 *             throw new RuntimeException(new InvocationTargetException(e));
+	 *         }
+	 *     }
+	 *
+	 *     public String toString() {
+	 *         return "GeneratedCreator{" + constructor + '}';
+	 *     }
+	 * }
+	 * </pre>
+	 * The exceptions of the constructor are wrapped like by the other backends, so the generated instance is returned
+	 * as creator directly and the call sites of {@link ClassInstanceCreator#newInstance()} only see generated classes.
+	 *
+	 * @param name
+	 * 		the internal name of the class
+	 * @param constructor
+	 * 		the constructor to call
+	 *
+	 * @return the class file
+	 */
+	private static byte[] generate(String name, java.lang.reflect.Constructor<?> constructor) {
+		Class<?>[]   parameters = constructor.getParameterTypes();
+		ConstantPool pool       = new ConstantPool();
+		String       target     = constructor.getDeclaringClass().getName().replace('.', '/');
+		String       targetType = java.lang.invoke.MethodType.methodType(void.class, parameters)
+				.toMethodDescriptorString();
+
+		int   thisClass  = pool.classRef(name);
+		int   superClass = pool.classRef(OBJECT);
+		int   creator    = pool.classRef(CREATOR);
+		int   code       = pool.utf8("Code");
+		int   stackMap   = pool.utf8("StackMapTable");
+		int   throwable  = pool.classRef(THROWABLE);
+		int[] fields     = new int[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			fields[i] = pool.fieldRef(name, "a" + i, descriptor(parameters[i]));
+		}
+
+		//constructor storing the arguments
+		java.io.ByteArrayOutputStream init  = new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream      out   = new java.io.DataOutputStream(init);
+		int                           slots = 0;
+		try {
+			out.writeByte(0x2a); //aload_0
+			out.writeByte(0xb7); //invokespecial
+			out.writeShort(pool.methodRef(OBJECT, CONSTRUCTOR, "()V"));
+			for (int i = 0; i < parameters.length; i++) {
+				out.writeByte(0x2a); //aload_0
+				out.writeByte(0x2b); //aload_1
+				out.writeByte(0x11); //sipush
+				out.writeShort(i);
+				out.writeByte(0x32); //aaload
+				Class<?> parameter = parameters[i];
+				if (parameter.isPrimitive()) {
+					String wrapper = wrapper(parameter);
+					out.writeByte(0xc0); //checkcast
+					out.writeShort(pool.classRef(wrapper));
+					out.writeByte(0xb6); //invokevirtual
+					out.writeShort(pool.methodRef(wrapper, parameter.getName() + "Value", "()" + descriptor(parameter)));
+				} else if (parameter != Object.class) {
+					out.writeByte(0xc0); //checkcast
+					out.writeShort(pool.classRef(internalName(parameter)));
+				}
+				out.writeByte(0xb5); //putfield
+				out.writeShort(fields[i]);
+				slots += size(parameter);
+			}
+			out.writeByte(0xb1); //return
+		} catch (java.io.IOException e) {
+			throw new java.io.UncheckedIOException(e);
+		}
+
+		//factory method calling the target constructor
+		java.io.ByteArrayOutputStream factory = new java.io.ByteArrayOutputStream();
+		out = new java.io.DataOutputStream(factory);
+		int handler;
+		try {
+			out.writeByte(0xbb); //new
+			out.writeShort(pool.classRef(target));
+			out.writeByte(0x59); //dup
+			for (int field : fields) {
+				out.writeByte(0x2a); //aload_0
+				out.writeByte(0xb4); //getfield
+				out.writeShort(field);
+			}
+			out.writeByte(0xb7); //invokespecial
+			out.writeShort(pool.methodRef(target, CONSTRUCTOR, targetType));
+			out.writeByte(0xb0); //areturn
+			handler = out.size();
+			out.writeByte(0x4c); //astore_1
+			out.writeByte(0xbb); //new
+			out.writeShort(pool.classRef(WRAPPER));
+			out.writeByte(0x59); //dup
+			out.writeByte(0xbb); //new
+			out.writeShort(pool.classRef(TARGET_WRAPPER));
+			out.writeByte(0x59); //dup
+			out.writeByte(0x2b); //aload_1
+			out.writeByte(0xb7); //invokespecial
+			out.writeShort(pool.methodRef(TARGET_WRAPPER, CONSTRUCTOR, WRAP_TYPE));
+			out.writeByte(0xb7); //invokespecial
+			out.writeShort(pool.methodRef(WRAPPER, CONSTRUCTOR, WRAP_TYPE));
+			out.writeByte(0xbf); //athrow
+		} catch (java.io.IOException e) {
+			throw new java.io.UncheckedIOException(e);
+		}
+
+		//toString describing the target constructor
+		java.io.ByteArrayOutputStream description = new java.io.ByteArrayOutputStream();
+		out = new java.io.DataOutputStream(description);
+		try {
+			out.writeByte(0x13); //ldc_w
+			out.writeShort(pool.string("GeneratedCreator{" + constructor + '}'));
+			out.writeByte(0xb0); //areturn
+		} catch (java.io.IOException e) {
+			throw new java.io.UncheckedIOException(e);
+		}
+
+		int   initName    = pool.utf8(CONSTRUCTOR);
+		int   initType    = pool.utf8(ARGS_TYPE);
+		int   factoryName = pool.utf8(FACTORY_METHOD);
+		int   factoryType = pool.utf8(FACTORY_TYPE);
+		int   stringName  = pool.utf8(TO_STRING);
+		int   stringType  = pool.utf8(STRING_TYPE);
+		int[] fieldNames  = new int[parameters.length];
+		int[] fieldTypes  = new int[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			fieldNames[i] = pool.utf8("a" + i);
+			fieldTypes[i] = pool.utf8(descriptor(parameters[i]));
+		}
+
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		out = new java.io.DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52);
+			pool.write(out);
+			out.writeShort(0x0031); //public final super
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(creator);
+			out.writeShort(parameters.length);
+			for (int i = 0; i < parameters.length; i++) {
+				out.writeShort(0x0012); //private final
+				out.writeShort(fieldNames[i]);
+				out.writeShort(fieldTypes[i]);
+				out.writeShort(0);
+			}
+			out.writeShort(3);
+			writeMethod(out, initName, initType, code, 4, 2, init.toByteArray());
+			writeFactory(out, factoryName, factoryType, code, Math.max(2 + slots, 5), factory.toByteArray(), handler,
+			             throwable, stackMap);
+			writeMethod(out, stringName, stringType, code, 1, 1, description.toByteArray());
+			out.writeShort(0);
+		} catch (java.io.IOException e) {
+			throw new java.io.UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeMethod(java.io.DataOutputStream out, int name, int type, int codeAttribute, int maxStack,
+	                                int maxLocals, byte[] code) throws java.io.IOException {
+		out.writeShort(0x0001); //public
+		out.writeShort(name);
+		out.writeShort(type);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); //exception table
+		out.writeShort(0); //attributes
+	}
+
+	/**
+	 * writes the factory method, whose code up to the handler is guarded by a catch of Throwable
+	 *
+	 * @param handler
+	 * 		the offset of the handler, which expects the Throwable on the stack and the same locals as on entry
+	 * @param throwable
+	 * 		the class entry of Throwable
+	 * @param stackMap
+	 * 		the utf8 entry of StackMapTable
+	 */
+	private static void writeFactory(java.io.DataOutputStream out, int name, int type, int codeAttribute, int maxStack,
+	                                 byte[] code, int handler, int throwable, int stackMap) throws java.io.IOException {
+		out.writeShort(0x0001); //public
+		out.writeShort(name);
+		out.writeShort(type);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + code.length + 8 + 14);
+		out.writeShort(maxStack);
+		out.writeShort(2);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(1); //exception table
+		out.writeShort(0);
+		out.writeShort(handler);
+		out.writeShort(handler);
+		out.writeShort(throwable);
+		out.writeShort(1); //attributes
+		out.writeShort(stackMap);
+		out.writeInt(8);
+		out.writeShort(1);
+		out.writeByte(247); //same_locals_1_stack_item_frame_extended
+		out.writeShort(handler);
+		out.writeByte(7); //Object
+		out.writeShort(throwable);
+	}
+
+	private static String internalName(Class<?> type) {
+		return type.isArray() ? descriptor(type) : type.getName().replace('.', '/');
+	}
+
+	private static String descriptor(Class<?> type) {
+		return java.lang.invoke.MethodType.methodType(type).toMethodDescriptorString().substring(2);
+	}
+
+	private static String wrapper(Class<?> primitive) {
+		return java.lang.invoke.MethodType.methodType(primitive).wrap().returnType().getName().replace('.', '/');
+	}
+
+	private static int size(Class<?> type) {
+		return type == long.class || type == double.class ? 2 : 1;
+	}
+
+	private static java.lang.reflect.Method findDefineHiddenClass() {
+		try {
+			Class<?> options = Class.forName("[Ljava.lang.invoke.MethodHandles$Lookup$ClassOption;");
+			return java.lang.invoke.MethodHandles.Lookup.class
+					.getMethod("defineHiddenClass", byte[].class, boolean.class, options);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static Object noOptions() {
+		return DEFINE_HIDDEN_CLASS == null ? null :
+		       java.lang.reflect.Array.newInstance(DEFINE_HIDDEN_CLASS.getParameterTypes()[2].getComponentType(), 0);
+	}
+
+	private static java.lang.reflect.Method findAccessClass() {
+		try {
+			return java.lang.invoke.MethodHandles.Lookup.class.getMethod("accessClass", Class.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	/**
+	 * Defines a single generated class, it delegates to the loader of the target class but resolves
+	 * {@link ClassInstanceCreator} to the interface of this library
+	 */
+	private static final class CreatorLoader extends ClassLoader {
+
+		private CreatorLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.equals(ClassInstanceCreator.class.getName())) {
+				return ClassInstanceCreator.class;
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		private Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * The constant pool of a generated class
+	 */
+	private static final class ConstantPool {
+		private final java.util.Map<String, Integer> indexes = new java.util.HashMap<>();
+		private final java.io.ByteArrayOutputStream  bytes   = new java.io.ByteArrayOutputStream();
+		private final java.io.DataOutputStream       out     = new java.io.DataOutputStream(bytes);
+		private       int                            count   = 1;
+
+		private int utf8(String value) {
+			Integer index = indexes.get("U" + value);
+			if (index == null) {
+				try {
+					out.writeByte(1);
+					out.writeUTF(value);
+				} catch (java.io.IOException e) {
+					throw new java.io.UncheckedIOException(e);
+				}
+				index = add("U" + value);
+			}
+			return index;
+		}
+
+		private int classRef(String internalName) {
+			return entry(7, "C" + internalName, utf8(internalName), -1);
+		}
+
+		private int fieldRef(String owner, String name, String type) {
+			return entry(9, "F" + owner + '.' + name + ':' + type, classRef(owner), nameAndType(name, type));
+		}
+
+		private int methodRef(String owner, String name, String type) {
+			return entry(10, "M" + owner + '.' + name + type, classRef(owner), nameAndType(name, type));
+		}
+
+		private int string(String value) {
+			return entry(8, "S" + value, utf8(value), -1);
+		}
+
+		private int nameAndType(String name, String type) {
+			return entry(12, "N" + name + ':' + type, utf8(name), utf8(type));
+		}
+
+		/**
+		 * adds an entry referring to one or two other entries
+		 */
+		private int entry(int tag, String key, int first, int second) {
+			Integer index = indexes.get(key);
+			if (index == null) {
+				try {
+					out.writeByte(tag);
+					out.writeShort(first);
+					if (second >= 0) {
+						out.writeShort(second);
+					}
+				} catch (java.io.IOException e) {
+					throw new java.io.UncheckedIOException(e);
+				}
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int add(String key) {
+			indexes.put(key, count);
+			return count++;
+		}
+
+		private void write(java.io.DataOutputStream target) throws java.io.IOException {
+			target.writeShort(count);
+			target.write(bytes.toByteArray());
+		}
+	}
+}
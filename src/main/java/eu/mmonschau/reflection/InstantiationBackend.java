@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Builds the {@link ClassInstanceCreator}s which call a constructor with fixed arguments. The backend used by
+ * {@link ClassInstatiator#getInstanceCreator(Class, java.util.List)} is chosen with
+ * {@link ClassInstatiator#setBackend(InstantiationBackend)}, by default it is the first available backend registered
+ * with {@link java.util.ServiceLoader} or else the fastest built-in one, {@link #GENERATED}.
+ */
+public interface InstantiationBackend {
+
+	/** calls {@link java.lang.reflect.Constructor#newInstance(Object...)} on every call */
+	InstantiationBackend REFLECTION = new ReflectionBackend();
+
+	/** calls a {@link java.lang.invoke.MethodHandle} with bound arguments, see {@link ClassInstanceFactory} */
+	InstantiationBackend METHOD_HANDLE = new MethodHandleBackend();
+
+	/**
+	 * calls the constructor from a generated class, defined once per constructor as hidden class where supported and
+	 * in its own class loader otherwise, so it can be unloaded with the target class
+	 */
+	InstantiationBackend GENERATED = new GeneratedBackend();
+
+	/**
+	 * @return the name of the backend
+	 */
+	String getName();
+
+	/**
+	 * @return false if the backend cannot be used on the running jvm
+	 */
+	boolean isAvailable();
+
+	/**
+	 * Builds a creator
+	 *
+	 * @param constructor
+	 * 		the public constructor to call
+	 * @param args
+	 * 		the converted arguments for the constructor
+	 * @param <T>
+	 * 		the class to create
+	 *
+	 * @return the creator
+	 *
+	 * @throws InstantiationException
+	 * 		if the backend cannot call the constructor
+	 */
+	<T> ClassInstanceCreator<T> newCreator(java.lang.reflect.Constructor<T> constructor, Object[] args)
+			throws InstantiationException;
+}
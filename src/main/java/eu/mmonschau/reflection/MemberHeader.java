@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Describes an annotated field, method or constructor by the data stored in its class-file without loading the
+ * declaring class
+ *
+ * @see eu.mmonschau.reflection.ClassHeader#getAnnotatedMembers()
+ */
+public final class MemberHeader {
+
+	/**
+	 * The kinds of members
+	 */
+	public enum Kind {
+		FIELD, METHOD, CONSTRUCTOR
+	}
+
+	private final String                 declaringClassName;
+	private final Kind                   kind;
+	private final String                 name;
+	private final String                 descriptor;
+	private final int                    accessFlags;
+	private final java.util.List<String> annotationNames;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param declaringClassName
+	 * 		the fully qualified name of the declaring class
+	 * @param kind
+	 * 		the kind of the member
+	 * @param name
+	 * 		the name of the member (&lt;init&gt; for constructors)
+	 * @param descriptor
+	 * 		the field or method descriptor (JVMS 4.3)
+	 * @param accessFlags
+	 * 		the access flags of the member
+	 * @param annotationNames
+	 * 		the fully qualified names of the runtime visible annotations of the member
+	 */
+	public MemberHeader(String declaringClassName, Kind kind, String name, String descriptor, int accessFlags,
+	                    java.util.List<String> annotationNames) {
+		this.declaringClassName = java.util.Objects.requireNonNull(declaringClassName);
+		this.kind = java.util.Objects.requireNonNull(kind);
+		this.name = java.util.Objects.requireNonNull(name);
+		this.descriptor = java.util.Objects.requireNonNull(descriptor);
+		this.accessFlags = accessFlags;
+		this.annotationNames = java.util.Collections.unmodifiableList(new java.util.ArrayList<>(annotationNames));
+	}
+
+	/**
+	 * @return the fully qualified name of the declaring class
+	 */
+	public String getDeclaringClassName() {
+		return declaringClassName;
+	}
+
+	/**
+	 * @return the kind of the member
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the name of the member (&lt;init&gt; for constructors)
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the field or method descriptor, e.g. (ILjava/lang/String;)V
+	 */
+	public String getDescriptor() {
+		return descriptor;
+	}
+
+	/**
+	 * @return the access flags of the member, see {@link java.lang.reflect.Modifier}
+	 */
+	public int getAccessFlags() {
+		return accessFlags;
+	}
+
+	/**
+	 * @return the fully qualified names of the runtime visible annotations of the member
+	 */
+	public java.util.List<String> getAnnotationNames() {
+		return annotationNames;
+	}
+
+	/**
+	 * Loads the declaring class with given class loader (without initializing it) and resolves the member
+	 *
+	 * @param classLoader
+	 * 		the class loader to use
+	 *
+	 * @return the {@link java.lang.reflect.Field}, {@link java.lang.reflect.Method} or
+	 * {@link java.lang.reflect.Constructor} or null if it could not be loaded
+	 */
+	public java.lang.reflect.Member load(ClassLoader classLoader) {
+		Class<?> declaringClass = ClassScanner.loadClass(declaringClassName, classLoader);
+		if (declaringClass == null) {
+			return null;
+		}
+		try {
+			switch (kind) {
+				case FIELD:
+					return declaringClass.getDeclaredField(name);
+				case CONSTRUCTOR:
+					for (java.lang.reflect.Constructor<?> c : declaringClass.getDeclaredConstructors()) {
+						if (descriptor.equals(getDescriptor(c.getParameterTypes(), void.class))) {
+							return c;
+						}
+					}
+					break;
+				default:
+					for (java.lang.reflect.Method m : declaringClass.getDeclaredMethods()) {
+						if (m.getName().equals(name) &&
+						    descriptor.equals(getDescriptor(m.getParameterTypes(), m.getReturnType()))) {
+							return m;
+						}
+					}
+			}
+		} catch (NoSuchFieldException | LinkageError e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Could not resolve " + this + ": " + e);
+		}
+		return null;
+	}
+
+	private static String getDescriptor(Class<?>[] parameterTypes, Class<?> returnType) {
+		StringBuilder sb = new StringBuilder("(");
+		for (Class<?> p : parameterTypes) {
+			appendDescriptor(sb, p);
+		}
+		return appendDescriptor(sb.append(')'), returnType).toString();
+	}
+
+	private static StringBuilder appendDescriptor(StringBuilder sb, Class<?> type) {
+		if (type.isArray()) {
+			return sb.append(type.getName().replace('.', '/'));
+		} else if (!type.isPrimitive()) {
+			return sb.append('L').append(type.getName().replace('.', '/')).append(';');
+		}
+		return sb.append(type == void.class ? 'V' :
+		                 type == boolean.class ? 'Z' :
+		                 type == long.class ? 'J' :
+		                 Character.toUpperCase(type.getName().charAt(0)));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof MemberHeader)) {
+			return false;
+		}
+		MemberHeader that = (MemberHeader) o;
+		return accessFlags == that.accessFlags &&
+		       kind == that.kind &&
+		       declaringClassName.equals(that.declaringClassName) &&
+		       name.equals(that.name) &&
+		       descriptor.equals(that.descriptor) &&
+		       annotationNames.equals(that.annotationNames);
+	}
+
+	@Override
+	public int hashCode() {
+		return java.util.Objects.hash(declaringClassName, name, descriptor);
+	}
+
+	@Override
+	public String toString() {
+		return "MemberHeader{" + kind + " " + declaringClassName + "." + name + (kind == Kind.FIELD ? ":" : "") +
+		       descriptor + '}';
+	}
+}
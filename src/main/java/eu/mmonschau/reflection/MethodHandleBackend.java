@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Calls the constructor by a method handle with bound arguments
+ *
+ * @see eu.mmonschau.reflection.InstantiationBackend#METHOD_HANDLE
+ */
+final class MethodHandleBackend implements InstantiationBackend {
+
+	@Override
+	public String getName() {
+		return "method-handle";
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	@Override
+	public <T> ClassInstanceCreator<T> newCreator(java.lang.reflect.Constructor<T> constructor, Object[] args) {
+		return new ClassInstanceFactory<>(constructor, args.clone());
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Copies objects field by field. The copier of a class is built once and cached per class by a {@link ClassValue}: it
+ * allocates the copy without calling a constructor and copies all instance fields of the class and its superclasses
+ * with a chain of {@link java.lang.invoke.MethodHandle}s, primitive fields without boxing.
+ * <p>
+ * Immutable values (Strings, boxed primitives, enums, java.time values, ...) are shared, arrays are copied and
+ * collections and maps of the jdk are copied into a new collection of the same class (or a standard collection if
+ * it has no public constructor), keeping the comparator of sorted sets, maps and priority queues. Unmodifiable and
+ * immutable collections of the jdk are copied into a standard collection wrapped as unmodifiable again, empty ones
+ * are shared; synchronized views are wrapped as synchronized again, checked views cannot be copied. Records are
+ * created by their canonical constructor from the values of their components. Other jdk classes which cannot be
+ * accessed by reflection are copied by their public clone method, atomic values by their value; the remaining ones
+ * (e.g. of encapsulated jdk modules) are shared by the copy, shallow and deep. A deep copy of a class extending such a
+ * jdk class copies the elements of a collection or map and the fields of its own classes, otherwise it fails.
+ *
+ * @see eu.mmonschau.reflection.PrototypeInstanceCreator
+ */
+final class ObjectCopier {
+
+	private static final ClassValue<ObjectCopier> COPIERS = new ClassValue<ObjectCopier>() {
+		@Override
+		protected ObjectCopier computeValue(Class<?> type) {
+			return new ObjectCopier(type);
+		}
+	};
+
+	private static final java.util.Set<Class<?>> IMMUTABLE = new java.util.HashSet<>(java.util.Arrays.asList(
+			String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+			Float.class, Double.class, java.math.BigInteger.class, java.math.BigDecimal.class, java.util.UUID.class,
+			java.util.Locale.class, java.io.File.class, java.net.URI.class, java.util.regex.Pattern.class, Class.class,
+			java.util.Currency.class, java.nio.charset.Charset.class, java.util.Optional.class,
+			java.util.OptionalInt.class, java.util.OptionalLong.class, java.util.OptionalDouble.class));
+
+	private static final java.lang.invoke.MethodType COPY_TYPE   =
+			java.lang.invoke.MethodType.methodType(void.class, Object.class, Object.class);
+	private static final java.lang.invoke.MethodType GETTER_TYPE =
+			java.lang.invoke.MethodType.methodType(Object.class, Object.class);
+
+	/** allocates an instance without calling a constructor, of type (Class)Object, null if not available */
+	private static final java.lang.invoke.MethodHandle ALLOCATE_INSTANCE     = getAllocateInstance();
+	/** Class.getRecordComponents or null before Java 16 */
+	private static final java.lang.reflect.Method      GET_RECORD_COMPONENTS = findGetRecordComponents();
+
+	/** marks a record in copies while its components are copied, as it can only be created afterwards */
+	private static final Object IN_PROGRESS = new Object();
+
+	/** how instances of a class are copied */
+	private enum Kind {
+		IMMUTABLE, ARRAY, COLLECTION, MAP, RECORD, FIELDS
+	}
+
+	private final Class<?>                        type;
+	private final Kind                            kind;
+	/** the reason why the fields cannot be copied or null */
+	private final String                          failure;
+	private final java.lang.invoke.MethodHandle   allocator;
+	/** copies all fields from the second argument to the first, null if there are none */
+	private final java.lang.invoke.MethodHandle   copyAll;
+	/** copies the primitive fields from the second argument to the first, null if there are none */
+	private final java.lang.invoke.MethodHandle   copyPrimitives;
+	private final java.lang.invoke.MethodHandle[] referenceGetters;
+	private final java.lang.invoke.MethodHandle[] referenceSetters;
+	/** the public clone method, used if the fields are not accessible */
+	private final java.lang.invoke.MethodHandle   clone;
+	/** the accessors of the components of a record, of type (Object)Object */
+	private final java.lang.invoke.MethodHandle[] componentGetters;
+	/** the canonical constructor of a record, of type (Object[])Object */
+	private final java.lang.invoke.MethodHandle   canonicalConstructor;
+
+	private ObjectCopier(Class<?> type) {
+		this.type = type;
+		this.kind = isImmutable(type) ? Kind.IMMUTABLE :
+		            type.isArray() ? Kind.ARRAY :
+		            type.getName().startsWith("java.") && java.util.Collection.class.isAssignableFrom(type) ?
+		            Kind.COLLECTION :
+		            type.getName().startsWith("java.") && java.util.Map.class.isAssignableFrom(type) ? Kind.MAP :
+		            isRecord(type) ? Kind.RECORD :
+		            Kind.FIELDS;
+		java.lang.invoke.MethodHandle                 allocator        = null;
+		java.lang.invoke.MethodHandle                 copyAll          = null;
+		java.lang.invoke.MethodHandle                 copyPrimitives   = null;
+		java.util.List<java.lang.invoke.MethodHandle> referenceGetters = new java.util.ArrayList<>();
+		java.util.List<java.lang.invoke.MethodHandle> referenceSetters = new java.util.ArrayList<>();
+		String                                        failure          = null;
+		java.lang.invoke.MethodHandle[]               componentGetters = null;
+		java.lang.invoke.MethodHandle                 canonical        = null;
+		if (kind == Kind.RECORD) {
+			try {
+				java.lang.invoke.MethodHandles.Lookup lookup     = java.lang.invoke.MethodHandles.lookup();
+				Object[]                              components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+				Class<?>[]                            types      = new Class<?>[components.length];
+				componentGetters = new java.lang.invoke.MethodHandle[components.length];
+				for (int i = 0; i < components.length; i++) {
+					java.lang.reflect.Method accessor = (java.lang.reflect.Method) components[i].getClass()
+							.getMethod("getAccessor").invoke(components[i]);
+					accessor.setAccessible(true);
+					types[i] = accessor.getReturnType();
+					componentGetters[i] = lookup.unreflect(accessor).asType(GETTER_TYPE);
+				}
+				java.lang.reflect.Constructor<?> constructor = type.getDeclaredConstructor(types);
+				constructor.setAccessible(true);
+				canonical = lookup.unreflectConstructor(constructor)
+						.asSpreader(Object[].class, types.length)
+						.asType(java.lang.invoke.MethodType.methodType(Object.class, Object[].class));
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				failure = e.toString();
+			}
+		} else if (kind == Kind.FIELDS) {
+			try {
+				allocator = getAllocator(type);
+				java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.lookup();
+				for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+					for (java.lang.reflect.Field field : c.getDeclaredFields()) {
+						if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) {
+							continue;
+						}
+						field.setAccessible(true);
+						java.lang.invoke.MethodHandle getter = lookup.unreflectGetter(field);
+						java.lang.invoke.MethodHandle setter = lookup.unreflectSetter(field);
+						//(dst, src) -> setter(dst, getter(src))
+						java.lang.invoke.MethodHandle copy = java.lang.invoke.MethodHandles
+								.filterArguments(setter, 1, getter).asType(COPY_TYPE);
+						copyAll = chain(copyAll, copy);
+						if (field.getType().isPrimitive()) {
+							copyPrimitives = chain(copyPrimitives, copy);
+						} else {
+							referenceGetters.add(getter.asType(GETTER_TYPE));
+							referenceSetters.add(setter.asType(COPY_TYPE));
+						}
+					}
+				}
+			} catch (IllegalAccessException | RuntimeException e) {
+				//e.g. InaccessibleObjectException for classes of the jdk modules, the reference fields of the
+				//subclasses found so far are kept to deepen a clone
+				failure = e.toString();
+			}
+		}
+		this.componentGetters = componentGetters;
+		this.canonicalConstructor = canonical;
+		this.failure = failure;
+		this.allocator = allocator;
+		this.copyAll = copyAll;
+		this.copyPrimitives = copyPrimitives;
+		this.referenceGetters = referenceGetters.toArray(new java.lang.invoke.MethodHandle[0]);
+		this.referenceSetters = referenceSetters.toArray(new java.lang.invoke.MethodHandle[0]);
+		this.clone = failure == null || kind == Kind.RECORD ? null : getClone(type);
+	}
+
+	/**
+	 * Copies an object
+	 *
+	 * @param object
+	 * 		the object to copy, may be null
+	 * @param deep
+	 * 		false to share the objects referenced by the copy with the original, true to copy them as well
+	 * @param copies
+	 * 		the copies made so far by original, to copy cycles and shared references of a deep copy only once; null for
+	 * 		a shallow copy
+	 * @param <T>
+	 * 		the class of the object
+	 *
+	 * @return the copy
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the object or an object referenced by it cannot be copied
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T copy(T object, boolean deep, java.util.IdentityHashMap<Object, Object> copies) {
+		if (object == null) {
+			return null;
+		}
+		ObjectCopier copier = COPIERS.get(object.getClass());
+		if (copier.kind == Kind.IMMUTABLE) {
+			return object;
+		}
+		Object copy = copies != null ? copies.get(object) : null;
+		if (copy == IN_PROGRESS) {
+			throw new IllegalArgumentException("Cannot copy a cycle through record " + object.getClass().getName());
+		} else if (copy != null) {
+			return (T) copy;
+		}
+		switch (copier.kind) {
+			case ARRAY:
+				return (T) copyArray(object, deep, copies);
+			case COLLECTION:
+				return (T) copyCollection((java.util.Collection<Object>) object, deep, copies);
+			case MAP:
+				return (T) copyMap((java.util.Map<Object, Object>) object, deep, copies);
+			case RECORD:
+				return (T) copier.copyRecord(object, deep, copies);
+			default:
+				return (T) copier.copyFields(object, deep, copies);
+		}
+	}
+
+	private Object copyFields(Object object, boolean deep, java.util.IdentityHashMap<Object, Object> copies) {
+		try {
+			if (failure != null) {
+				Object copy = clone != null ? clone.invoke(object) : copyAtomic(object, deep, copies);
+				if (copy == null) {
+					if (!isJdk(type)) {
+						throw new IllegalArgumentException("Cannot copy " + type.getName() + ": " + failure);
+					}
+					//an inaccessible jdk object without a way to copy it
+					copy = object;
+				}
+				put(copies, object, copy);
+				if (deep && clone != null) {
+					deepenClone(object, copy, copies);
+				}
+				return copy;
+			}
+			Object copy = allocator.invokeExact();
+			if (!deep) {
+				if (copyAll != null) {
+					copyAll.invokeExact(copy, object);
+				}
+				return copy;
+			}
+			copies.put(object, copy);
+			if (copyPrimitives != null) {
+				copyPrimitives.invokeExact(copy, object);
+			}
+			for (int i = 0; i < referenceGetters.length; i++) {
+				Object value = referenceGetters[i].invokeExact(object);
+				referenceSetters[i].invokeExact(copy, copy(value, true, copies));
+			}
+			return copy;
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Cannot copy " + type.getName(), e);
+		}
+	}
+
+	/**
+	 * replaces the references a clone shares with the original by copies
+	 */
+	@SuppressWarnings("unchecked")
+	private void deepenClone(Object object, Object copy, java.util.IdentityHashMap<Object, Object> copies)
+			throws Throwable {
+		if (isJdk(type)) {
+			//the clone method of the jdk class defines its copy
+			return;
+		}
+		if (object instanceof java.util.Collection) {
+			java.util.Collection<Object> elements = (java.util.Collection<Object>) copy;
+			elements.clear();
+			for (Object element : (java.util.Collection<Object>) object) {
+				elements.add(copy(element, true, copies));
+			}
+		} else if (object instanceof java.util.Map) {
+			java.util.Map<Object, Object> entries = (java.util.Map<Object, Object>) copy;
+			entries.clear();
+			for (java.util.Map.Entry<Object, Object> entry : ((java.util.Map<Object, Object>) object).entrySet()) {
+				entries.put(copy(entry.getKey(), true, copies), copy(entry.getValue(), true, copies));
+			}
+		} else {
+			throw new IllegalArgumentException("Cannot deep copy " + type.getName() + ": " + failure);
+		}
+		//the fields of the classes below the inaccessible jdk class
+		for (int i = 0; i < referenceGetters.length; i++) {
+			Object value = referenceGetters[i].invokeExact(object);
+			referenceSetters[i].invokeExact(copy, copy(value, true, copies));
+		}
+	}
+
+	private Object copyRecord(Object object, boolean deep, java.util.IdentityHashMap<Object, Object> copies) {
+		if (failure != null) {
+			throw new IllegalArgumentException("Cannot copy " + type.getName() + ": " + failure);
+		}
+		try {
+			Object[] values = new Object[componentGetters.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = componentGetters[i].invokeExact(object);
+			}
+			if (deep) {
+				copies.put(object, IN_PROGRESS);
+				for (int i = 0; i < values.length; i++) {
+					values[i] = copy(values[i], true, copies);
+				}
+			}
+			Object copy = canonicalConstructor.invokeExact(values);
+			put(copies, object, copy);
+			return copy;
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Cannot copy " + type.getName(), e);
+		}
+	}
+
+	private static Object copyArray(Object array, boolean deep, java.util.IdentityHashMap<Object, Object> copies) {
+		int    length = java.lang.reflect.Array.getLength(array);
+		Object copy   = java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), length);
+		//noinspection SuspiciousSystemArraycopy
+		System.arraycopy(array, 0, copy, 0, length);
+		put(copies, array, copy);
+		if (deep && copy instanceof Object[]) {
+			Object[] elements = (Object[]) copy;
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = copy(elements[i], true, copies);
+			}
+		}
+		return copy;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object copyCollection(java.util.Collection<Object> collection, boolean deep,
+	                                     java.util.IdentityHashMap<Object, Object> copies) {
+		if (collection instanceof java.util.EnumSet) {
+			//the elements are immutable
+			java.util.EnumSet<?> copy = ((java.util.EnumSet<?>) collection).clone();
+			put(copies, collection, copy);
+			return copy;
+		}
+		checkNotChecked(collection.getClass());
+		boolean unmodifiable = isUnmodifiable(collection.getClass());
+		if (unmodifiable && collection.isEmpty()) {
+			return collection;
+		}
+		boolean synchronizedView = isSynchronized(collection.getClass());
+		java.util.Comparator<Object> comparator = collection instanceof java.util.SortedSet ?
+		                                          ((java.util.SortedSet<Object>) collection).comparator() :
+		                                          collection instanceof java.util.PriorityQueue ?
+		                                          ((java.util.PriorityQueue<Object>) collection).comparator() :
+		                                          collection instanceof java.util.concurrent.PriorityBlockingQueue ?
+		                                          ((java.util.concurrent.PriorityBlockingQueue<Object>) collection)
+				                                          .comparator() : null;
+		java.util.Collection<Object> copy = unmodifiable || synchronizedView ? null :
+		                                    (java.util.Collection<Object>) newInstance(collection.getClass(),
+		                                                                               comparator);
+		if (copy == null) {
+			if (collection instanceof java.util.SortedSet) {
+				copy = new java.util.TreeSet<>(comparator);
+			} else if (collection instanceof java.util.Set) {
+				copy = new java.util.LinkedHashSet<>();
+			} else if (collection instanceof java.util.Queue) {
+				copy = comparator != null ? new java.util.PriorityQueue<>(comparator) : new java.util.ArrayDeque<>();
+			} else {
+				copy = new java.util.ArrayList<>(collection.size());
+			}
+		}
+		java.util.Collection<Object> result = unmodifiable ? unmodifiable(copy) :
+		                                      synchronizedView ? synchronizedView(copy) : copy;
+		put(copies, collection, result);
+		//a synchronized view must be locked while it is iterated
+		synchronized (synchronizedView ? collection : copy) {
+			for (Object element : collection) {
+				copy.add(deep ? copy(element, true, copies) : element);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * wraps a standard collection as unmodifiable view of the same kind
+	 */
+	private static java.util.Collection<Object> unmodifiable(java.util.Collection<Object> collection) {
+		return collection instanceof java.util.NavigableSet ?
+		       java.util.Collections.unmodifiableNavigableSet((java.util.NavigableSet<Object>) collection) :
+		       collection instanceof java.util.Set ?
+		       java.util.Collections.unmodifiableSet((java.util.Set<Object>) collection) :
+		       collection instanceof java.util.List ?
+		       java.util.Collections.unmodifiableList((java.util.List<Object>) collection) :
+		       java.util.Collections.unmodifiableCollection(collection);
+	}
+
+	/**
+	 * wraps a standard collection as synchronized view of the same kind
+	 */
+	private static java.util.Collection<Object> synchronizedView(java.util.Collection<Object> collection) {
+		return collection instanceof java.util.NavigableSet ?
+		       java.util.Collections.synchronizedNavigableSet((java.util.NavigableSet<Object>) collection) :
+		       collection instanceof java.util.Set ?
+		       java.util.Collections.synchronizedSet((java.util.Set<Object>) collection) :
+		       collection instanceof java.util.List ?
+		       java.util.Collections.synchronizedList((java.util.List<Object>) collection) :
+		       java.util.Collections.synchronizedCollection(collection);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object copyMap(java.util.Map<Object, Object> map, boolean deep,
+	                              java.util.IdentityHashMap<Object, Object> copies) {
+		checkNotChecked(map.getClass());
+		boolean unmodifiable = isUnmodifiable(map.getClass());
+		if (unmodifiable && map.isEmpty()) {
+			return map;
+		}
+		boolean synchronizedView = isSynchronized(map.getClass());
+		java.util.Map<Object, Object> copy;
+		if (map instanceof java.util.EnumMap) {
+			copy = new java.util.EnumMap<>((java.util.EnumMap) map);
+			copy.clear();
+		} else {
+			java.util.Comparator<Object> comparator = map instanceof java.util.SortedMap ?
+			                                          ((java.util.SortedMap<Object, Object>) map).comparator() : null;
+			copy = unmodifiable || synchronizedView ? null :
+			       (java.util.Map<Object, Object>) newInstance(map.getClass(), comparator);
+			if (copy == null) {
+				copy = map instanceof java.util.SortedMap ? new java.util.TreeMap<>(comparator) :
+				       new java.util.LinkedHashMap<>();
+			}
+		}
+		java.util.Map<Object, Object> result = unmodifiable ?
+		                                       copy instanceof java.util.NavigableMap ?
+		                                       java.util.Collections.unmodifiableNavigableMap(
+				                                       (java.util.NavigableMap<Object, Object>) copy) :
+		                                       java.util.Collections.unmodifiableMap(copy) :
+		                                       synchronizedView ?
+		                                       copy instanceof java.util.NavigableMap ?
+		                                       java.util.Collections.synchronizedNavigableMap(
+				                                       (java.util.NavigableMap<Object, Object>) copy) :
+		                                       java.util.Collections.synchronizedMap(copy) :
+		                                       copy;
+		put(copies, map, result);
+		//a synchronized view must be locked while it is iterated
+		synchronized (synchronizedView ? map : copy) {
+			for (java.util.Map.Entry<Object, Object> entry : map.entrySet()) {
+				copy.put(deep ? copy(entry.getKey(), true, copies) : entry.getKey(),
+				         deep ? copy(entry.getValue(), true, copies) : entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * copies an atomic value of java.util.concurrent.atomic, which is not accessible by reflection on newer jdks
+	 *
+	 * @return the copy or null if the object is no atomic value
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object copyAtomic(Object object, boolean deep, java.util.IdentityHashMap<Object, Object> copies) {
+		if (object instanceof java.util.concurrent.atomic.AtomicInteger) {
+			return new java.util.concurrent.atomic.AtomicInteger(
+					((java.util.concurrent.atomic.AtomicInteger) object).get());
+		} else if (object instanceof java.util.concurrent.atomic.AtomicLong) {
+			return new java.util.concurrent.atomic.AtomicLong(((java.util.concurrent.atomic.AtomicLong) object).get());
+		} else if (object instanceof java.util.concurrent.atomic.AtomicBoolean) {
+			return new java.util.concurrent.atomic.AtomicBoolean(
+					((java.util.concurrent.atomic.AtomicBoolean) object).get());
+		} else if (object instanceof java.util.concurrent.atomic.AtomicReference) {
+			java.util.concurrent.atomic.AtomicReference<Object> copy =
+					new java.util.concurrent.atomic.AtomicReference<>();
+			put(copies, object, copy);
+			Object value = ((java.util.concurrent.atomic.AtomicReference<Object>) object).get();
+			copy.set(deep ? copy(value, true, copies) : value);
+			return copy;
+		}
+		return null;
+	}
+
+	/**
+	 * creates an empty collection or map by its public constructor
+	 *
+	 * @param type
+	 * 		the class of the collection or map
+	 * @param comparator
+	 * 		the comparator of a sorted collection or map, or null
+	 *
+	 * @return the new instance or null if there is no public constructor
+	 */
+	private static Object newInstance(Class<?> type, java.util.Comparator<?> comparator) {
+		if (!java.lang.reflect.Modifier.isPublic(type.getModifiers())) {
+			return null;
+		}
+		try {
+			if (comparator == null) {
+				return type.getConstructor().newInstance();
+			}
+			try {
+				return type.getConstructor(java.util.Comparator.class).newInstance(comparator);
+			} catch (NoSuchMethodException e) {
+				//e.g. PriorityBlockingQueue
+				return type.getConstructor(int.class, java.util.Comparator.class).newInstance(11, comparator);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static void put(java.util.IdentityHashMap<Object, Object> copies, Object original, Object copy) {
+		if (copies != null) {
+			copies.put(original, copy);
+		}
+	}
+
+	/**
+	 * @return true if the class is an unmodifiable view or an immutable collection or map of the jdk
+	 */
+	private static boolean isUnmodifiable(Class<?> type) {
+		String name = type.getName();
+		return name.startsWith("java.util.ImmutableCollections$") ||
+		       name.startsWith("java.util.Collections$Unmodifiable") ||
+		       name.startsWith("java.util.Collections$Empty") || name.startsWith("java.util.Collections$Singleton");
+	}
+
+	/**
+	 * @return true if the class is a synchronized view of the jdk
+	 */
+	private static boolean isSynchronized(Class<?> type) {
+		return type.getName().startsWith("java.util.Collections$Synchronized");
+	}
+
+	/**
+	 * rejects checked views of the jdk, as the element type they check is not accessible
+	 */
+	private static void checkNotChecked(Class<?> type) {
+		if (type.getName().startsWith("java.util.Collections$Checked")) {
+			throw new IllegalArgumentException("Cannot copy checked view " + type.getName());
+		}
+	}
+
+	private static boolean isRecord(Class<?> type) {
+		return GET_RECORD_COMPONENTS != null && type.getSuperclass() != null &&
+		       type.getSuperclass().getName().equals("java.lang.Record");
+	}
+
+	private static boolean isJdk(Class<?> type) {
+		String name = type.getName();
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") ||
+		       name.startsWith("sun.") || name.startsWith("com.sun.");
+	}
+
+	private static boolean isImmutable(Class<?> type) {
+		return IMMUTABLE.contains(type) || type.isEnum() ||
+		       (type.getSuperclass() != null && type.getSuperclass().isEnum()) ||
+		       type.getName().startsWith("java.time.") || java.nio.file.Path.class.isAssignableFrom(type);
+	}
+
+	/**
+	 * appends a copy to a chain of copies
+	 *
+	 * @param chain
+	 * 		the chain or null
+	 * @param copy
+	 * 		the copy of type (Object, Object)void
+	 *
+	 * @return the chain running the copy after the former chain
+	 */
+	private static java.lang.invoke.MethodHandle chain(java.lang.invoke.MethodHandle chain,
+	                                                   java.lang.invoke.MethodHandle copy) {
+		return chain == null ? copy : java.lang.invoke.MethodHandles.foldArguments(copy, chain);
+	}
+
+	/**
+	 * gets an allocator of a class which does not call a constructor, or the no-arg constructor as fallback
+	 *
+	 * @param type
+	 * 		the class
+	 *
+	 * @return a method handle of type ()Object
+	 *
+	 * @throws IllegalAccessException
+	 * 		if there is neither an allocator nor an accessible no-arg constructor
+	 */
+	private static java.lang.invoke.MethodHandle getAllocator(Class<?> type) throws IllegalAccessException {
+		if (ALLOCATE_INSTANCE != null) {
+			return java.lang.invoke.MethodHandles.insertArguments(ALLOCATE_INSTANCE, 0, type);
+		}
+		try {
+			java.lang.reflect.Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return java.lang.invoke.MethodHandles.lookup().unreflectConstructor(constructor)
+					.asType(java.lang.invoke.MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException e) {
+			throw new IllegalAccessException("No allocator and no no-arg constructor for " + type.getName());
+		}
+	}
+
+	/**
+	 * looks up sun.misc.Unsafe#allocateInstance
+	 *
+	 * @return a method handle of type (Class)Object or null if it is not available
+	 */
+	private static java.lang.invoke.MethodHandle getAllocateInstance() {
+		try {
+			Class<?>                 unsafeClass = Class.forName("sun.misc.Unsafe");
+			java.lang.reflect.Field theUnsafe   = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return java.lang.invoke.MethodHandles.lookup()
+					.unreflect(unsafeClass.getMethod("allocateInstance", Class.class))
+					.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Copies call no-arg constructors: " + e);
+			return null;
+		}
+	}
+
+	private static java.lang.reflect.Method findGetRecordComponents() {
+		try {
+			return Class.class.getMethod("getRecordComponents");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * gets the public clone method of a class
+	 *
+	 * @param type
+	 * 		the class
+	 *
+	 * @return a method handle of type (Object)Object or null if there is none
+	 */
+	private static java.lang.invoke.MethodHandle getClone(Class<?> type) {
+		if (!Cloneable.class.isAssignableFrom(type)) {
+			return null;
+		}
+		try {
+			return java.lang.invoke.MethodHandles.publicLookup().unreflect(type.getMethod("clone"))
+					.asType(GETTER_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Scans jars and class directories in parallel and merges the class-headers into concurrent indexes.
+ * Every jar is scanned by its own task, directories without a precomputed index are split into one task per
+ * subdirectory. If a class name
+ * occurs in more than one location the header of the location which comes first in the classpath is kept, as in a
+ * sequential scan.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+final class ParallelClassScan {
+
+	private final java.util.concurrent.Executor                           executor;
+	private final ClassIndexCache                                         cache;
+	private final ScanStatistics                                          statistics;
+	/** the headers to index or null for all */
+	private final java.util.function.Predicate<ClassHeader>               filter;
+	private final ScanResult                                              result  =
+			new ScanResult(new ClassHierarchyIndex(), new AnnotationIndex());
+	private final java.util.concurrent.ConcurrentHashMap<String, Integer> ranks   =
+			new java.util.concurrent.ConcurrentHashMap<>();
+	/** number of unfinished tasks, plus one while tasks are still submitted by {@link #scan(java.util.List)} */
+	private final java.util.concurrent.atomic.AtomicInteger               pending =
+			new java.util.concurrent.atomic.AtomicInteger(1);
+	private final java.util.concurrent.CompletableFuture<Void>            done    =
+			new java.util.concurrent.CompletableFuture<>();
+	private final java.util.concurrent.ConcurrentLinkedQueue<Throwable>   errors  =
+			new java.util.concurrent.ConcurrentLinkedQueue<>();
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param executor
+	 * 		the executor to run the tasks on
+	 * @param cache
+	 * 		a cache for whole locations or null
+	 */
+	ParallelClassScan(java.util.concurrent.Executor executor, ClassIndexCache cache) {
+		this(executor, cache, null, null);
+	}
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param executor
+	 * 		the executor to run the tasks on
+	 * @param cache
+	 * 		a cache for whole locations or null
+	 * @param statistics
+	 * 		the statistics to record in or null
+	 * @param filter
+	 * 		the headers to index or null for all
+	 */
+	ParallelClassScan(java.util.concurrent.Executor executor, ClassIndexCache cache, ScanStatistics statistics,
+	                  java.util.function.Predicate<ClassHeader> filter) {
+		this.executor = executor;
+		this.cache = cache;
+		this.statistics = statistics;
+		this.filter = filter;
+	}
+
+	/**
+	 * Scans the locations and waits until all tasks are done
+	 *
+	 * @param locations
+	 * 		jars and directories in classpath order
+	 *
+	 * @return the indexes of all found classes
+	 */
+	ScanResult scan(java.util.List<java.io.File> locations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < locations.size(); i++) {
+			java.io.File location = locations.get(i);
+			int          rank     = i;
+			if (cache != null || !location.isDirectory() || ClassIndexFile.exists(location.toPath())) {
+				submit(() -> merge(rank, ClassScanner.getClassHeaders(location, cache, statistics)));
+			} else {
+				ScanStatistics.LocationStatistics locationStatistics =
+						statistics != null ? statistics.location(location) : null;
+				submit(() -> scanDirectory(rank, location.toPath(), location.toPath(), locationStatistics));
+			}
+		}
+		finish();
+		try {
+			done.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (java.util.concurrent.ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		if (statistics != null) {
+			statistics.addScanTime(System.nanoTime() - start);
+		}
+		Throwable error = errors.peek();
+		if (error != null) {
+			throw new RuntimeException(error);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the class-files of one directory and submits a task for every subdirectory
+	 *
+	 * @param rank
+	 * 		the position of the location in the classpath
+	 * @param root
+	 * 		the root directory of the location
+	 * @param directory
+	 * 		the directory to scan
+	 * @param locationStatistics
+	 * 		the statistics of the location or null
+	 */
+	private void scanDirectory(int rank, java.nio.file.Path root, java.nio.file.Path directory,
+	                           ScanStatistics.LocationStatistics locationStatistics) {
+		long                              start   = System.nanoTime();
+		java.util.Collection<ClassHeader> headers = new java.util.ArrayList<>();
+		try {
+			//depth 1: subdirectories are passed to visitFile instead of being entered
+			java.nio.file.Files.walkFileTree(directory, java.util.EnumSet.noneOf(java.nio.file.FileVisitOption.class),
+			                                 1, new java.nio.file.SimpleFileVisitor<java.nio.file.Path>() {
+						@Override
+						public java.nio.file.FileVisitResult visitFile(java.nio.file.Path file,
+						                                               java.nio.file.attribute.BasicFileAttributes attrs) {
+							if (attrs.isDirectory()) {
+								submit(() -> scanDirectory(rank, root, file, locationStatistics));
+							} else if (attrs.isRegularFile() &&
+							           ClassScanner.isClassFileName(ClassScanner.getClassFilePath(root, file))) {
+								ClassScanner.addClassHeader(headers, file, locationStatistics);
+							}
+							return java.nio.file.FileVisitResult.CONTINUE;
+						}
+
+						@Override
+						public java.nio.file.FileVisitResult visitFileFailed(java.nio.file.Path file,
+						                                                     java.io.IOException e) {
+							return java.nio.file.FileVisitResult.CONTINUE;
+						}
+					});
+		} catch (java.io.IOException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINEST, () ->
+					"Could not read " + directory + ": " + e.getMessage());
+		}
+		merge(rank, headers);
+		if (locationStatistics != null) {
+			locationStatistics.addTime(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Adds headers to the indexes, replacing headers of the same name from locations later in the classpath
+	 *
+	 * @param rank
+	 * 		the position of the location in the classpath
+	 * @param headers
+	 * 		the headers found in the location
+	 */
+	private void merge(int rank, java.util.Collection<ClassHeader> headers) {
+		for (ClassHeader header : headers) {
+			if (filter != null && !filter.test(header)) {
+				continue;
+			}
+			//compute is atomic per name, so all index updates of one name are serialized
+			ranks.compute(header.getName(), (name, known) -> {
+				if (known != null && known <= rank) {
+					return known;
+				}
+				result.remove(name);
+				result.add(header);
+				return rank;
+			});
+		}
+	}
+
+	private void submit(Runnable task) {
+		pending.incrementAndGet();
+		try {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} catch (Throwable t) {
+					errors.add(t);
+				} finally {
+					finish();
+				}
+			});
+		} catch (RuntimeException e) {
+			finish();
+			throw e;
+		}
+	}
+
+	private void finish() {
+		if (pending.decrementAndGet() == 0) {
+			done.complete(null);
+		}
+	}
+}
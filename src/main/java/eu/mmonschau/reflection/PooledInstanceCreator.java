@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Keeps a bounded pool of reusable instances which are created by another {@link ClassInstanceCreator}. An instance
+ * is taken from the pool by {@link #acquire()} (or {@link #newInstance()}) and returned by {@link #release(Object)},
+ * which resets it. If the pool is empty a new instance is created, if it is full a released instance is left to the
+ * garbage collector.
+ * <p>
+ * The pool is an array of slots which are taken and filled by compare-and-set without locking. The slots are spread
+ * {@value #STRIDE} array elements apart, so neighbouring slots do not share a cache line. A thread first checks the
+ * size of the pool, then probes the slot derived from its id, so threads mostly use different slots, and at most
+ * {@value #PROBES} further random slots before it creates a new instance or discards a released one. An instance may
+ * therefore be created or discarded while the pool is nearly empty or full.
+ *
+ * @param <T>
+ * 		the class of the pooled instances
+ */
+public class PooledInstanceCreator<T> implements ClassInstanceCreator<T> {
+
+	/** the distance of two slots in the array, 64 bytes with compressed references */
+	private static final int STRIDE = 16;
+	/** the number of random slots probed after the slot of the thread */
+	private static final int PROBES = 3;
+
+	private final ClassInstanceCreator<? extends T>                   creator;
+	private final java.util.function.Consumer<? super T>              reset;
+	private final java.util.concurrent.atomic.AtomicReferenceArray<T> slots;
+	private final int                                                 capacity;
+
+	private final java.util.concurrent.atomic.LongAdder hits     = new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder misses   = new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder discards = new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder size     = new java.util.concurrent.atomic.LongAdder();
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param creator
+	 * 		creates new instances if the pool is empty
+	 * @param capacity
+	 * 		the maximum number of pooled instances
+	 * @param reset
+	 * 		resets a released instance before it is pooled, may be null
+	 */
+	public PooledInstanceCreator(ClassInstanceCreator<? extends T> creator, int capacity,
+	                             java.util.function.Consumer<? super T> reset) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.creator = java.util.Objects.requireNonNull(creator);
+		this.reset = reset;
+		if (capacity > Integer.MAX_VALUE / STRIDE) {
+			throw new IllegalArgumentException("capacity too large: " + capacity);
+		}
+		this.capacity = capacity;
+		this.slots = new java.util.concurrent.atomic.AtomicReferenceArray<>(capacity * STRIDE);
+	}
+
+	/**
+	 * Same as {@link #acquire()}, so the pool can be used wherever a {@link ClassInstanceCreator} is expected
+	 *
+	 * @return a pooled or new instance
+	 */
+	@Override
+	public T newInstance() {
+		return acquire();
+	}
+
+	/**
+	 * Takes an instance from the pool or creates a new one if none is found
+	 *
+	 * @return a pooled or new instance
+	 */
+	public T acquire() {
+		if (size.sum() > 0) {
+			int index = start();
+			for (int i = 0; i <= PROBES; i++) {
+				T instance = slots.get(index);
+				if (instance != null && slots.compareAndSet(index, instance, null)) {
+					size.decrement();
+					hits.increment();
+					return instance;
+				}
+				index = probe();
+			}
+		}
+		misses.increment();
+		return creator.newInstance();
+	}
+
+	/**
+	 * Resets an instance and returns it to the pool, it must not be used afterwards
+	 *
+	 * @param instance
+	 * 		an instance acquired from this pool
+	 *
+	 * @return false if the pool was full and the instance was discarded
+	 */
+	public boolean release(T instance) {
+		java.util.Objects.requireNonNull(instance);
+		if (reset != null) {
+			reset.accept(instance);
+		}
+		if (size.sum() < capacity) {
+			int index = start();
+			for (int i = 0; i <= PROBES; i++) {
+				if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+					size.increment();
+					return true;
+				}
+				index = probe();
+			}
+		}
+		discards.increment();
+		return false;
+	}
+
+	/**
+	 * @return the array index of the first slot probed by the current thread
+	 */
+	private int start() {
+		long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) ((id >>> 32) % capacity) * STRIDE;
+	}
+
+	/**
+	 * @return the array index of a random slot
+	 */
+	private int probe() {
+		return java.util.concurrent.ThreadLocalRandom.current().nextInt(capacity) * STRIDE;
+	}
+
+	/**
+	 * @return the number of acquires served from the pool
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of acquires which created a new instance
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of released instances which were discarded because the pool was full
+	 */
+	public long getDiscards() {
+		return discards.sum();
+	}
+
+	/**
+	 * @return the number of pooled instances, may be outdated when the pool is used concurrently
+	 */
+	public int getSize() {
+		return size.intValue();
+	}
+
+	/**
+	 * @return the maximum number of pooled instances
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public String toString() {
+		return "PooledInstanceCreator{size=" + getSize() + "/" + getCapacity() + ", hits=" + getHits() +
+		       ", misses=" + getMisses() + ", discards=" + getDiscards() + '}';
+	}
+}
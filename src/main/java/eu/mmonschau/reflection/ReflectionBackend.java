@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Calls the constructor reflectively on every call
+ *
+ * @see eu.mmonschau.reflection.InstantiationBackend#REFLECTION
+ */
+final class ReflectionBackend implements InstantiationBackend {
+
+	@Override
+	public String getName() {
+		return "reflection";
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	@Override
+	public <T> ClassInstanceCreator<T> newCreator(java.lang.reflect.Constructor<T> constructor, Object[] args) {
+		Object[] arguments = args.clone();
+		return () -> {
+			try {
+				return constructor.newInstance(arguments);
+			} catch (InstantiationException | IllegalAccessException |
+					java.lang.reflect.InvocationTargetException e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
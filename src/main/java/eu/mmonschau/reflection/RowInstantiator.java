@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Creates instances of one class from many rows of String arguments. The constructor of a row is resolved from the
+ * candidates cached for its shape, see {@link ConstructorPlan#resolve(Class, java.util.List)}. The candidates of the
+ * last shape are kept by the instantiator, so a row of the same shape as the one before needs no lookup of its shape.
+ *
+ * @param <T>
+ * 		the class to create
+ *
+ * @see eu.mmonschau.reflection.ClassInstatiator#createInstances(Class, java.util.stream.Stream)
+ */
+@SuppressWarnings("unchecked")
+final class RowInstantiator<T> {
+
+	/** rows per task of a parallel fill */
+	private static final int THRESHOLD = 1024;
+
+	private final Class<T> type;
+	/**
+	 * the candidates of the last shape, it is shared between threads without synchronisation as it is immutable and
+	 * a lost update only costs another lookup
+	 */
+	private       Shape    last;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param type
+	 * 		the class to create
+	 */
+	RowInstantiator(Class<T> type) {
+		this.type = type;
+	}
+
+	/**
+	 * creates an instance from a row
+	 *
+	 * @param values
+	 * 		the arguments for the constructor, null or empty for the default constructor or getInstance method
+	 *
+	 * @return a new instance
+	 *
+	 * @throws InstantiationException
+	 * 		if no constructor matches the row
+	 */
+	T newInstance(java.util.List<String> values) throws InstantiationException {
+		if (values == null || values.isEmpty()) {
+			return ClassInstatiator.createInstance(type);
+		}
+		long              key        = ConstructorPlan.shapeKey(values);
+		int               generation = StringConverters.getGeneration();
+		Shape             shape      = last;
+		ConstructorPlan[] candidates;
+		if (shape != null && shape.key == key && key != -1 && shape.generation == generation) {
+			candidates = shape.candidates;
+		} else {
+			candidates = ConstructorPlan.candidates(type, values, key);
+			last = new Shape(key, generation, candidates);
+		}
+		return (T) ConstructorPlan.newInstance(type, values, ConstructorPlan.resolve(candidates, values));
+	}
+
+	/**
+	 * fills an array with instances created from the rows of columns
+	 *
+	 * @param columns
+	 * 		one array of values per constructor argument, all of the same length
+	 * @param pool
+	 * 		the pool to partition the rows across or null to fill sequentially
+	 *
+	 * @return the instances, one per row
+	 *
+	 * @throws InstantiationException
+	 * 		if no constructor matches a row
+	 */
+	T[] fill(String[][] columns, java.util.concurrent.ForkJoinPool pool) throws InstantiationException {
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("At least one column is required");
+		}
+		int rows = columns[0].length;
+		for (String[] column : columns) {
+			if (column.length != rows) {
+				throw new IllegalArgumentException("Columns differ in length");
+			}
+		}
+		T[]  result = (T[]) java.lang.reflect.Array.newInstance(type, rows);
+		Fill fill   = new Fill(columns, result, 0, rows);
+		if (pool == null) {
+			fill.fill();
+			return result;
+		}
+		try {
+			pool.invoke(fill);
+		} catch (RuntimeException e) {
+			//a task failing on another thread is rethrown wrapped once more by the pool
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof InstantiationException) {
+					throw (InstantiationException) cause;
+				}
+			}
+			throw e;
+		}
+		return result;
+	}
+
+	/**
+	 * Fills a range of rows, splitting it across the pool if it is large
+	 */
+	private final class Fill extends java.util.concurrent.RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final String[][] columns;
+		private final T[]        result;
+		private final int        from;
+		private final int        to;
+
+		private Fill(String[][] columns, T[] result, int from, int to) {
+			this.columns = columns;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Fill(columns, result, from, middle), new Fill(columns, result, middle, to));
+				return;
+			}
+			try {
+				fill();
+			} catch (InstantiationException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private void fill() throws InstantiationException {
+			ColumnRow row = new ColumnRow(columns);
+			for (int i = from; i < to; i++) {
+				row.index = i;
+				try {
+					result[i] = newInstance(row);
+				} catch (InstantiationException e) {
+					InstantiationException rowException =
+							new InstantiationException("Row " + i + ": " + e.getMessage());
+					rowException.initCause(e);
+					throw rowException;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The ranked candidates of a shape of rows
+	 */
+	private static final class Shape {
+		private final long              key;
+		/** the generation of the converters the candidates were ranked with */
+		private final int               generation;
+		private final ConstructorPlan[] candidates;
+
+		private Shape(long key, int generation, ConstructorPlan[] candidates) {
+			this.key = key;
+			this.generation = generation;
+			this.candidates = candidates;
+		}
+	}
+
+	/**
+	 * A row of columns as list, the row index is moved instead of creating a list per row
+	 */
+	private static final class ColumnRow extends java.util.AbstractList<String> {
+		private final String[][] columns;
+		private       int        index;
+
+		private ColumnRow(String[][] columns) {
+			this.columns = columns;
+		}
+
+		@Override
+		public String get(int column) {
+			return columns[column][index];
+		}
+
+		@Override
+		public int size() {
+			return columns.length;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * The indexes built in one pass over the class-headers of a scan
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public class ScanResult {
+
+	private final ClassHierarchyIndex hierarchy;
+	private final AnnotationIndex     annotations;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param hierarchy
+	 * 		the hierarchy index
+	 * @param annotations
+	 * 		the annotation index
+	 */
+	ScanResult(ClassHierarchyIndex hierarchy, AnnotationIndex annotations) {
+		this.hierarchy = hierarchy;
+		this.annotations = annotations;
+	}
+
+	/**
+	 * Builds the hierarchy and the annotation index in one pass, if a name occurs more than once the first header is
+	 * used
+	 *
+	 * @param headers
+	 * 		the headers of all classes to index
+	 *
+	 * @return the result
+	 */
+	public static ScanResult of(java.util.stream.Stream<ClassHeader> headers) {
+		ScanResult result = new ScanResult(new ClassHierarchyIndex(), new AnnotationIndex());
+		headers.forEachOrdered(result::add);
+		return result;
+	}
+
+	/**
+	 * Adds a class to both indexes unless a class with the same name is already indexed
+	 *
+	 * @param header
+	 * 		the header of the class
+	 *
+	 * @return true if the class was added
+	 */
+	boolean add(ClassHeader header) {
+		if (!hierarchy.add(header)) {
+			return false;
+		}
+		annotations.add(header);
+		return true;
+	}
+
+	/**
+	 * Removes a class from both indexes
+	 *
+	 * @param name
+	 * 		the fully qualified name of the class
+	 *
+	 * @return the removed header or null if the class was not indexed
+	 */
+	ClassHeader remove(String name) {
+		ClassHeader header = hierarchy.remove(name);
+		if (header != null) {
+			annotations.remove(header);
+		}
+		return header;
+	}
+
+	/**
+	 * @return the hierarchy index
+	 */
+	public ClassHierarchyIndex getHierarchy() {
+		return hierarchy;
+	}
+
+	/**
+	 * @return the annotation index
+	 */
+	public AnnotationIndex getAnnotations() {
+		return annotations;
+	}
+}
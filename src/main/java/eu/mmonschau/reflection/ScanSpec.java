@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Describes which classes a {@link ClassScanner#scan(ScanSpec)} returns. Package and std-library filters are checked
+ * on the path of a class-file before it is read, modifiers and annotations on its header; no class is loaded.
+ * <p>
+ * The cache, the executor and the statistics are options of {@link ClassScanner#buildScanResult(ScanSpec)}, the lazy
+ * stream of {@link ClassScanner#scan(ScanSpec)} reads the class-files sequentially and ignores them.
+ * <p>
+ * All methods return this specification for chaining, e.g.
+ * {@code new ScanSpec().includePackages("com.example").annotatedWith("com.example.Plugin")}
+ */
+public class ScanSpec {
+
+	private final java.util.List<String>       includedPackages = new java.util.ArrayList<>();
+	private final java.util.List<String>       excludedPackages = new java.util.ArrayList<>();
+	private final java.util.Set<String>        annotationNames  = new java.util.LinkedHashSet<>();
+	private       java.util.List<java.io.File>         locations;
+	private       ClassIndexCache                      cache;
+	private       java.util.concurrent.ExecutorService executor;
+	private       ScanStatistics                       statistics;
+	private       boolean                              excludeStdLibrary;
+	private       int                          requiredModifiers;
+	private       int                          excludedModifiers;
+
+	/**
+	 * Only classes in the given packages or their subpackages are scanned, default are all packages
+	 *
+	 * @param packageNames
+	 * 		the names of the packages
+	 *
+	 * @return this
+	 */
+	public ScanSpec includePackages(String... packageNames) {
+		for (String p : packageNames) {
+			includedPackages.add(normalizePackage(p));
+		}
+		return this;
+	}
+
+	/**
+	 * Classes in the given packages or their subpackages are not scanned
+	 *
+	 * @param packageNames
+	 * 		the names of the packages
+	 *
+	 * @return this
+	 */
+	public ScanSpec excludePackages(String... packageNames) {
+		for (String p : packageNames) {
+			excludedPackages.add(normalizePackage(p));
+		}
+		return this;
+	}
+
+	/**
+	 * Classes in packages of the jdk (java, javax, javafx, jdk, oracle, sun, com.sun) are not scanned, even if they
+	 * are in the classpath
+	 *
+	 * @return this
+	 */
+	public ScanSpec excludeStdLibrary() {
+		excludeStdLibrary = true;
+		return this;
+	}
+
+	/**
+	 * Only classes annotated with all of the given (runtime visible) annotations are returned
+	 *
+	 * @param annotationNames
+	 * 		the fully qualified names of the annotation types
+	 *
+	 * @return this
+	 */
+	public ScanSpec annotatedWith(String... annotationNames) {
+		this.annotationNames.addAll(java.util.Arrays.asList(annotationNames));
+		return this;
+	}
+
+	/**
+	 * Only classes having all of the given access flags are returned
+	 *
+	 * @param accessFlags
+	 * 		access flags of the class-file, e.g. {@link ClassHeader#ACC_PUBLIC}
+	 *
+	 * @return this
+	 */
+	public ScanSpec withModifiers(int accessFlags) {
+		requiredModifiers |= accessFlags;
+		return this;
+	}
+
+	/**
+	 * Only classes having none of the given access flags are returned
+	 *
+	 * @param accessFlags
+	 * 		access flags of the class-file, e.g. {@code ClassHeader.ACC_INTERFACE | ClassHeader.ACC_ABSTRACT}
+	 *
+	 * @return this
+	 */
+	public ScanSpec withoutModifiers(int accessFlags) {
+		excludedModifiers |= accessFlags;
+		return this;
+	}
+
+	/**
+	 * Scans the given jars and directories instead of the classpath
+	 *
+	 * @param locations
+	 * 		jar-files and directories
+	 *
+	 * @return this
+	 */
+	public ScanSpec locations(java.util.Collection<java.io.File> locations) {
+		this.locations = new java.util.ArrayList<>(locations);
+		return this;
+	}
+
+	/**
+	 * Reads unchanged jars and directories from a cache
+	 *
+	 * @param cache
+	 * 		the cache to use or null, it is updated but not saved
+	 *
+	 * @return this
+	 */
+	public ScanSpec cache(ClassIndexCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * Scans jars and directory subtrees in parallel
+	 *
+	 * @param executor
+	 * 		the executor to scan on, e.g. {@link ClassScanner#newScanExecutor()}, or null to scan sequentially; it is
+	 * 		not shut down
+	 *
+	 * @return this
+	 */
+	public ScanSpec executor(java.util.concurrent.ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Records per jar and directory how long the scan took and how much was read
+	 *
+	 * @param statistics
+	 * 		the statistics to record in or null
+	 *
+	 * @return this
+	 */
+	public ScanSpec statistics(ScanStatistics statistics) {
+		this.statistics = statistics;
+		return this;
+	}
+
+	/**
+	 * @return the jars and directories to scan or null for the classpath
+	 */
+	java.util.List<java.io.File> getLocations() {
+		return locations;
+	}
+
+	/**
+	 * @return the cache or null
+	 */
+	ClassIndexCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return the executor or null to scan sequentially
+	 */
+	java.util.concurrent.ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return the statistics or null
+	 */
+	ScanStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * checks the fully qualified name of a class against the package filters
+	 *
+	 * @param className
+	 * 		a fully qualified name
+	 *
+	 * @return true if the class is to be read
+	 */
+	boolean acceptsName(String className) {
+		if (excludeStdLibrary && !ClassScanner.filterStdLibrary(className)) {
+			return false;
+		}
+		for (String p : excludedPackages) {
+			if (className.startsWith(p)) {
+				return false;
+			}
+		}
+		if (includedPackages.isEmpty()) {
+			return true;
+		}
+		for (String p : includedPackages) {
+			if (className.startsWith(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * checks a class-header against all filters
+	 *
+	 * @param header
+	 * 		the header of a class
+	 *
+	 * @return true if the class is to be returned
+	 */
+	boolean accepts(ClassHeader header) {
+		return (header.getAccessFlags() & requiredModifiers) == requiredModifiers &&
+		       (header.getAccessFlags() & excludedModifiers) == 0 &&
+		       header.getAnnotationNames().containsAll(annotationNames) &&
+		       acceptsName(header.getName());
+	}
+
+	/**
+	 * @return a copy of this specification, so later changes do not affect a running scan
+	 */
+	ScanSpec copy() {
+		ScanSpec copy = new ScanSpec();
+		copy.includedPackages.addAll(includedPackages);
+		copy.excludedPackages.addAll(excludedPackages);
+		copy.annotationNames.addAll(annotationNames);
+		copy.locations = locations;
+		copy.cache = cache;
+		copy.executor = executor;
+		copy.statistics = statistics;
+		copy.excludeStdLibrary = excludeStdLibrary;
+		copy.requiredModifiers = requiredModifiers;
+		copy.excludedModifiers = excludedModifiers;
+		return copy;
+	}
+
+	private static String normalizePackage(String packageName) {
+		return packageName.isEmpty() || packageName.endsWith(".") ? packageName : packageName + ".";
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Collects timings and counters of scans, per jar or directory and in total, to find the locations which slow down a
+ * scan. An instance may be passed to several scans and is filled concurrently by parallel scans; the time of a
+ * location scanned in parallel tasks is the sum of the times of its tasks.
+ *
+ * @see eu.mmonschau.reflection.ClassScanner#buildScanResult(ScanSpec)
+ */
+public class ScanStatistics {
+
+	private final java.util.concurrent.ConcurrentHashMap<java.io.File, LocationStatistics> locations =
+			new java.util.concurrent.ConcurrentHashMap<>();
+	private final java.util.concurrent.atomic.LongAdder                                    scanNanos =
+			new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder                                    loaded    =
+			new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder                                    notLoaded =
+			new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.AtomicInteger                                order     =
+			new java.util.concurrent.atomic.AtomicInteger();
+
+	/**
+	 * gets the statistics of a location, creating them on first use
+	 *
+	 * @param location
+	 * 		a jar or directory
+	 *
+	 * @return the statistics
+	 */
+	LocationStatistics location(java.io.File location) {
+		return locations.computeIfAbsent(location, key -> new LocationStatistics(key, order.getAndIncrement()));
+	}
+
+	/**
+	 * adds the wall-clock time of a whole scan
+	 *
+	 * @param nanos
+	 * 		the time in nanoseconds
+	 */
+	void addScanTime(long nanos) {
+		scanNanos.add(nanos);
+	}
+
+	/**
+	 * counts a class which was loaded or could not be loaded
+	 *
+	 * @param success
+	 * 		false if loading failed
+	 */
+	void classLoaded(boolean success) {
+		(success ? loaded : notLoaded).increment();
+	}
+
+	/**
+	 * @return the statistics of all scanned locations in the order they were first scanned
+	 */
+	public java.util.List<LocationStatistics> getLocations() {
+		java.util.List<LocationStatistics> result = new java.util.ArrayList<>(locations.values());
+		result.sort(java.util.Comparator.comparingInt(statistics -> statistics.order));
+		return result;
+	}
+
+	/**
+	 * gets the locations which took the longest time
+	 *
+	 * @param n
+	 * 		the maximum number of locations
+	 *
+	 * @return the slowest locations, slowest first
+	 */
+	public java.util.List<LocationStatistics> getSlowest(int n) {
+		return locations.values().stream()
+				.sorted(java.util.Comparator.comparingLong(LocationStatistics::getNanos).reversed())
+				.limit(n)
+				.collect(java.util.stream.Collectors.toList());
+	}
+
+	/**
+	 * @return the wall-clock time of all scans in nanoseconds
+	 */
+	public long getScanNanos() {
+		return scanNanos.sum();
+	}
+
+	/**
+	 * @return the number of loaded classes
+	 */
+	public long getClassesLoaded() {
+		return loaded.sum();
+	}
+
+	/**
+	 * @return the number of classes which could not be loaded
+	 */
+	public long getClassesNotLoaded() {
+		return notLoaded.sum();
+	}
+
+	/**
+	 * @return the number of bytes read in all locations
+	 */
+	public long getBytesRead() {
+		return locations.values().stream().mapToLong(LocationStatistics::getBytesRead).sum();
+	}
+
+	/**
+	 * @return the number of class-files visited in all locations
+	 */
+	public long getEntriesVisited() {
+		return locations.values().stream().mapToLong(LocationStatistics::getEntriesVisited).sum();
+	}
+
+	/**
+	 * @return the number of class-headers read in all locations
+	 */
+	public long getClassesParsed() {
+		return locations.values().stream().mapToLong(LocationStatistics::getClassesParsed).sum();
+	}
+
+	/**
+	 * @return the number of class-files which could not be read in all locations
+	 */
+	public long getClassesFailed() {
+		return locations.values().stream().mapToLong(LocationStatistics::getClassesFailed).sum();
+	}
+
+	/**
+	 * @return the number of locations read from a {@link ClassIndexCache}
+	 */
+	public long getCacheHits() {
+		return locations.values().stream().mapToLong(LocationStatistics::getCacheHits).sum();
+	}
+
+	/**
+	 * Creates a JSON summary of the totals and the slowest locations
+	 *
+	 * @param n
+	 * 		the maximum number of locations to list
+	 *
+	 * @return a JSON object
+	 */
+	public String toJson(int n) {
+		StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"scanMillis\": ").append(millis(getScanNanos())).append(",\n");
+		json.append("  \"locations\": ").append(locations.size()).append(",\n");
+		json.append("  \"bytesRead\": ").append(getBytesRead()).append(",\n");
+		json.append("  \"entriesVisited\": ").append(getEntriesVisited()).append(",\n");
+		json.append("  \"classesParsed\": ").append(getClassesParsed()).append(",\n");
+		json.append("  \"classesFailed\": ").append(getClassesFailed()).append(",\n");
+		json.append("  \"classesLoaded\": ").append(getClassesLoaded()).append(",\n");
+		json.append("  \"classesNotLoaded\": ").append(getClassesNotLoaded()).append(",\n");
+		json.append("  \"cacheHits\": ").append(getCacheHits()).append(",\n");
+		json.append("  \"slowest\": [");
+		java.util.List<LocationStatistics> slowest = getSlowest(n);
+		for (int i = 0; i < slowest.size(); i++) {
+			json.append(i == 0 ? "\n    " : ",\n    ").append(slowest.get(i).toJson());
+		}
+		json.append(slowest.isEmpty() ? "]\n" : "\n  ]\n");
+		return json.append('}').toString();
+	}
+
+	@Override
+	public String toString() {
+		return "ScanStatistics{" + locations.size() + " locations in " + millis(getScanNanos()) + " ms, " +
+		       getClassesParsed() + " classes parsed, " + getClassesFailed() + " failed, " + getCacheHits() +
+		       " cache hits}";
+	}
+
+	private static String millis(long nanos) {
+		return String.format(java.util.Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	private static String quote(String s) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * The timings and counters of one jar or directory
+	 */
+	public static final class LocationStatistics {
+		private final java.io.File                          location;
+		private final int                                   order;
+		private final java.util.concurrent.atomic.LongAdder nanos     = new java.util.concurrent.atomic.LongAdder();
+		private final java.util.concurrent.atomic.LongAdder bytes     = new java.util.concurrent.atomic.LongAdder();
+		private final java.util.concurrent.atomic.LongAdder entries   = new java.util.concurrent.atomic.LongAdder();
+		private final java.util.concurrent.atomic.LongAdder parsed    = new java.util.concurrent.atomic.LongAdder();
+		private final java.util.concurrent.atomic.LongAdder failed    = new java.util.concurrent.atomic.LongAdder();
+		private final java.util.concurrent.atomic.LongAdder cacheHits = new java.util.concurrent.atomic.LongAdder();
+		private volatile boolean                            indexed;
+
+		private LocationStatistics(java.io.File location, int order) {
+			this.location = location;
+			this.order = order;
+		}
+
+		void addTime(long nanos) {
+			this.nanos.add(nanos);
+		}
+
+		/**
+		 * counts a class-file
+		 *
+		 * @param length
+		 * 		the number of bytes read
+		 * @param success
+		 * 		false if its header could not be read
+		 */
+		void classFile(long length, boolean success) {
+			entries.increment();
+			bytes.add(length);
+			(success ? parsed : failed).increment();
+		}
+
+		/**
+		 * counts the headers of a precomputed index
+		 *
+		 * @param length
+		 * 		the number of bytes of the index
+		 * @param classes
+		 * 		the number of headers
+		 */
+		void index(long length, int classes) {
+			indexed = true;
+			bytes.add(length);
+			parsed.add(classes);
+		}
+
+		void cacheHit() {
+			cacheHits.increment();
+		}
+
+		/**
+		 * @return the jar or directory
+		 */
+		public java.io.File getLocation() {
+			return location;
+		}
+
+		/**
+		 * @return the time spent reading the location in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos.sum();
+		}
+
+		/**
+		 * @return the number of bytes of class-files and indexes read
+		 */
+		public long getBytesRead() {
+			return bytes.sum();
+		}
+
+		/**
+		 * @return the number of class-files visited
+		 */
+		public long getEntriesVisited() {
+			return entries.sum();
+		}
+
+		/**
+		 * @return the number of class-headers read from class-files or an index
+		 */
+		public long getClassesParsed() {
+			return parsed.sum();
+		}
+
+		/**
+		 * @return the number of class-files which could not be read
+		 */
+		public long getClassesFailed() {
+			return failed.sum();
+		}
+
+		/**
+		 * @return the number of times the location was read from a {@link ClassIndexCache}
+		 */
+		public long getCacheHits() {
+			return cacheHits.sum();
+		}
+
+		/**
+		 * @return true if the headers were read from a precomputed index
+		 *
+		 * @see ClassIndexProcessor
+		 */
+		public boolean isIndexed() {
+			return indexed;
+		}
+
+		/**
+		 * @return the statistics as JSON object
+		 */
+		public String toJson() {
+			return "{\"location\": " + quote(location.getPath()) + ", \"millis\": " + millis(getNanos()) +
+			       ", \"bytesRead\": " + getBytesRead() + ", \"entriesVisited\": " + getEntriesVisited() +
+			       ", \"classesParsed\": " + getClassesParsed() + ", \"classesFailed\": " + getClassesFailed() +
+			       ", \"cacheHits\": " + getCacheHits() + ", \"indexed\": " + isIndexed() + "}";
+		}
+
+		@Override
+		public String toString() {
+			return location + ": " + millis(getNanos()) + " ms, " + getClassesParsed() + " classes";
+		}
+	}
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * The hierarchy and annotation index of a class path in one immutable file, which is memory-mapped read-only and
+ * queried in place without deserialization. Many JVMs on one host using the same class path map the same file and
+ * share it in the page cache, only the first one scans.
+ * <p>
+ * The file stores the fingerprints of the scanned locations (as {@link ClassIndexCache}); a file whose locations
+ * changed is stale and rebuilt by {@link #openOrCreate(java.nio.file.Path, java.util.List, ClassIndexCache)}. It is
+ * replaced atomically, so processes which mapped the former version keep using it.
+ *
+ * @see eu.mmonschau.reflection.CompactClassHierarchy
+ */
+public final class SharedClassIndex {
+
+	private static final int    MAGIC         = 0x524C5349;//RLSI
+	private static final int    VERSION       = 1;
+	private static final int    HEADER_SIZE   = 48;
+	private static final int    LOCATION_SIZE = 32;
+	/** ints per annotated member */
+	private static final int    MEMBER_SIZE   = 7;
+	private static final int[]  NO_IDS        = new int[0];
+	/** serializes the file lock within this process, which is held per process */
+	private static final Object CREATE_LOCK   = new Object();
+
+	private final java.nio.file.Path    file;
+	private final java.nio.ByteBuffer   buffer;
+	private final CompactClassHierarchy hierarchy;
+	private final int                   annotationCount;
+	private final int                   locationCount;
+	private final int                   annotationsStart;
+	private final int                   classOffsetsStart;
+	private final int                   classRefsStart;
+	private final int                   memberOffsetsStart;
+	private final int                   memberRefsStart;
+	private final int                   membersStart;
+	private final int                   memberAnnotationsStart;
+	private final int                   poolStart;
+
+	/**
+	 * A basic constructor
+	 *
+	 * @param file
+	 * 		the mapped file
+	 * @param buffer
+	 * 		the content of the file
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the buffer does not contain an index
+	 */
+	private SharedClassIndex(java.nio.file.Path file, java.nio.ByteBuffer buffer) {
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Not a shared class index");
+		}
+		this.file = file;
+		this.buffer = buffer;
+		int hierarchyStart  = buffer.getInt(8);
+		int hierarchyLength = buffer.getInt(12);
+		this.annotationCount = buffer.getInt(16);
+		int memberCount     = buffer.getInt(20);
+		int classRefCount   = buffer.getInt(24);
+		int memberRefCount  = buffer.getInt(28);
+		int memberAnnCount  = buffer.getInt(32);
+		int poolLength      = buffer.getInt(36);
+		this.locationCount = buffer.getInt(40);
+		this.annotationsStart = HEADER_SIZE + LOCATION_SIZE * locationCount;
+		this.classOffsetsStart = annotationsStart + 4 * annotationCount;
+		this.classRefsStart = classOffsetsStart + 4 * (annotationCount + 1);
+		this.memberOffsetsStart = classRefsStart + 4 * classRefCount;
+		this.memberRefsStart = memberOffsetsStart + 4 * (annotationCount + 1);
+		this.membersStart = memberRefsStart + 4 * memberRefCount;
+		this.memberAnnotationsStart = membersStart + 4 * MEMBER_SIZE * memberCount;
+		this.poolStart = memberAnnotationsStart + 4 * memberAnnCount;
+		if (poolStart + poolLength > hierarchyStart || buffer.capacity() < hierarchyStart + hierarchyLength) {
+			throw new IllegalArgumentException("Truncated shared class index");
+		}
+		java.nio.ByteBuffer embedded = buffer.duplicate();
+		embedded.position(hierarchyStart);
+		embedded.limit(hierarchyStart + hierarchyLength);
+		this.hierarchy = CompactClassHierarchy.wrap(embedded.slice());
+	}
+
+	/**
+	 * Opens the index of all classes in Classpath and not in $JAVAHOME, it is created if it is missing or stale
+	 *
+	 * @param file
+	 * 		the index file
+	 *
+	 * @return the index
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be created
+	 */
+	public static SharedClassIndex openOrCreate(java.nio.file.Path file) throws java.io.IOException {
+		return openOrCreate(file, ClassScanner.getDistinctClassLocations(), null);
+	}
+
+	/**
+	 * Opens an index of the given locations, it is created if it is missing, stale or of other locations. If several
+	 * processes find the file stale at once, only one of them scans while the others wait for its file.
+	 *
+	 * @param file
+	 * 		the index file
+	 * @param locations
+	 * 		the jars and directories in class path order
+	 * @param cache
+	 * 		the cache to scan with or null
+	 *
+	 * @return the index
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be created
+	 */
+	public static SharedClassIndex openOrCreate(java.nio.file.Path file, java.util.List<java.io.File> locations,
+	                                            ClassIndexCache cache) throws java.io.IOException {
+		SharedClassIndex index = openIfCurrent(file, locations);
+		if (index != null) {
+			return index;
+		}
+		java.nio.file.Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+		java.nio.file.Files.createDirectories(lockFile.toAbsolutePath().getParent());
+		synchronized (CREATE_LOCK) {
+			try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel
+					.open(lockFile, java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE)) {
+				java.nio.channels.FileLock lock = channel.lock();
+				try {
+					//another process may have created it while this one waited
+					index = openIfCurrent(file, locations);
+					return index != null ? index : create(file, locations, cache);
+				} finally {
+					lock.release();
+				}
+			}
+		}
+	}
+
+	private static SharedClassIndex openIfCurrent(java.nio.file.Path file, java.util.List<java.io.File> locations) {
+		if (!java.nio.file.Files.isRegularFile(file)) {
+			return null;
+		}
+		try {
+			SharedClassIndex index = open(file);
+			if (index.getLocations().equals(absolute(locations)) && index.isCurrent()) {
+				return index;
+			}
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Shared class index " + file + " is stale");
+		} catch (java.io.IOException e) {
+			eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+					"Ignoring shared class index " + file + ": " + e);
+		}
+		return null;
+	}
+
+	/**
+	 * Maps an index file without checking whether it is current
+	 *
+	 * @param file
+	 * 		the index file
+	 *
+	 * @return the index
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be read or is no index
+	 */
+	public static SharedClassIndex open(java.nio.file.Path file) throws java.io.IOException {
+		try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel
+				.open(file, java.nio.file.StandardOpenOption.READ)) {
+			return new SharedClassIndex(file, channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0,
+			                                              channel.size()));
+		} catch (IllegalArgumentException e) {
+			throw new java.io.IOException(file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Scans the given locations, writes the index file and maps it. If a name occurs in several locations, the first
+	 * one is indexed.
+	 *
+	 * @param file
+	 * 		the index file, replaced atomically
+	 * @param locations
+	 * 		the jars and directories in class path order
+	 * @param cache
+	 * 		the cache to scan with or null, it is updated but not saved
+	 *
+	 * @return the index
+	 *
+	 * @throws java.io.IOException
+	 * 		if the file cannot be written
+	 */
+	public static SharedClassIndex create(java.nio.file.Path file, java.util.List<java.io.File> locations,
+	                                      ClassIndexCache cache) throws java.io.IOException {
+		java.util.List<java.io.File> absolute = absolute(locations);
+		//fingerprinted before scanning, so a change during the scan makes the file stale
+		java.util.List<ClassIndexCache.Fingerprint> fingerprints = new java.util.ArrayList<>();
+		for (java.io.File location : absolute) {
+			fingerprints.add(ClassIndexCache.Fingerprint.of(location));
+		}
+		ScanResult result = ClassScanner.buildScanResult(new ScanSpec().locations(absolute).cache(cache));
+		write(file, result.getHierarchy(), absolute, fingerprints);
+		return open(file);
+	}
+
+	private static void write(java.nio.file.Path file, ClassHierarchyIndex index, java.util.List<java.io.File> locations,
+	                          java.util.List<ClassIndexCache.Fingerprint> fingerprints) throws java.io.IOException {
+		CompactClassHierarchy hierarchy = CompactClassHierarchy.of(index);
+		StringPool            pool      = new StringPool();
+		int[]                 paths     = new int[locations.size()];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = pool.add(locations.get(i).getPath());
+		}
+
+		//annotations ordered by their UTF-8 bytes, as the names of the hierarchy
+		java.util.Map<String, java.util.List<Integer>> classes = new java.util.TreeMap<>(SharedClassIndex::compare);
+		java.util.Map<String, java.util.List<Integer>> members = new java.util.TreeMap<>(SharedClassIndex::compare);
+		java.util.List<MemberHeader>                   all     = new java.util.ArrayList<>();
+		for (ClassHeader header : index.getHeaders()) {
+			for (String annotation : header.getAnnotationNames()) {
+				classes.computeIfAbsent(annotation, k -> new java.util.ArrayList<>())
+						.add(hierarchy.getId(header.getName()));
+			}
+			for (MemberHeader member : header.getAnnotatedMembers()) {
+				for (String annotation : member.getAnnotationNames()) {
+					members.computeIfAbsent(annotation, k -> new java.util.ArrayList<>()).add(all.size());
+				}
+				all.add(member);
+			}
+		}
+		java.util.Set<String> annotationSet = new java.util.TreeSet<>(SharedClassIndex::compare);
+		annotationSet.addAll(classes.keySet());
+		annotationSet.addAll(members.keySet());
+		java.util.List<String>         annotations = new java.util.ArrayList<>(annotationSet);
+		java.util.Map<String, Integer> ids         = new java.util.HashMap<>();
+		for (String annotation : annotations) {
+			ids.put(annotation, ids.size());
+		}
+
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream      out   = new java.io.DataOutputStream(bytes);
+		for (String annotation : annotations) {
+			out.writeInt(pool.add(annotation));
+		}
+		int classRefs  = writeAdjacency(out, annotations, classes);
+		int memberRefs = writeAdjacency(out, annotations, members);
+		int memberAnns = 0;
+		for (MemberHeader member : all) {
+			out.writeInt(hierarchy.getId(member.getDeclaringClassName()));
+			out.writeInt(member.getKind().ordinal());
+			out.writeInt(member.getAccessFlags());
+			out.writeInt(pool.add(member.getName()));
+			out.writeInt(pool.add(member.getDescriptor()));
+			out.writeInt(memberAnns);
+			out.writeInt(member.getAnnotationNames().size());
+			memberAnns += member.getAnnotationNames().size();
+		}
+		for (MemberHeader member : all) {
+			for (String annotation : member.getAnnotationNames()) {
+				out.writeInt(ids.get(annotation));
+			}
+		}
+		out.write(pool.toByteArray());
+		out.flush();
+
+		int sectionsStart   = HEADER_SIZE + LOCATION_SIZE * locations.size();
+		int hierarchyStart  = (sectionsStart + bytes.size() + 7) & ~7;
+		int hierarchyLength = hierarchy.getByteSize();
+		java.nio.ByteBuffer content = java.nio.ByteBuffer.allocate(hierarchyStart + hierarchyLength);
+		content.putInt(MAGIC).putInt(VERSION).putInt(hierarchyStart).putInt(hierarchyLength)
+				.putInt(annotations.size()).putInt(all.size()).putInt(classRefs).putInt(memberRefs)
+				.putInt(memberAnns).putInt(pool.size()).putInt(locations.size()).putInt(0);
+		for (int i = 0; i < paths.length; i++) {
+			ClassIndexCache.Fingerprint fingerprint = fingerprints.get(i);
+			content.putInt(paths[i]).putInt(0).putLong(fingerprint.modified).putLong(fingerprint.size)
+					.putLong(fingerprint.hash);
+		}
+		content.put(bytes.toByteArray());
+		content.position(hierarchyStart);
+		content.put(hierarchy.getBuffer());
+		content.flip();
+
+		java.nio.file.Path dir = file.toAbsolutePath().getParent();
+		java.nio.file.Files.createDirectories(dir);
+		java.nio.file.Path tmp = java.nio.file.Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel
+					.open(tmp, java.nio.file.StandardOpenOption.WRITE)) {
+				while (content.hasRemaining()) {
+					channel.write(content);
+				}
+			}
+			ClassIndexCache.makeReadable(tmp);
+			ClassIndexCache.moveAtomically(tmp, file);
+		} finally {
+			java.nio.file.Files.deleteIfExists(tmp);
+		}
+		eu.mmonschau.reflection.util.JTextLog.getLogger().log(java.util.logging.Level.FINE, () ->
+				"Wrote shared class index " + file + " of " + index.size() + " classes, " + content.limit() + " bytes");
+	}
+
+	/**
+	 * writes the offsets of each annotation into one array of references followed by the array
+	 *
+	 * @return the number of references
+	 */
+	private static int writeAdjacency(java.io.DataOutputStream out, java.util.List<String> annotations,
+	                                  java.util.Map<String, java.util.List<Integer>> references)
+			throws java.io.IOException {
+		int count = 0;
+		out.writeInt(0);
+		for (String annotation : annotations) {
+			count += references.getOrDefault(annotation, java.util.Collections.emptyList()).size();
+			out.writeInt(count);
+		}
+		for (String annotation : annotations) {
+			for (int reference : references.getOrDefault(annotation, java.util.Collections.emptyList())) {
+				out.writeInt(reference);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the mapped file
+	 */
+	public java.nio.file.Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of bytes of the index
+	 */
+	public int getByteSize() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * @return the class hierarchy, read from the mapped file
+	 */
+	public CompactClassHierarchy getHierarchy() {
+		return hierarchy;
+	}
+
+	/**
+	 * @return the scanned jars and directories in class path order
+	 */
+	public java.util.List<java.io.File> getLocations() {
+		java.util.List<java.io.File> result = new java.util.ArrayList<>(locationCount);
+		for (int i = 0; i < locationCount; i++) {
+			result.add(new java.io.File(readString(buffer.getInt(HEADER_SIZE + LOCATION_SIZE * i))));
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the scanned locations are unchanged, by comparing their modification times, sizes and hashes
+	 *
+	 * @return false if the index is stale
+	 */
+	public boolean isCurrent() {
+		for (int i = 0; i < locationCount; i++) {
+			int position = HEADER_SIZE + LOCATION_SIZE * i;
+			ClassIndexCache.Fingerprint stored = new ClassIndexCache.Fingerprint(
+					buffer.getLong(position + 8), buffer.getLong(position + 16), buffer.getLong(position + 24));
+			if (!stored.equals(ClassIndexCache.Fingerprint.of(new java.io.File(readString(buffer.getInt(position)))))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * gets all classes annotated with the given annotation, as {@link AnnotationIndex#classesAnnotatedWith(String)}
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the fully qualified names of the annotated classes
+	 */
+	public java.util.Set<String> classesAnnotatedWith(String annotationName) {
+		int[]                 ids    = references(classOffsetsStart, classRefsStart, annotationName);
+		java.util.Set<String> result = new java.util.HashSet<>(ids.length * 2);
+		for (int id : ids) {
+			result.add(hierarchy.getName(id));
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * gets all methods (not constructors) annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the annotated methods
+	 */
+	public java.util.Set<MemberHeader> methodsAnnotatedWith(String annotationName) {
+		return membersAnnotatedWith(annotationName, MemberHeader.Kind.METHOD);
+	}
+
+	/**
+	 * gets all constructors annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the annotated constructors
+	 */
+	public java.util.Set<MemberHeader> constructorsAnnotatedWith(String annotationName) {
+		return membersAnnotatedWith(annotationName, MemberHeader.Kind.CONSTRUCTOR);
+	}
+
+	/**
+	 * gets all fields annotated with the given annotation
+	 *
+	 * @param annotationName
+	 * 		the fully qualified name of the annotation type
+	 *
+	 * @return the annotated fields
+	 */
+	public java.util.Set<MemberHeader> fieldsAnnotatedWith(String annotationName) {
+		return membersAnnotatedWith(annotationName, MemberHeader.Kind.FIELD);
+	}
+
+	private java.util.Set<MemberHeader> membersAnnotatedWith(String annotationName, MemberHeader.Kind kind) {
+		java.util.Set<MemberHeader> result = new java.util.HashSet<>();
+		for (int member : references(memberOffsetsStart, memberRefsStart, annotationName)) {
+			int position = membersStart + 4 * MEMBER_SIZE * member;
+			if (buffer.getInt(position + 4) != kind.ordinal()) {
+				continue;
+			}
+			int                    start           = buffer.getInt(position + 20);
+			java.util.List<String> annotationNames = new java.util.ArrayList<>(buffer.getInt(position + 24));
+			for (int i = start; i < start + buffer.getInt(position + 24); i++) {
+				int annotation = buffer.getInt(memberAnnotationsStart + 4 * i);
+				annotationNames.add(readString(buffer.getInt(annotationsStart + 4 * annotation)));
+			}
+			result.add(new MemberHeader(hierarchy.getName(buffer.getInt(position)), kind,
+			                            readString(buffer.getInt(position + 12)),
+			                            readString(buffer.getInt(position + 16)), buffer.getInt(position + 8),
+			                            annotationNames));
+		}
+		return java.util.Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * @return the references of an annotation, found by binary search over the annotation names in the file
+	 */
+	private int[] references(int offsetsStart, int referencesStart, String annotationName) {
+		byte[] key  = annotationName.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+		int    low  = 0;
+		int    high = annotationCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int order  = compareString(buffer.getInt(annotationsStart + 4 * middle), key);
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				int   start  = buffer.getInt(offsetsStart + 4 * middle);
+				int[] result = new int[buffer.getInt(offsetsStart + 4 * (middle + 1)) - start];
+				for (int i = 0; i < result.length; i++) {
+					result[i] = buffer.getInt(referencesStart + 4 * (start + i));
+				}
+				return result;
+			}
+		}
+		return NO_IDS;
+	}
+
+	private int compareString(int reference, byte[] key) {
+		int position = poolStart + reference;
+		int length   = buffer.getInt(position);
+		for (int i = 0; i < length && i < key.length; i++) {
+			int order = (buffer.get(position + 4 + i) & 0xFF) - (key[i] & 0xFF);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return length - key.length;
+	}
+
+	private String readString(int reference) {
+		int    position = poolStart + reference;
+		byte[] bytes    = new byte[buffer.getInt(position)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(position + 4 + i);
+		}
+		return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+	}
+
+	private static java.util.List<java.io.File> absolute(java.util.List<java.io.File> locations) {
+		java.util.List<java.io.File> result = new java.util.ArrayList<>(locations.size());
+		for (java.io.File location : locations) {
+			result.add(location.getAbsoluteFile());
+		}
+		return result;
+	}
+
+	private static int compare(String a, String b) {
+		byte[] x = a.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+		byte[] y = b.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+		for (int i = 0; i < x.length && i < y.length; i++) {
+			int order = (x[i] & 0xFF) - (y[i] & 0xFF);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return x.length - y.length;
+	}
+
+	@Override
+	public String toString() {
+		return "SharedClassIndex{" + file + ", " + hierarchy.size() + " types, " + annotationCount +
+		       " annotations, " + getByteSize() + " bytes}";
+	}
+
+	/**
+	 * Distinct strings as length prefixed UTF-8, referenced by their offset
+	 */
+	private static final class StringPool {
+		private final java.util.Map<String, Integer> offsets = new java.util.HashMap<>();
+		private final java.io.ByteArrayOutputStream  bytes   = new java.io.ByteArrayOutputStream();
+
+		private int add(String s) {
+			return offsets.computeIfAbsent(s, key -> {
+				int    offset  = bytes.size();
+				byte[] encoded = key.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+				bytes.write(encoded.length >>> 24);
+				bytes.write(encoded.length >>> 16);
+				bytes.write(encoded.length >>> 8);
+				bytes.write(encoded.length);
+				bytes.write(encoded, 0, encoded.length);
+				return offset;
+			});
+		}
+
+		private int size() {
+			return bytes.size();
+		}
+
+		private byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+	}
+}
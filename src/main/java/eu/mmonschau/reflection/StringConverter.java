@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * Converts a String, e.g. a command line argument, to a constructor argument
+ *
+ * @param <T>
+ * 		the type of the argument
+ *
+ * @see eu.mmonschau.reflection.StringConverters#register(Class, StringConverter)
+ */
+@FunctionalInterface
+public interface StringConverter<T> {
+
+	/**
+	 * Converts a String
+	 *
+	 * @param value
+	 * 		the String to convert
+	 *
+	 * @return the converted value
+	 *
+	 * @throws RuntimeException
+	 * 		if the String cannot be converted
+	 */
+	T convert(String value);
+
+	/**
+	 * Checks whether a String can be converted, used to choose between constructors without trying to convert
+	 *
+	 * @param value
+	 * 		the String to check
+	 *
+	 * @return false if {@link #convert(String)} would fail, the default accepts every String
+	 */
+	default boolean accepts(String value) {
+		return true;
+	}
+}
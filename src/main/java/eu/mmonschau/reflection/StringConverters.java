@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection;
+
+/**
+ * The registry of {@link StringConverter}s used by {@link ClassInstatiator} to convert String arguments.
+ * <p>
+ * A parameter type is converted by the first of
+ * <ol>
+ * <li>a converter registered for exactly this type</li>
+ * <li>a built-in converter for String, primitives and their wrappers, {@link java.io.File},
+ * {@link java.nio.file.Path}, {@link java.net.URI}, {@link java.math.BigInteger}, {@link java.math.BigDecimal},
+ * {@link java.time.Duration} and {@link java.util.UUID}</li>
+ * <li>{@link Enum#valueOf(Class, String)} for enums</li>
+ * <li>a public static valueOf(String) method of the type</li>
+ * </ol>
+ * Converters are looked up once per constructor, registering or unregistering a converter invalidates these lookups.
+ * If several constructors accept a row of values, the one with the most specific converters is used, see
+ * {@link StringConverter#accepts(String)}.
+ * Registered converters are held strongly, so a converter for a class of an unloadable class loader should be
+ * unregistered with it.
+ */
+@SuppressWarnings("unchecked")
+public final class StringConverters {
+
+	/*
+	 * categories of String values, a value has exactly one of them; the converters of the constructors which fit the
+	 * categories of a row are the candidates for all rows of these categories
+	 */
+	static final int EMPTY   = 0;
+	static final int DIGIT   = 1;
+	static final int CHAR    = 2;
+	static final int BOOLEAN = 3;
+	static final int INTEGER = 4;
+	static final int DECIMAL = 5;
+	static final int OTHER   = 6;
+
+	/** the number of bits of a category */
+	static final int CATEGORY_BITS = 3;
+
+	private static final int ANY        = (1 << OTHER + 1) - 1;
+	private static final int INTEGRAL   = 1 << DIGIT | 1 << INTEGER;
+	private static final int FRACTIONAL = INTEGRAL | 1 << DECIMAL;
+
+	private static final java.util.Map<Class<?>, StringConverter<?>> BUILT_IN;
+
+	static {
+		StringConverter<Boolean>    toBoolean    = checked(Boolean::valueOf, 10, 1 << BOOLEAN,
+		                                                   s -> "true".equalsIgnoreCase(s) ||
+		                                                        "false".equalsIgnoreCase(s));
+		StringConverter<Character>  toCharacter  = checked(StringConverters::toCharacter, 2, 1 << DIGIT | 1 << CHAR,
+		                                                   s -> s.length() == 1);
+		StringConverter<Byte>       toByte       = checked(Byte::valueOf, 9, INTEGRAL,
+		                                                   s -> isInteger(s, Byte.MIN_VALUE, Byte.MAX_VALUE));
+		StringConverter<Short>      toShort      = checked(Short::valueOf, 8, INTEGRAL,
+		                                                   s -> isInteger(s, Short.MIN_VALUE, Short.MAX_VALUE));
+		StringConverter<Integer>    toInteger    = checked(Integer::valueOf, 7, INTEGRAL,
+		                                                   s -> isInteger(s, Integer.MIN_VALUE, Integer.MAX_VALUE));
+		StringConverter<Long>       toLong       = checked(Long::valueOf, 6, INTEGRAL,
+		                                                   s -> isInteger(s, Long.MIN_VALUE, Long.MAX_VALUE));
+		StringConverter<Double>     toDouble     = checked(Double::valueOf, 4, FRACTIONAL | 1 << OTHER,
+		                                                   StringConverters::isFloat);
+		StringConverter<Float>      toFloat      = checked(Float::valueOf, 2, FRACTIONAL | 1 << OTHER,
+		                                                   StringConverters::isFloat);
+		BUILT_IN = new com.google.common.collect.ImmutableMap.Builder<Class<?>, StringConverter<?>>()
+				.put(String.class, checked(s -> s, 0, ANY, s -> true))
+				.put(boolean.class, toBoolean)
+				.put(Boolean.class, toBoolean)
+				.put(byte.class, toByte)
+				.put(Byte.class, toByte)
+				.put(char.class, toCharacter)
+				.put(Character.class, toCharacter)
+				.put(double.class, toDouble)
+				.put(Double.class, toDouble)
+				.put(float.class, toFloat)
+				.put(Float.class, toFloat)
+				.put(int.class, toInteger)
+				.put(Integer.class, toInteger)
+				.put(long.class, toLong)
+				.put(Long.class, toLong)
+				.put(short.class, toShort)
+				.put(Short.class, toShort)
+				.put(java.io.File.class, checked(java.io.File::new, 1, ANY, s -> true))
+				.put(java.nio.file.Path.class, checked(s -> java.nio.file.Paths.get(s), 1, ANY, s -> true))
+				.put(java.net.URI.class, checked(java.net.URI::create, 1, ANY, s -> true))
+				.put(java.math.BigInteger.class, checked(java.math.BigInteger::new, 5, INTEGRAL,
+				                                         s -> (1 << categorize(s) & INTEGRAL) != 0))
+				.put(java.math.BigDecimal.class, checked(java.math.BigDecimal::new, 3, FRACTIONAL,
+				                                         StringConverters::isDecimal))
+				.put(java.time.Duration.class, checked(java.time.Duration::parse, 10, 1 << OTHER,
+				                                       StringConverters::isDuration))
+				.put(java.util.UUID.class, checked(java.util.UUID::fromString, 10, 1 << OTHER,
+				                                   StringConverters::isUuid))
+				.build();
+	}
+
+	private static final java.util.concurrent.ConcurrentHashMap<Class<?>, StringConverter<?>> REGISTERED =
+			new java.util.concurrent.ConcurrentHashMap<>();
+
+	private static final java.lang.invoke.MethodType VALUE_OF_TYPE =
+			java.lang.invoke.MethodType.methodType(Object.class, String.class);
+
+	private static volatile int generation;
+
+	private StringConverters() {
+	}
+
+	/**
+	 * Registers a converter, replacing a registered or built-in converter for the same type
+	 *
+	 * @param type
+	 * 		the exact parameter type to convert to
+	 * @param converter
+	 * 		the converter
+	 * @param <T>
+	 * 		the parameter type
+	 */
+	public static synchronized <T> void register(Class<T> type, StringConverter<? extends T> converter) {
+		REGISTERED.put(java.util.Objects.requireNonNull(type), java.util.Objects.requireNonNull(converter));
+		generation++;
+	}
+
+	/**
+	 * Removes a registered converter
+	 *
+	 * @param type
+	 * 		the parameter type
+	 *
+	 * @return the removed converter or null if none was registered
+	 */
+	public static synchronized StringConverter<?> unregister(Class<?> type) {
+		StringConverter<?> removed = REGISTERED.remove(type);
+		if (removed != null) {
+			generation++;
+		}
+		return removed;
+	}
+
+	/**
+	 * gets the converter for a type
+	 *
+	 * @param type
+	 * 		the parameter type
+	 * @param <T>
+	 * 		the parameter type
+	 *
+	 * @return the converter or null if the type cannot be converted from String
+	 */
+	public static <T> StringConverter<T> get(Class<T> type) {
+		StringConverter<?> converter = REGISTERED.get(type);
+		if (converter == null) {
+			converter = BUILT_IN.get(type);
+		}
+		if (converter == null && type.isEnum()) {
+			java.util.Set<String> names = new java.util.HashSet<>();
+			for (Object constant : type.getEnumConstants()) {
+				names.add(((Enum<?>) constant).name());
+			}
+			converter = checked(s -> Enum.valueOf(type.asSubclass(Enum.class), s), 10,
+			                    1 << CHAR | 1 << BOOLEAN | 1 << OTHER, names::contains);
+		}
+		if (converter == null) {
+			converter = getValueOf(type);
+		}
+		return (StringConverter<T>) converter;
+	}
+
+	/**
+	 * gets how specific a converter is, a constructor whose converters are more specific is preferred if several
+	 * constructors accept the same values
+	 *
+	 * @param converter
+	 * 		a converter
+	 *
+	 * @return the specificity, from 0 for String to 10 for types with a strict syntax; 1 for registered converters
+	 */
+	static int getSpecificity(StringConverter<?> converter) {
+		return converter instanceof Checked ? ((Checked<?>) converter).specificity : 1;
+	}
+
+	/**
+	 * gets the categories of values a converter may accept
+	 *
+	 * @param converter
+	 * 		a converter
+	 *
+	 * @return a bit per category, see {@link #categorize(String)}
+	 */
+	static int getCategories(StringConverter<?> converter) {
+		return converter instanceof Checked ? ((Checked<?>) converter).categories : ANY;
+	}
+
+	/**
+	 * gets the category of a value, the category decides which converters may accept it
+	 *
+	 * @param value
+	 * 		the value
+	 *
+	 * @return one of {@link #EMPTY}, {@link #DIGIT}, {@link #CHAR}, {@link #BOOLEAN}, {@link #INTEGER},
+	 * {@link #DECIMAL} and {@link #OTHER}
+	 */
+	static int categorize(String value) {
+		if (value.isEmpty()) {
+			return EMPTY;
+		} else if (value.length() == 1) {
+			return Character.isDigit(value.charAt(0)) ? DIGIT : CHAR;
+		} else if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+			return BOOLEAN;
+		}
+		int digits = countDigits(value, value.charAt(0) == '+' || value.charAt(0) == '-' ? 1 : 0);
+		if (digits == value.length()) {
+			return INTEGER;
+		} else if (isDecimal(value)) {
+			return DECIMAL;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * @return a number which changes whenever a converter is registered or unregistered
+	 */
+	static int getGeneration() {
+		return generation;
+	}
+
+	private static StringConverter<?> getValueOf(Class<?> type) {
+		java.lang.invoke.MethodHandle valueOf;
+		try {
+			java.lang.reflect.Method method = type.getMethod("valueOf", String.class);
+			if (!java.lang.reflect.Modifier.isStatic(method.getModifiers())) {
+				return null;
+			}
+			valueOf = java.lang.invoke.MethodHandles.publicLookup().unreflect(method).asType(VALUE_OF_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+		return s -> {
+			try {
+				return valueOf.invokeExact(s);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalArgumentException(e);
+			}
+		};
+	}
+
+	private static <T> StringConverter<T> checked(StringConverter<T> converter, int specificity, int categories,
+	                                              java.util.function.Predicate<String> accepts) {
+		return new Checked<>(converter, specificity, categories, accepts);
+	}
+
+	/**
+	 * checks the syntax and range of an integer without parsing it
+	 *
+	 * @param s
+	 * 		the value
+	 * @param min
+	 * 		the minimum
+	 * @param max
+	 * 		the maximum
+	 *
+	 * @return true if s is a decimal integer within [min, max]
+	 */
+	private static boolean isInteger(String s, long min, long max) {
+		int sign = !s.isEmpty() && (s.charAt(0) == '+' || s.charAt(0) == '-') ? 1 : 0;
+		if (s.length() == sign || countDigits(s, sign) != s.length()) {
+			return false;
+		}
+		if (s.length() - sign > 18) {
+			java.math.BigInteger value = new java.math.BigInteger(s);
+			return value.compareTo(java.math.BigInteger.valueOf(min)) >= 0 &&
+			       value.compareTo(java.math.BigInteger.valueOf(max)) <= 0;
+		}
+		long value = Long.parseLong(s);
+		return value >= min && value <= max;
+	}
+
+	/**
+	 * counts the characters from the start of a String which are a sign or an ASCII digit
+	 *
+	 * @param s
+	 * 		the String
+	 * @param sign
+	 * 		the length of the sign, 0 or 1
+	 *
+	 * @return the length of the signed digit prefix, 0 if there is no digit
+	 */
+	private static int countDigits(String s, int sign) {
+		int i = sign;
+		while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+			i++;
+		}
+		return i == sign ? 0 : i;
+	}
+
+	/**
+	 * checks the syntax of a {@link java.math.BigDecimal}, {@code [+-]?(\d+\.?\d*|\.\d+)([eE][+-]?\d+)?}
+	 *
+	 * @param s
+	 * 		the value
+	 *
+	 * @return true if s is a decimal number
+	 */
+	private static boolean isDecimal(String s) {
+		int start = s.isEmpty() || s.charAt(0) != '+' && s.charAt(0) != '-' ? 0 : 1;
+		return scanDecimal(s, start, s.length()) == s.length();
+	}
+
+	/**
+	 * checks the syntax of a {@link Double#valueOf(String)} or {@link Float#valueOf(String)} without hexadecimal
+	 * numbers, {@code [+-]?(NaN|Infinity|(\d+\.?\d*|\.\d+)([eE][+-]?\d+)?[fFdD]?)} surrounded by whitespace
+	 *
+	 * @param s
+	 * 		the value
+	 *
+	 * @return true if s is a floating point number
+	 */
+	private static boolean isFloat(String s) {
+		int start = 0;
+		int end   = s.length();
+		while (start < end && s.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && s.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start < end && (s.charAt(start) == '+' || s.charAt(start) == '-')) {
+			start++;
+		}
+		if (end - start == 3 && s.startsWith("NaN", start) || end - start == 8 && s.startsWith("Infinity", start)) {
+			return true;
+		}
+		int number = scanDecimal(s, start, end);
+		if (number >= 0 && number == end - 1) {
+			char suffix = s.charAt(number);
+			return suffix == 'f' || suffix == 'F' || suffix == 'd' || suffix == 'D';
+		}
+		return number == end;
+	}
+
+	/**
+	 * checks the syntax of a {@link java.util.UUID#fromString(String)}, five groups of hexadecimal digits separated by
+	 * '-'
+	 *
+	 * @param s
+	 * 		the value
+	 *
+	 * @return true if s is a UUID
+	 */
+	private static boolean isUuid(String s) {
+		int groups = 1;
+		int digits = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '-') {
+				if (digits == 0) {
+					return false;
+				}
+				groups++;
+				digits = 0;
+			} else if (c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F') {
+				digits++;
+			} else {
+				return false;
+			}
+		}
+		return groups == 5 && digits > 0;
+	}
+
+	/**
+	 * checks the start of a {@link java.time.Duration#parse(CharSequence)}, an optional sign and 'P' followed by at
+	 * least one character on the same line
+	 *
+	 * @param s
+	 * 		the value
+	 *
+	 * @return true if s may be a duration
+	 */
+	private static boolean isDuration(String s) {
+		int i = s.isEmpty() || s.charAt(0) != '+' && s.charAt(0) != '-' ? 0 : 1;
+		if (i >= s.length() - 1 || s.charAt(i) != 'P' && s.charAt(i) != 'p') {
+			return false;
+		}
+		for (i++; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * scans an unsigned decimal number, {@code (\d+\.?\d*|\.\d+)([eE][+-]?\d+)?}
+	 *
+	 * @param s
+	 * 		the String
+	 * @param start
+	 * 		the index of the number
+	 * @param end
+	 * 		the end of the String to scan
+	 *
+	 * @return the end of the number or -1 if there is no number or an incomplete exponent at start
+	 */
+	private static int scanDecimal(String s, int start, int end) {
+		int i = skipDigits(s, start, end);
+		if (i < end && s.charAt(i) == '.') {
+			int fraction = skipDigits(s, i + 1, end);
+			if (i == start && fraction == i + 1) {
+				return -1;
+			}
+			i = fraction;
+		} else if (i == start) {
+			return -1;
+		}
+		if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			int exponent = i + 1;
+			if (exponent < end && (s.charAt(exponent) == '+' || s.charAt(exponent) == '-')) {
+				exponent++;
+			}
+			i = skipDigits(s, exponent, end);
+			if (i == exponent) {
+				return -1;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * @return the index of the first character from start on which is not an ASCII digit
+	 */
+	private static int skipDigits(String s, int start, int end) {
+		int i = start;
+		while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+			i++;
+		}
+		return i;
+	}
+
+	private static Character toCharacter(String s) {
+		if (s.length() != 1) {
+			throw new IllegalArgumentException("Not a single character: " + s);
+		}
+		return s.charAt(0);
+	}
+
+	/**
+	 * A built-in converter which checks values before converting them
+	 *
+	 * @param <T>
+	 * 		the converted type
+	 */
+	private static final class Checked<T> implements StringConverter<T> {
+		private final StringConverter<T>                   converter;
+		private final int                                  specificity;
+		private final int                                  categories;
+		private final java.util.function.Predicate<String> accepts;
+
+		private Checked(StringConverter<T> converter, int specificity, int categories,
+		                java.util.function.Predicate<String> accepts) {
+			this.converter = converter;
+			this.specificity = specificity;
+			this.categories = categories;
+			this.accepts = accepts;
+		}
+
+		@Override
+		public T convert(String value) {
+			return converter.convert(value);
+		}
+
+		@Override
+		public boolean accepts(String value) {
+			return accepts.test(value);
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) Michael Monschau 2018.
+ */
+
+package eu.mmonschau.reflection.util;
+
+/**
+ * Hands log records to a bounded ring buffer and publishes them to another handler on a background thread, so
+ * logging threads never wait for the output. Records are offered by compare-and-set without locking; when the buffer
+ * is full the {@link OverflowPolicy} decides whether the record is dropped, an older one is dropped or the logging
+ * thread waits.
+ *
+ * @see eu.mmonschau.reflection.util.JTextLog#setAsync(int, OverflowPolicy)
+ */
+public class AsyncLogHandler extends java.util.logging.Handler {
+
+	/**
+	 * What to do with a record if the buffer is full
+	 */
+	public enum OverflowPolicy {
+		/** the new record is dropped */
+		DROP_NEWEST,
+		/** the oldest buffered record is dropped to make room */
+		DROP_OLDEST,
+		/** the logging thread waits until there is room */
+		BLOCK
+	}
+
+	private final java.util.logging.Handler             target;
+	private final OverflowPolicy                        policy;
+	private final RingBuffer                            buffer;
+	private final Thread                                writer;
+	private final java.util.concurrent.atomic.LongAdder published = new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder dropped   = new java.util.concurrent.atomic.LongAdder();
+	private final java.util.concurrent.atomic.LongAdder written   = new java.util.concurrent.atomic.LongAdder();
+	private volatile boolean                            closed;
+	/** set while the writer parks because the buffer is empty */
+	private volatile boolean                            idle;
+
+	/**
+	 * A basic constructor, starts the writer thread
+	 *
+	 * @param target
+	 * 		the handler which writes the records
+	 * @param capacity
+	 * 		the size of the buffer, rounded up to a power of two
+	 * @param policy
+	 * 		what to do if the buffer is full
+	 */
+	public AsyncLogHandler(java.util.logging.Handler target, int capacity, OverflowPolicy policy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.target = java.util.Objects.requireNonNull(target);
+		this.policy = java.util.Objects.requireNonNull(policy);
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.buffer = new RingBuffer(size);
+		setLevel(target.getLevel());
+		this.writer = new Thread(this::write, "JTextLog-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public void publish(java.util.logging.LogRecord record) {
+		if (closed || !isLoggable(record)) {
+			return;
+		}
+		//the source is inferred from the stack, which is only the logging thread's stack here
+		record.getSourceClassName();
+		published.increment();
+		if (!buffer.offer(record)) {
+			overflow(record);
+		}
+		if (idle) {
+			java.util.concurrent.locks.LockSupport.unpark(writer);
+		}
+	}
+
+	private void overflow(java.util.logging.LogRecord record) {
+		switch (policy) {
+			case DROP_NEWEST:
+				dropped.increment();
+				break;
+			case DROP_OLDEST:
+				while (!buffer.offer(record)) {
+					if (buffer.poll() != null) {
+						dropped.increment();
+					}
+				}
+				break;
+			case BLOCK:
+				while (!buffer.offer(record)) {
+					if (closed) {
+						dropped.increment();
+						return;
+					}
+					java.util.concurrent.locks.LockSupport.unpark(writer);
+					Thread.yield();
+				}
+				break;
+		}
+	}
+
+	/**
+	 * publishes the buffered records until the handler is closed
+	 */
+	private void write() {
+		while (!closed) {
+			if (!drain()) {
+				idle = true;
+				//a record offered before idle was set is seen by this check
+				if (buffer.isEmpty() && !closed) {
+					java.util.concurrent.locks.LockSupport.parkNanos(this, 100_000_000L);
+				}
+				idle = false;
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * @return false if the buffer was empty
+	 */
+	private boolean drain() {
+		boolean                     any = false;
+		java.util.logging.LogRecord record;
+		while ((record = buffer.poll()) != null) {
+			any = true;
+			try {
+				target.publish(record);
+			} catch (RuntimeException e) {
+				reportError(null, e, java.util.logging.ErrorManager.WRITE_FAILURE);
+			}
+			written.increment();
+		}
+		if (any) {
+			target.flush();
+		}
+		return any;
+	}
+
+	/**
+	 * Waits until the records published so far are written and flushes the target
+	 */
+	@Override
+	public void flush() {
+		long goal = published.sum() - dropped.sum();
+		while (!closed && written.sum() < goal && writer.isAlive()) {
+			java.util.concurrent.locks.LockSupport.unpark(writer);
+			Thread.yield();
+		}
+		target.flush();
+	}
+
+	/**
+	 * Writes the buffered records, stops the writer thread and closes the target
+	 */
+	@Override
+	public void close() {
+		stop();
+		target.close();
+	}
+
+	/**
+	 * Writes the buffered records and stops the writer thread, the target stays open. Records published afterwards
+	 * are ignored.
+	 */
+	public void stop() {
+		closed = true;
+		java.util.concurrent.locks.LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the handler which writes the records
+	 */
+	public java.util.logging.Handler getTarget() {
+		return target;
+	}
+
+	/**
+	 * @return the number of loggable records handed to this handler
+	 */
+	public long getPublished() {
+		return published.sum();
+	}
+
+	/**
+	 * @return the number of records dropped because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return the number of records written to the target
+	 */
+	public long getWritten() {
+		return written.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncLogHandler{" + policy + ", capacity=" + buffer.capacity() + ", published=" + getPublished() +
+		       ", dropped=" + getDropped() + ", written=" + getWritten() + '}';
+	}
+
+	/**
+	 * A bounded lock-free queue for many producers and consumers: every slot has a sequence number telling whether
+	 * it is free for the producer or filled for the consumer of a position
+	 */
+	private static final class RingBuffer {
+		private final java.util.concurrent.atomic.AtomicReferenceArray<java.util.logging.LogRecord> records;
+		private final java.util.concurrent.atomic.AtomicLongArray                                   sequences;
+		private final int                                                                           mask;
+		private final java.util.concurrent.atomic.AtomicLong                                        head =
+				new java.util.concurrent.atomic.AtomicLong();
+		private final java.util.concurrent.atomic.AtomicLong                                        tail =
+				new java.util.concurrent.atomic.AtomicLong();
+
+		private RingBuffer(int capacity) {
+			records = new java.util.concurrent.atomic.AtomicReferenceArray<>(capacity);
+			sequences = new java.util.concurrent.atomic.AtomicLongArray(capacity);
+			mask = capacity - 1;
+			for (int i = 0; i < capacity; i++) {
+				sequences.set(i, i);
+			}
+		}
+
+		private int capacity() {
+			return mask + 1;
+		}
+
+		private boolean isEmpty() {
+			return head.get() == tail.get();
+		}
+
+		private boolean offer(java.util.logging.LogRecord record) {
+			while (true) {
+				long position = tail.get();
+				int  index    = (int) position & mask;
+				long sequence = sequences.get(index);
+				if (sequence == position) {
+					if (tail.compareAndSet(position, position + 1)) {
+						records.set(index, record);
+						sequences.set(index, position + 1);
+						return true;
+					}
+				} else if (sequence < position) {
+					return false;
+				}
+			}
+		}
+
+		private java.util.logging.LogRecord poll() {
+			while (true) {
+				long position = head.get();
+				int  index    = (int) position & mask;
+				long sequence = sequences.get(index);
+				if (sequence == position + 1) {
+					if (head.compareAndSet(position, position + 1)) {
+						java.util.logging.LogRecord record = records.getAndSet(index, null);
+						sequences.set(index, position + mask + 1);
+						return record;
+					}
+				} else if (sequence < position + 1) {
+					return null;
+				}
+			}
+		}
+	}
+}
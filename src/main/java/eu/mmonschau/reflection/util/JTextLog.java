@@ -10,28 +10,119 @@ package eu.mmonschau.reflection.util;
  * @see java.util.logging.Logger
  */
 public class JTextLog {
-	private static java.util.logging.Logger  logger;
-	private static java.util.logging.Handler handle;
+	private static volatile java.util.logging.Logger  logger;
+	private static volatile java.util.logging.Handler handle;
+	private static          AsyncLogHandler           async;
+	private static          Thread                    flushOnExit;
 
-	public static void setLogger(java.util.logging.Logger logger) {
+	public static synchronized void setLogger(java.util.logging.Logger logger) {
+		setSync();
 		JTextLog.logger = logger;
+		handle = null;
 	}
 
 
 	public static java.util.logging.Logger getLogger() {
-		if (logger == null) {
-			logger = java.util.logging.Logger.getGlobal();
-			handle = new SysoutHandler();
-			logger.addHandler(handle);
+		java.util.logging.Logger current = logger;
+		if (current == null) {
+			synchronized (JTextLog.class) {
+				if (logger == null) {
+					java.util.logging.Logger global = java.util.logging.Logger.getGlobal();
+					handle = new SysoutHandler();
+					global.addHandler(handle);
+					logger = global;
+				}
+				current = logger;
+			}
 		}
-		return logger;
+		return current;
 	}
 
-	public static void setLogLevel(java.util.logging.Level l) {
+	public static synchronized void setLogLevel(java.util.logging.Level l) {
 		getLogger().setLevel(l);
 		if (handle != null) {
 			handle.setLevel(l);
 		}
+		if (async != null) {
+			//the async handler only filters, the records are written by its target
+			async.getTarget().setLevel(l);
+		}
+	}
+
+	/**
+	 * checks whether a message of given level would be logged, to skip building it otherwise
+	 *
+	 * @param level
+	 * 		the level
+	 *
+	 * @return true if the logger accepts the level
+	 */
+	public static boolean isLoggable(java.util.logging.Level level) {
+		return getLogger().isLoggable(level);
+	}
+
+	/**
+	 * Writes the messages on a background thread: the handler of this class is replaced by an
+	 * {@link AsyncLogHandler} which buffers the records for it. Buffered records are written at exit. A logger set
+	 * by {@link #setLogger(java.util.logging.Logger)} must have at most one handler, which is replaced the same way.
+	 *
+	 * @param capacity
+	 * 		the number of records which can be buffered
+	 * @param policy
+	 * 		what to do with a record if the buffer is full
+	 *
+	 * @return the async handler, e.g. to read its counters
+	 *
+	 * @throws IllegalStateException
+	 * 		if the logger has more than one handler
+	 */
+	public static synchronized AsyncLogHandler setAsync(int capacity, AsyncLogHandler.OverflowPolicy policy) {
+		setSync();
+		java.util.logging.Logger current = getLogger();
+		if (handle == null) {
+			java.util.logging.Handler[] handlers = current.getHandlers();
+			if (handlers.length > 1) {
+				throw new IllegalStateException(current.getName() + " has " + handlers.length + " handlers");
+			}
+			handle = handlers.length == 1 ? handlers[0] : new SysoutHandler();
+		}
+		async = new AsyncLogHandler(handle, capacity, policy);
+		current.removeHandler(handle);
+		current.addHandler(async);
+		handle = async;
+		AsyncLogHandler installed = async;
+		flushOnExit = new Thread(installed::flush, "JTextLog-flush");
+		Runtime.getRuntime().addShutdownHook(flushOnExit);
+		return installed;
+	}
+
+	/**
+	 * Writes the messages on the logging threads again, after the buffered ones, and stops the writer thread
+	 */
+	public static synchronized void setSync() {
+		if (async == null) {
+			return;
+		}
+		java.util.logging.Logger current = getLogger();
+		current.removeHandler(async);
+		async.stop();
+		java.util.logging.Handler target = async.getTarget();
+		current.addHandler(target);
+		handle = target;
+		try {
+			Runtime.getRuntime().removeShutdownHook(flushOnExit);
+		} catch (IllegalStateException e) {
+			//shutting down
+		}
+		async = null;
+		flushOnExit = null;
+	}
+
+	/**
+	 * @return the async handler or null if the messages are written synchronously
+	 */
+	public static synchronized AsyncLogHandler getAsync() {
+		return async;
 	}
 
 
@@ -42,5 +133,3 @@ public class JTextLog {
 	}
 
 }
-
-